@@ -0,0 +1,94 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.List;
+
+/**
+ * Двоичные форматы ответов и запросов по заголовкам Accept и Content-Type: Smile (application/x-jackson-smile)
+ * и CBOR (application/cbor). Без заголовка по-прежнему отдаётся JSON. Маперы строятся тем же сборщиком, что и
+ * JSON-мапер приложения, поэтому даты и остальные настройки совпадают; лайки и друзья пишутся
+ * {@link BinaryIntSetModule}. Формат ответа зависит от Accept, поэтому все ответы помечаются Vary: Accept,
+ * включая 304 и ошибки: иначе кэш отдал бы клиенту JSON сохранённый ответ в Smile.
+ */
+@Configuration
+public class BinaryFormatsConfig implements WebMvcConfigurer {
+    private final Jackson2ObjectMapperBuilder builder;
+
+    @Autowired
+    public BinaryFormatsConfig(Jackson2ObjectMapperBuilder builder) {
+        this.builder = builder;
+    }
+
+    /**
+     * Заменяет стандартные конвертеры на их месте, после JSON: если Accept допускает любой тип, Spring выбирает
+     * первый подходящий конвертер, и двоичный формат, поставленный в начало, стал бы ответом по умолчанию.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        replace(converters, MappingJackson2SmileHttpMessageConverter.class,
+                new MappingJackson2SmileHttpMessageConverter(smileMapper(builder)));
+        replace(converters, MappingJackson2CborHttpMessageConverter.class,
+                new MappingJackson2CborHttpMessageConverter(cborMapper(builder)));
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                if (!response.getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT)) {
+                    response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+                }
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Двоичные строки пишутся как есть, а не в 7-битной кодировке, которую Smile включает по умолчанию.
+     */
+    public static ObjectMapper smileMapper(Jackson2ObjectMapperBuilder builder) {
+        SmileFactory factory = SmileFactory.builder().disable(SmileGenerator.Feature.ENCODE_BINARY_AS_7BIT).build();
+        return binaryMapper(builder, new ObjectMapper(factory));
+    }
+
+    public static ObjectMapper cborMapper(Jackson2ObjectMapperBuilder builder) {
+        return binaryMapper(builder, new ObjectMapper(new CBORFactory()));
+    }
+
+    /**
+     * Сборщик общий с JSON-мапером приложения, поэтому его настройки переносятся на готовый мапер
+     * двоичного формата, а сам сборщик не меняется.
+     */
+    private static ObjectMapper binaryMapper(Jackson2ObjectMapperBuilder builder, ObjectMapper mapper) {
+        builder.configure(mapper);
+        return mapper.registerModule(new BinaryIntSetModule());
+    }
+
+    private static void replace(List<HttpMessageConverter<?>> converters, Class<?> type,
+                                HttpMessageConverter<?> replacement) {
+        for (int i = 0; i < converters.size(); i++) {
+            if (type.isInstance(converters.get(i))) {
+                converters.set(i, replacement);
+                return;
+            }
+        }
+        converters.add(replacement);
+    }
+}
@@ -0,0 +1,142 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.jsontype.TypeDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleDeserializers;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.databind.type.CollectionType;
+import ru.yandex.practicum.filmorate.util.CompactIntSet;
+import ru.yandex.practicum.filmorate.util.IntSet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Пишет лайки и друзей ({@link IntSet}) одной двоичной строкой: отсортированные id как разности с предыдущим
+ * в varint. Соседние id в больших множествах отличаются на единицы, поэтому на id уходит 1-2 байта вместо
+ * отдельного целого с заголовком в Smile или CBOR. Подключается только к двоичным форматам; если генератор
+ * не пишет двоичные данные напрямую, множество остаётся обычным массивом. Читаются оба вида, а также
+ * двоичная строка в base64.
+ */
+public class BinaryIntSetModule extends SimpleModule {
+
+    public BinaryIntSetModule() {
+        super("BinaryIntSetModule");
+        addSerializer(IntSet.class, new IntSetSerializer());
+        setDeserializers(new IntSetDeserializers());
+    }
+
+    static byte[] encode(int[] values) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(sorted.length * 2);
+        int previous = 0;
+        for (int value : sorted) {
+            // Разность по модулю 2^32: для возрастающих значений она неотрицательна как беззнаковое число
+            int delta = value - previous;
+            while ((delta & ~0x7F) != 0) {
+                out.write(delta & 0x7F | 0x80);
+                delta >>>= 7;
+            }
+            out.write(delta);
+            previous = value;
+        }
+        return out.toByteArray();
+    }
+
+    static int[] decode(byte[] bytes) {
+        int[] values = new int[bytes.length];
+        int count = 0;
+        int previous = 0;
+        int position = 0;
+        while (position < bytes.length) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (position == bytes.length || shift > 28) {
+                    throw new IllegalArgumentException("Повреждённое множество id");
+                }
+                b = bytes[position++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous += delta;
+            values[count++] = previous;
+        }
+        return Arrays.copyOf(values, count);
+    }
+
+    private static final class IntSetSerializer extends StdSerializer<IntSet> {
+
+        private IntSetSerializer() {
+            super(IntSet.class);
+        }
+
+        @Override
+        public void serialize(IntSet value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            int[] values = value.toIntArray();
+            if (gen.canWriteBinaryNatively()) {
+                gen.writeBinary(encode(values));
+            } else {
+                gen.writeArray(values, 0, values.length);
+            }
+        }
+    }
+
+    private static final class IntSetDeserializer extends StdDeserializer<Set<Integer>> {
+
+        private IntSetDeserializer() {
+            super(Set.class);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Set<Integer> deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.VALUE_EMBEDDED_OBJECT || token == JsonToken.VALUE_STRING) {
+                try {
+                    return CompactIntSet.of(decode(parser.getBinaryValue()));
+                } catch (IllegalArgumentException e) {
+                    throw JsonMappingException.from(parser, e.getMessage(), e);
+                }
+            }
+            if (token != JsonToken.START_ARRAY) {
+                return (Set<Integer>) context.handleUnexpectedToken(Set.class, parser);
+            }
+            CompactIntSet values = new CompactIntSet();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                values.addInt(parser.getValueAsInt());
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Перехватывает только свойства типа Set<Integer>, остальные коллекции читает Jackson.
+     */
+    private static final class IntSetDeserializers extends SimpleDeserializers {
+        private final IntSetDeserializer deserializer = new IntSetDeserializer();
+
+        @Override
+        public JsonDeserializer<?> findCollectionDeserializer(CollectionType type, DeserializationConfig config,
+                                                              BeanDescription beanDesc,
+                                                              TypeDeserializer elementTypeDeserializer,
+                                                              JsonDeserializer<?> elementDeserializer) {
+            return type.hasRawClass(Set.class) && type.getContentType().hasRawClass(Integer.class)
+                    ? deserializer : null;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.ResponseCache;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+/**
+ * Пишет фильмы, пользователей и их списки готовыми байтами из {@link ResponseCache}, минуя повторную
+ * сериализацию Jackson. Стоит перед стандартным JSON-конвертером, поэтому контроллеры по-прежнему возвращают
+ * сущности, а запросы и остальные ответы обрабатывает Jackson. Байты совпадают с тем, что записал бы он:
+ * сущности сериализуются тем же ObjectMapper. Списки длиннее {@link ResponseCache#MAX_LIST_SIZE}, например полный
+ * каталог, Jackson пишет потоком, как и раньше, чтобы не собирать весь ответ в памяти.
+ */
+public class CachedJsonConverter extends AbstractGenericHttpMessageConverter<Object> {
+    private final ResponseCache cache;
+    private final ObjectMapper objectMapper;
+
+    public CachedJsonConverter(ResponseCache cache, ObjectMapper objectMapper) {
+        super(MediaType.APPLICATION_JSON);
+        this.cache = cache;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return cache.isEnabled() && canWrite(mediaType) && kind(type, clazz) != null;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return canWrite(null, clazz, mediaType);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage) throws IOException {
+        Class<?> kind = kind(type, value.getClass());
+        if (kind == null
+                || value instanceof Collection && ((Collection<?>) value).size() > ResponseCache.MAX_LIST_SIZE) {
+            objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .writeValue(outputMessage.getBody(), value);
+            return;
+        }
+
+        byte[] json;
+        if (value instanceof Film) {
+            json = cache.film((Film) value, objectMapper::writeValueAsBytes);
+        } else if (value instanceof User) {
+            json = cache.user((User) value, objectMapper::writeValueAsBytes);
+        } else if (kind == Film.class) {
+            json = cache.films((Collection<Film>) value, objectMapper::writeValueAsBytes);
+        } else {
+            json = cache.users((Collection<User>) value, objectMapper::writeValueAsBytes);
+        }
+        outputMessage.getHeaders().setContentLength(json.length);
+        outputMessage.getBody().write(json);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Кеш ответов не читает запросы", inputMessage);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Кеш ответов не читает запросы", inputMessage);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return Film.class.isAssignableFrom(clazz) || User.class.isAssignableFrom(clazz)
+                || Collection.class.isAssignableFrom(clazz);
+    }
+
+    /**
+     * Film или User, если тип ответа - сущность или коллекция сущностей, иначе null.
+     */
+    private static Class<?> kind(Type type, Class<?> clazz) {
+        ResolvableType resolved = type != null ? ResolvableType.forType(type) : ResolvableType.forClass(clazz);
+        Class<?> raw = resolved.resolve(clazz);
+
+        if (raw != null && Collection.class.isAssignableFrom(raw)) {
+            raw = resolved.asCollection().getGeneric(0).resolve();
+        }
+        return raw == Film.class || raw == User.class ? raw : null;
+    }
+}
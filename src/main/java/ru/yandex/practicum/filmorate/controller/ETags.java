@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.Collection;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Слабые ETag по версиям сущностей, без сериализации ответа. Для списков версия агрегируется 64-битным
+ * хешем по парам id и версии с учётом порядка. В тег входит метка запуска приложения: после перезапуска
+ * версии могут начаться заново, и старые теги не должны совпасть с новым содержимым.
+ * <p>
+ * Тег считается до выбора формата, поэтому JSON, Smile и CBOR получают один и тот же. Побайтно эти ответы
+ * различаются, а по смыслу равны, поэтому тег слабый; кэши различают форматы по Vary: Accept,
+ * который выставляет {@link BinaryFormatsConfig}.
+ */
+public final class ETags {
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+
+    private ETags() {
+    }
+
+    public static String of(Film film) {
+        return tag(film.getId() + "." + film.getVersion());
+    }
+
+    public static String of(User user) {
+        return tag(user.getId() + "." + user.getVersion());
+    }
+
+    public static String ofFilms(Collection<Film> films) {
+        return ofList(films, Film::getId, Film::getVersion);
+    }
+
+    public static String ofUsers(Collection<User> users) {
+        return ofList(users, User::getId, User::getVersion);
+    }
+
+    private static <T> String ofList(Collection<T> entities, ToIntFunction<T> id, ToLongFunction<T> version) {
+        long hash = entities.size();
+        for (T entity : entities) {
+            hash = mix(hash, id.applyAsInt(entity), version.applyAsLong(entity));
+        }
+        return tag(Long.toHexString(hash));
+    }
+
+    private static long mix(long hash, int id, long version) {
+        hash = (hash ^ id) * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ version) * 0xC2B2AE3D27D4EB4FL;
+        return hash ^ (hash >>> 29);
+    }
+
+    private static String tag(String value) {
+        return "W/\"" + EPOCH + "-" + value + "\"";
+    }
+}
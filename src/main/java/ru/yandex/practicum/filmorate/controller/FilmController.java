@@ -2,9 +2,17 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.Like;
 import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 
@@ -13,6 +21,7 @@ import java.time.LocalDate;
 import java.time.Month;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Slf4j
@@ -21,10 +30,12 @@ import java.util.Map;
 public class FilmController {
 
     private FilmService filmService;
+    private NdjsonWriter ndjsonWriter;
 
     @Autowired
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService, NdjsonWriter ndjsonWriter) {
         this.filmService = filmService;
+        this.ndjsonWriter = ndjsonWriter;
     }
 
     @GetMapping
@@ -32,33 +43,118 @@ public class FilmController {
         return filmService.findAll();
     }
 
+    @GetMapping(params = "limit")
+    public ResponseEntity<Collection<Film>> findPage(@RequestParam(defaultValue = "0") Integer after,
+                                                   @RequestParam Integer limit) {
+        Collection<Film> page = filmService.findPage(after, limit);
+        return NdjsonWriter.pageResponse(page, limit, Film::getId).body(page);
+    }
+
+    @GetMapping(produces = NdjsonWriter.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        return ResponseEntity.ok()
+                .contentType(NdjsonWriter.APPLICATION_NDJSON)
+                .body(ndjsonWriter.stream(filmService::findPage, Film::getId));
+    }
+
+    /**
+     * Страница по курсору в NDJSON. Без этого сопоставления запрос с limit и Accept: application/x-ndjson
+     * попадал в findPage и получал 406.
+     */
+    @GetMapping(params = "limit", produces = NdjsonWriter.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamPage(@RequestParam(defaultValue = "0") Integer after,
+                                                            @RequestParam Integer limit) {
+        Collection<Film> page = filmService.findPage(after, limit);
+        return NdjsonWriter.pageResponse(page, limit, Film::getId)
+                .contentType(NdjsonWriter.APPLICATION_NDJSON)
+                .body(ndjsonWriter.write(page));
+    }
+
     @PostMapping
     public Film create(@RequestBody @Valid Film film) {
         return filmService.create(film);
     }
 
+    @PostMapping("/batch")
+    public List<BatchResult> createAll(@RequestBody List<Film> films) {
+        return filmService.createAll(films);
+    }
+
     @PutMapping
     public Film update(@RequestBody @Valid Film film) {
         return filmService.update(film);
     }
 
     @GetMapping("/{id}")
-    public Film getById(@PathVariable Integer id) {
-        return filmService.getById(id);
+    public ResponseEntity<Film> getById(@PathVariable Integer id) {
+        Film film = filmService.getById(id);
+        return ResponseEntity.ok().eTag(ETags.of(film)).body(film);
     }
 
     @PutMapping("{id}/like/{userId}")
-    public void addLike(@PathVariable Integer id, @PathVariable Integer userId) {
+    public ResponseEntity<Void> addLike(@PathVariable Integer id, @PathVariable Integer userId) {
         filmService.addLike(id, userId);
+        return likeResponse();
     }
 
     @DeleteMapping("{id}/like/{userId}")
-    public void removeLike(@PathVariable Integer id, @PathVariable Integer userId) {
+    public ResponseEntity<Void> removeLike(@PathVariable Integer id, @PathVariable Integer userId) {
         filmService.removeLike(id, userId);
+        return likeResponse();
+    }
+
+    @PutMapping("/likes/batch")
+    public List<BatchResult> addLikes(@RequestBody List<Like> likes) {
+        return filmService.addLikes(likes);
     }
 
     @GetMapping("popular")
-    public Collection<Film> getPopular(@RequestParam(defaultValue = "10", required = false) Integer count) {
-        return filmService.getPopular(count);
+    public ResponseEntity<Collection<Film>> getPopular(
+            @RequestParam(defaultValue = "10", required = false) Integer count) {
+        Collection<Film> films = filmService.getPopular(count);
+        return ResponseEntity.ok().eTag(ETags.ofFilms(films)).body(films);
+    }
+
+    @GetMapping(value = "{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@PathVariable Integer id) {
+        return filmService.subscribeFilm(id);
+    }
+
+    @GetMapping(value = "popular/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribePopular(@RequestParam(defaultValue = "10", required = false) Integer count) {
+        return filmService.subscribePopular(count);
+    }
+
+    @GetMapping("filter")
+    public Collection<Film> findFiltered(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate releasedFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate releasedTo,
+            @RequestParam(required = false) Integer minDuration,
+            @RequestParam(required = false) Integer maxDuration,
+            @RequestParam(defaultValue = "0", required = false) Integer offset,
+            @RequestParam(defaultValue = "20", required = false) Integer limit) {
+        return filmService.findFiltered(new FilmFilter(releasedFrom, releasedTo, minDuration, maxDuration),
+                offset, limit);
+    }
+
+    @GetMapping("search")
+    public Collection<Film> search(@RequestParam String query,
+                                   @RequestParam(defaultValue = "20", required = false) Integer limit) {
+        return filmService.search(query, limit);
+    }
+
+    @GetMapping("trending")
+    public ResponseEntity<Collection<Film>> getTrending(
+            @RequestParam(defaultValue = "day", required = false) String window,
+            @RequestParam(defaultValue = "10", required = false) Integer count) {
+        Collection<Film> films = filmService.getTrending(window, count);
+        return ResponseEntity.ok().eTag(ETags.ofFilms(films)).body(films);
+    }
+
+    /**
+     * При асинхронном приёме лайк только поставлен в очередь, поэтому ответ - 202 Accepted.
+     */
+    private ResponseEntity<Void> likeResponse() {
+        return filmService.isAsyncLikes() ? ResponseEntity.accepted().build() : ResponseEntity.ok().build();
     }
-}
\ No newline at end of file
+}
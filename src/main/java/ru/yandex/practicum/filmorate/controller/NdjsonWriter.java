@@ -0,0 +1,79 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Collection;
+import java.util.function.BiFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Пишет все сущности в ответ построчно (NDJSON), вычитывая хранилище страницами по курсору,
+ * так что память на ответ не зависит от размера каталога.
+ */
+@Component
+public class NdjsonWriter {
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType(APPLICATION_NDJSON_VALUE);
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final int PAGE_SIZE = 500;
+
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public NdjsonWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public <T> StreamingResponseBody stream(BiFunction<Integer, Integer, Collection<T>> pages, ToIntFunction<T> id) {
+        return outputStream -> {
+            ObjectWriter writer = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            int after = 0;
+            Collection<T> page;
+
+            do {
+                page = pages.apply(after, PAGE_SIZE);
+                for (T entity : page) {
+                    writer.writeValue(outputStream, entity);
+                    outputStream.write('\n');
+                    after = id.applyAsInt(entity);
+                }
+                outputStream.flush();
+            } while (page.size() == PAGE_SIZE);
+        };
+    }
+
+    /**
+     * Ответ со страницей по курсору, общий для JSON и NDJSON: если страница заполнена,
+     * в заголовке передаётся курсор следующей.
+     */
+    public static <T> ResponseEntity.BodyBuilder pageResponse(Collection<T> page, int limit, ToIntFunction<T> id) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+
+        if (page.size() == limit) {
+            T last = page.stream().reduce((first, second) -> second).orElseThrow();
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(id.applyAsInt(last)));
+        }
+        return response;
+    }
+
+    /**
+     * Пишет построчно уже выбранную страницу, например одну страницу по курсору.
+     */
+    public <T> StreamingResponseBody write(Collection<T> entities) {
+        return outputStream -> {
+            ObjectWriter writer = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            for (T entity : entities) {
+                writer.writeValue(outputStream, entity);
+                outputStream.write('\n');
+            }
+        };
+    }
+}
@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+import java.util.Collection;
+
+@RestController
+public class RecommendationController {
+
+    private FilmService filmService;
+
+    @Autowired
+    public RecommendationController(FilmService filmService) {
+        this.filmService = filmService;
+    }
+
+    @GetMapping("/films/{id}/similar")
+    public Collection<Film> getSimilar(@PathVariable Integer id,
+                                       @RequestParam(defaultValue = "10", required = false) Integer count) {
+        return filmService.getSimilar(id, count);
+    }
+
+    @GetMapping("/users/{id}/recommendations")
+    public Collection<Film> getRecommendations(@PathVariable Integer id,
+                                               @RequestParam(defaultValue = "10", required = false) Integer count) {
+        return filmService.getRecommendations(id, count);
+    }
+}
@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.yandex.practicum.filmorate.service.ResponseCache;
+
+import java.util.List;
+
+/**
+ * Ставит {@link CachedJsonConverter} первым, чтобы ответы с фильмами и пользователями шли из кеша.
+ */
+@Configuration
+public class ResponseCacheConfig implements WebMvcConfigurer {
+    private final ResponseCache cache;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public ResponseCacheConfig(ResponseCache cache, ObjectMapper objectMapper) {
+        this.cache = cache;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, new CachedJsonConverter(cache, objectMapper));
+    }
+}
@@ -2,8 +2,14 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.UserService;
 
@@ -11,6 +17,7 @@ import javax.validation.Valid;
 import java.time.LocalDate;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Slf4j
@@ -19,10 +26,12 @@ import java.util.Map;
 public class UserController {
 
     private UserService userService;
+    private NdjsonWriter ndjsonWriter;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, NdjsonWriter ndjsonWriter) {
         this.userService = userService;
+        this.ndjsonWriter = ndjsonWriter;
     }
 
     @GetMapping
@@ -30,19 +39,52 @@ public class UserController {
         return userService.findAll();
     }
 
+    @GetMapping(params = "limit")
+    public ResponseEntity<Collection<User>> findPage(@RequestParam(defaultValue = "0") Integer after,
+                                                   @RequestParam Integer limit) {
+        Collection<User> page = userService.findPage(after, limit);
+        return NdjsonWriter.pageResponse(page, limit, User::getId).body(page);
+    }
+
+    @GetMapping(produces = NdjsonWriter.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        return ResponseEntity.ok()
+                .contentType(NdjsonWriter.APPLICATION_NDJSON)
+                .body(ndjsonWriter.stream(userService::findPage, User::getId));
+    }
+
+    /**
+     * Страница по курсору в NDJSON. Без этого сопоставления запрос с limit и Accept: application/x-ndjson
+     * попадал в findPage и получал 406.
+     */
+    @GetMapping(params = "limit", produces = NdjsonWriter.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamPage(@RequestParam(defaultValue = "0") Integer after,
+                                                            @RequestParam Integer limit) {
+        Collection<User> page = userService.findPage(after, limit);
+        return NdjsonWriter.pageResponse(page, limit, User::getId)
+                .contentType(NdjsonWriter.APPLICATION_NDJSON)
+                .body(ndjsonWriter.write(page));
+    }
+
     @PostMapping
     public User create(@RequestBody @Valid User user) {
         return userService.create(user);
     }
 
+    @PostMapping("/batch")
+    public List<BatchResult> createAll(@RequestBody List<User> users) {
+        return userService.createAll(users);
+    }
+
     @PutMapping
     public User update(@RequestBody @Valid User user) {
         return userService.update(user);
     }
 
     @GetMapping("/{id}")
-    public User getById(@PathVariable Integer id) {
-        return userService.getById(id);
+    public ResponseEntity<User> getById(@PathVariable Integer id) {
+        User user = userService.getById(id);
+        return ResponseEntity.ok().eTag(ETags.of(user)).body(user);
     }
 
     @PutMapping("/{id}/friends/{friendId}")
@@ -55,13 +97,35 @@ public class UserController {
         userService.removeFriend(id, friendId);
     }
 
+    @PutMapping("/friends/batch")
+    public List<BatchResult> addFriends(@RequestBody List<Friendship> friendships) {
+        return userService.addFriends(friendships);
+    }
+
     @GetMapping("{id}/friends")
-    public Collection<User> getFriends(@PathVariable Integer id) {
-        return userService.getFriends(id);
+    public ResponseEntity<Collection<User>> getFriends(@PathVariable Integer id) {
+        Collection<User> friends = userService.getFriends(id);
+        return ResponseEntity.ok().eTag(ETags.ofUsers(friends)).body(friends);
+    }
+
+    @GetMapping(value = "{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@PathVariable Integer id) {
+        return userService.subscribe(id);
+    }
+
+    @GetMapping("{id}/friends/suggestions")
+    public Collection<User> getFriendSuggestions(@PathVariable Integer id,
+                                                 @RequestParam(defaultValue = "10", required = false) Integer count) {
+        return userService.getFriendSuggestions(id, count);
     }
 
     @GetMapping("{id}/friends/common/{otherId}")
     public Collection<User> getCommonFriends(@PathVariable Integer id, @PathVariable Integer otherId) {
         return userService.getCommonFriends(id, otherId);
     }
-}
\ No newline at end of file
+
+    @GetMapping("{id}/friends/common/{otherId}/count")
+    public Map<String, Integer> getCommonFriendsCount(@PathVariable Integer id, @PathVariable Integer otherId) {
+        return Map.of("count", userService.getCommonFriendsCount(id, otherId));
+    }
+}
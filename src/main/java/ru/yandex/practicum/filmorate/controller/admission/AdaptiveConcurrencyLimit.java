@@ -0,0 +1,98 @@
+package ru.yandex.practicum.filmorate.controller.admission;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Глобальный предел одновременно обрабатываемых запросов, подстраиваемый по задержке. Базовая задержка своя
+ * у каждого маршрута: минимальная наблюдаемая, медленно подтягиваемая к текущей, чтобы пережить постоянное
+ * замедление. Иначе быстрый маршрут задал бы общий минимум, и медленные маршруты всегда выглядели бы
+ * перегрузкой. Сглаживается отношение задержки к базовой её маршрута, маршрутов не больше {@link #MAX_ROUTES},
+ * остальные делят одну базовую задержку.
+ * Пока сглаженное отношение не выходит за tolerance, предел растёт примерно на sqrt(limit) за шаг,
+ * если он действительно используется хотя бы наполовину; когда выходит, предел уменьшается пропорционально
+ * превышению, но не больше чем вдвое за шаг. Шаги сглаживаются, поэтому одиночный выброс предел не обрушит.
+ * Обновление пропускается, если его уже делает другой поток: под нагрузкой выборок и так достаточно.
+ */
+public class AdaptiveConcurrencyLimit {
+    static final String ANY_ROUTE = "";
+    static final int MAX_ROUTES = 256;
+
+    private static final double LATENCY_SMOOTHING = 0.05;
+    private static final double LIMIT_SMOOTHING = 0.1;
+    private static final double BASELINE_DRIFT = 0.0001;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicBoolean updating = new AtomicBoolean();
+    private final Map<String, Double> baselines = new HashMap<>();
+    private volatile double limit;
+    private double smoothedRatio = 1.0;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(long latencyNanos) {
+        release(ANY_ROUTE, latencyNanos);
+    }
+
+    public void release(String route, long latencyNanos) {
+        int current = inFlight.getAndDecrement();
+        if (updating.compareAndSet(false, true)) {
+            try {
+                update(route, latencyNanos, current);
+            } finally {
+                updating.set(false);
+            }
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void update(String route, long latencyNanos, int inFlightBefore) {
+        Double known = baselines.get(route);
+        if (known == null && baselines.size() >= MAX_ROUTES) {
+            route = ANY_ROUTE;
+            known = baselines.get(route);
+        }
+        double baselineNanos = known == null || latencyNanos < known ? latencyNanos
+                : known + (latencyNanos - known) * BASELINE_DRIFT;
+        baselines.put(route, baselineNanos);
+        smoothedRatio += (latencyNanos / Math.max(baselineNanos, 1) - smoothedRatio) * LATENCY_SMOOTHING;
+
+        double current = limit;
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance / smoothedRatio));
+        double target = current * gradient;
+        if (gradient == 1.0 && inFlightBefore * 2 >= current) {
+            target += Math.sqrt(current);
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit,
+                current * (1 - LIMIT_SMOOTHING) + target * LIMIT_SMOOTHING));
+    }
+}
@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.controller.admission;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Подключает {@link AdmissionInterceptor} к эндпоинтам фильмов и пользователей и публикует метрики
+ * filmorate.admission: текущий предел, число запросов в обработке, число отслеживаемых вызывающих и отказы.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "filmorate.admission", name = "enabled", havingValue = "true")
+public class AdmissionConfig implements WebMvcConfigurer {
+    private final AdmissionInterceptor interceptor;
+
+    @Autowired
+    public AdmissionConfig(AdmissionProperties properties, MeterRegistry registry) {
+        CallerRateLimiter rateLimiter = new CallerRateLimiter(properties.getRatePerSecond(), properties.getBurst(),
+                properties.getMaxCallers(), properties.getIdleSeconds());
+        AdaptiveConcurrencyLimit concurrencyLimit = new AdaptiveConcurrencyLimit(properties.getInitialConcurrency(),
+                properties.getMinConcurrency(), properties.getMaxConcurrency(), properties.getLatencyTolerance());
+        this.interceptor = new AdmissionInterceptor(rateLimiter, concurrencyLimit, properties.getCallerHeader(),
+                properties.getTrustedProxies(), registry);
+
+        Gauge.builder("filmorate.admission.limit", concurrencyLimit, AdaptiveConcurrencyLimit::getLimit)
+                .register(registry);
+        Gauge.builder("filmorate.admission.in.flight", concurrencyLimit, AdaptiveConcurrencyLimit::getInFlight)
+                .register(registry);
+        Gauge.builder("filmorate.admission.callers", rateLimiter, CallerRateLimiter::callers)
+                .register(registry);
+        log.info("Контроль допуска включён: {} запросов/с на вызывающего, всплеск {}, предел одновременных {}",
+                properties.getRatePerSecond(), properties.getBurst(), properties.getInitialConcurrency());
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(interceptor).addPathPatterns("/films/**", "/users/**");
+    }
+}
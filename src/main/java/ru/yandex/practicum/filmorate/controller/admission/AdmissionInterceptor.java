@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate.controller.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import ru.yandex.practicum.filmorate.exception.OverloadedException;
+import ru.yandex.practicum.filmorate.exception.RateLimitedException;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.security.Principal;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Допуск запросов к контроллерам: сначала token bucket вызывающего (429), затем общий предел
+ * одновременных запросов (503). Отказ стоит пары атомарных операций и не доходит до сервисов.
+ * Вызывающий - аутентифицированный пользователь, иначе адрес клиента. Заголовок callerHeader клиент может
+ * подставить любой, поэтому он учитывается только в запросах с адресов trustedProxies. Задержка запроса
+ * передаётся пределу вместе с маршрутом, по которому он обработан. Потоковые ответы (SSE, NDJSON) занимают
+ * место в пределе только до перехода в асинхронный режим.
+ */
+@Slf4j
+public class AdmissionInterceptor implements AsyncHandlerInterceptor {
+    static final String REJECTED = "filmorate.admission.rejected";
+
+    private static final String STARTED = AdmissionInterceptor.class.getName() + ".started";
+
+    private final CallerRateLimiter rateLimiter;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final String callerHeader;
+    private final Set<String> trustedProxies;
+    private final Counter rateLimited;
+    private final Counter overloaded;
+
+    public AdmissionInterceptor(CallerRateLimiter rateLimiter, AdaptiveConcurrencyLimit concurrencyLimit,
+                                String callerHeader, Collection<String> trustedProxies, MeterRegistry registry) {
+        this.rateLimiter = rateLimiter;
+        this.concurrencyLimit = concurrencyLimit;
+        this.callerHeader = callerHeader;
+        this.trustedProxies = Set.copyOf(trustedProxies);
+        this.rateLimited = registry.counter(REJECTED, "reason", "rate");
+        this.overloaded = registry.counter(REJECTED, "reason", "concurrency");
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+
+        String caller = caller(request);
+        long waitNanos = rateLimiter.tryAcquire(caller);
+        if (waitNanos > 0) {
+            rateLimited.increment();
+            log.debug("Запрос {} {} от {} отклонён по лимиту частоты", request.getMethod(),
+                    request.getRequestURI(), caller);
+            response.setHeader(HttpHeaders.RETRY_AFTER,
+                    String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999))));
+            throw new RateLimitedException("Слишком много запросов, повторите позже");
+        }
+
+        if (!concurrencyLimit.tryAcquire()) {
+            overloaded.increment();
+            log.debug("Запрос {} {} отклонён: одновременно обрабатывается {} запросов при пределе {}",
+                    request.getMethod(), request.getRequestURI(), concurrencyLimit.getInFlight(),
+                    concurrencyLimit.getLimit());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            throw new OverloadedException("Сервер перегружен, повторите запрос позже");
+        }
+        request.setAttribute(STARTED, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        release(request);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        release(request);
+    }
+
+    private void release(HttpServletRequest request) {
+        Object started = request.getAttribute(STARTED);
+        if (started != null) {
+            request.removeAttribute(STARTED);
+            concurrencyLimit.release(route(request), System.nanoTime() - (Long) started);
+        }
+    }
+
+    private String caller(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        if (principal != null) {
+            return "user:" + principal.getName();
+        }
+        String address = request.getRemoteAddr();
+        if (trustedProxies.contains(address)) {
+            String caller = request.getHeader(callerHeader);
+            if (caller != null && !caller.isBlank()) {
+                return caller;
+            }
+        }
+        return address;
+    }
+
+    /**
+     * Шаблон пути обработчика, а не сам путь: /films/{id} - один маршрут для всех фильмов.
+     */
+    private static String route(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern == null ? AdaptiveConcurrencyLimit.ANY_ROUTE : request.getMethod() + " " + pattern;
+    }
+}
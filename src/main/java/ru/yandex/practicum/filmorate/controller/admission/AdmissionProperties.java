@@ -0,0 +1,27 @@
+package ru.yandex.practicum.filmorate.controller.admission;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "filmorate.admission")
+public class AdmissionProperties {
+    private boolean enabled = false;
+    private String callerHeader = "X-Caller-Id";
+    /**
+     * Адреса прокси, которым доверяется заголовок callerHeader. От остальных клиентов он игнорируется.
+     */
+    private List<String> trustedProxies = List.of();
+    private double ratePerSecond = 50;
+    private int burst = 100;
+    private int maxCallers = 100_000;
+    private long idleSeconds = 300;
+    private int initialConcurrency = 64;
+    private int minConcurrency = 8;
+    private int maxConcurrency = 1_024;
+    private double latencyTolerance = 2.0;
+}
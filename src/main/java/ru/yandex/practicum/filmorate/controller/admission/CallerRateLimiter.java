@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.controller.admission;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket на каждого вызывающего: корзина вмещает burst токенов и пополняется со скоростью
+ * ratePerSecond, запрос забирает один токен. Память ограничена maxCallers корзинами: когда место кончается,
+ * удаляются корзины, простаивавшие дольше idle (к этому времени они всё равно полные, так что вызывающий
+ * ничего не теряет), а если все активны, новые вызывающие делят одну общую корзину.
+ */
+public class CallerRateLimiter {
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final double tokensPerNano;
+    private final double burst;
+    private final int maxCallers;
+    private final long idleNanos;
+    private final LongSupplier clock;
+    private final Bucket overflow;
+    private final AtomicLong lastSweep = new AtomicLong(Long.MIN_VALUE);
+
+    public CallerRateLimiter(double ratePerSecond, int burst, int maxCallers, long idleSeconds) {
+        this(ratePerSecond, burst, maxCallers, idleSeconds, System::nanoTime);
+    }
+
+    CallerRateLimiter(double ratePerSecond, int burst, int maxCallers, long idleSeconds, LongSupplier clock) {
+        this.tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.maxCallers = maxCallers;
+        this.idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+        this.clock = clock;
+        this.overflow = new Bucket(clock.getAsLong());
+    }
+
+    /**
+     * @return 0, если запрос пропущен, иначе через сколько наносекунд у вызывающего появится токен
+     */
+    public long tryAcquire(String caller) {
+        long now = clock.getAsLong();
+        Bucket bucket = buckets.get(caller);
+
+        if (bucket == null) {
+            bucket = register(caller, now);
+        }
+        return bucket.tryAcquire(now);
+    }
+
+    public int callers() {
+        return buckets.size();
+    }
+
+    private Bucket register(String caller, long now) {
+        if (buckets.size() >= maxCallers) {
+            evictIdle(now);
+            if (buckets.size() >= maxCallers) {
+                return overflow;
+            }
+        }
+        return buckets.computeIfAbsent(caller, key -> new Bucket(now));
+    }
+
+    /**
+     * Полный обход таблицы делает один поток и не чаще раза в секунду, чтобы поток новых вызывающих
+     * при заполненной таблице не превращал каждый запрос в обход.
+     */
+    private void evictIdle(long now) {
+        long last = lastSweep.get();
+        if (last != Long.MIN_VALUE && now - last < TimeUnit.SECONDS.toNanos(1)) {
+            return;
+        }
+        if (lastSweep.compareAndSet(last, now)) {
+            buckets.values().removeIf(bucket -> bucket.idleSince(now) > idleNanos);
+        }
+    }
+
+    private final class Bucket {
+        private double tokens;
+        private long refilled;
+
+        private Bucket(long now) {
+            this.tokens = burst;
+            this.refilled = now;
+        }
+
+        private synchronized long tryAcquire(long now) {
+            tokens = Math.min(burst, tokens + (now - refilled) * tokensPerNano);
+            refilled = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / tokensPerNano);
+        }
+
+        private synchronized long idleSince(long now) {
+            return now - refilled;
+        }
+    }
+}
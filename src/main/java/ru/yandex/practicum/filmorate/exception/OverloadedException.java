@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.exception;
+
+public class OverloadedException extends RuntimeException {
+    public OverloadedException() {
+    }
+
+    public OverloadedException(String message) {
+        super(message);
+    }
+
+    public OverloadedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public OverloadedException(Throwable cause) {
+        super(cause);
+    }
+
+    public OverloadedException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+}
@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.exception;
+
+public class RateLimitedException extends RuntimeException {
+    public RateLimitedException() {
+    }
+
+    public RateLimitedException(String message) {
+        super(message);
+    }
+
+    public RateLimitedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public RateLimitedException(Throwable cause) {
+        super(cause);
+    }
+
+    public RateLimitedException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+}
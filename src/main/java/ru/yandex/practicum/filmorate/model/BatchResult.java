@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import org.springframework.http.HttpStatus;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchResult {
+    private int index;
+    private int status;
+    private Integer id;
+    private String error;
+    @JsonIgnore
+    private boolean changed = true;
+
+    public BatchResult(int index, int status, Integer id, String error) {
+        this.index = index;
+        this.status = status;
+        this.id = id;
+        this.error = error;
+    }
+
+    public static BatchResult ok(Integer id) {
+        return new BatchResult(0, HttpStatus.OK.value(), id, null);
+    }
+
+    /**
+     * Элемент принят, но ничего не изменил, например лайк уже был поставлен.
+     */
+    public static BatchResult unchanged(Integer id) {
+        BatchResult result = ok(id);
+        result.setChanged(false);
+        return result;
+    }
+
+    public static BatchResult invalid(String error) {
+        return new BatchResult(0, HttpStatus.BAD_REQUEST.value(), null, error);
+    }
+
+    public static BatchResult notFound(String error) {
+        return new BatchResult(0, HttpStatus.NOT_FOUND.value(), null, error);
+    }
+
+    @JsonIgnore
+    public boolean isSuccessful() {
+        return status == HttpStatus.OK.value();
+    }
+}
@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChangeEvent {
+    public static final String LIKE_ADDED = "like-added";
+    public static final String LIKE_REMOVED = "like-removed";
+    public static final String FRIEND_ADDED = "friend-added";
+    public static final String FRIEND_REMOVED = "friend-removed";
+
+    @JsonIgnore
+    private String type;
+    private Integer filmId;
+    private Integer userId;
+    private Integer friendId;
+
+    public ChangeEvent(String type, Integer filmId, Integer userId, Integer friendId) {
+        this.type = type;
+        this.filmId = filmId;
+        this.userId = userId;
+        this.friendId = friendId;
+    }
+
+    public static ChangeEvent like(String type, int filmId, int userId) {
+        return new ChangeEvent(type, filmId, userId, null);
+    }
+
+    public static ChangeEvent friendship(String type, int userId, int friendId) {
+        return new ChangeEvent(type, null, userId, friendId);
+    }
+}
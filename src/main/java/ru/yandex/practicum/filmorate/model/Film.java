@@ -1,11 +1,11 @@
 package ru.yandex.practicum.filmorate.model;
 
 import lombok.Data;
+import ru.yandex.practicum.filmorate.util.CompactIntSet;
 
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.Positive;
 import java.time.LocalDate;
-import java.util.HashSet;
 import java.util.Set;
 
 @Data
@@ -17,7 +17,11 @@ public class Film {
     private LocalDate releaseDate;
     @Positive
     private int duration;
-    private Set<Integer> likesByUsers = new HashSet<>();
+    private Set<Integer> likesByUsers = new CompactIntSet();
+    /**
+     * Растёт при каждом изменении фильма, в том числе лайков. Назначается хранилищем.
+     */
+    private volatile long version;
 
     public Film(int id, String name, String description, LocalDate releaseDate, int duration) {
         this.id = id;
@@ -26,4 +30,19 @@ public class Film {
         this.releaseDate = releaseDate;
         this.duration = duration;
     }
+
+    /**
+     * Копия со своим набором лайков. Хранилище не меняет опубликованный фильм, а публикует изменённую копию.
+     * Набор копируется за O(1): он делит неизменяемое состояние с исходным, пока один из них не изменится.
+     */
+    public Film copy() {
+        Film copy = new Film(id, name, description, releaseDate, duration);
+        copy.setLikesByUsers(likesByUsers);
+        copy.version = version;
+        return copy;
+    }
+
+    public void setLikesByUsers(Set<Integer> likesByUsers) {
+        this.likesByUsers = likesByUsers == null ? new CompactIntSet() : new CompactIntSet(likesByUsers);
+    }
 }
\ No newline at end of file
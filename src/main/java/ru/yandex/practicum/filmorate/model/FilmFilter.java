@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * Условия выборки фильмов. Незаданная граница не ограничивает выборку, заданные границы включаются.
+ */
+@Data
+public class FilmFilter {
+    private LocalDate releasedFrom;
+    private LocalDate releasedTo;
+    private Integer minDuration;
+    private Integer maxDuration;
+
+    public FilmFilter(LocalDate releasedFrom, LocalDate releasedTo, Integer minDuration, Integer maxDuration) {
+        this.releasedFrom = releasedFrom;
+        this.releasedTo = releasedTo;
+        this.minDuration = minDuration;
+        this.maxDuration = maxDuration;
+    }
+
+    public boolean hasReleaseDate() {
+        return releasedFrom != null || releasedTo != null;
+    }
+
+    public boolean hasDuration() {
+        return minDuration != null || maxDuration != null;
+    }
+
+    public boolean test(Film film) {
+        LocalDate releaseDate = film.getReleaseDate();
+        if (hasReleaseDate() && (releaseDate == null
+                || releasedFrom != null && releaseDate.isBefore(releasedFrom)
+                || releasedTo != null && releaseDate.isAfter(releasedTo))) {
+            return false;
+        }
+        return (minDuration == null || film.getDuration() >= minDuration)
+                && (maxDuration == null || film.getDuration() <= maxDuration);
+    }
+}
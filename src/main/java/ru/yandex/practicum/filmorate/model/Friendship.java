@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Data;
+
+@Data
+public class Friendship {
+    private int userId;
+    private int friendId;
+
+    public Friendship(int userId, int friendId) {
+        this.userId = userId;
+        this.friendId = friendId;
+    }
+}
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.time.Duration;
+
+/**
+ * Окно подсчёта лайков для трендов и размер корзины, с точностью до которой окно сдвигается.
+ */
+public enum TrendWindow {
+    HOUR(Duration.ofHours(1), Duration.ofMinutes(1)),
+    DAY(Duration.ofDays(1), Duration.ofMinutes(30)),
+    WEEK(Duration.ofDays(7), Duration.ofHours(3));
+
+    private final Duration length;
+    private final Duration bucket;
+
+    TrendWindow(Duration length, Duration bucket) {
+        this.length = length;
+        this.bucket = bucket;
+    }
+
+    public Duration getLength() {
+        return length;
+    }
+
+    public Duration getBucket() {
+        return bucket;
+    }
+}
@@ -1,10 +1,10 @@
 package ru.yandex.practicum.filmorate.model;
 
 import lombok.Data;
+import ru.yandex.practicum.filmorate.util.RoaringIntSet;
 
 import javax.validation.constraints.*;
 import java.time.LocalDate;
-import java.util.HashSet;
 import java.util.Set;
 
 @Data
@@ -17,7 +17,11 @@ public class User {
     private String name;
     @Past
     private LocalDate birthday;
-    private Set<Integer> friends = new HashSet<>();
+    private Set<Integer> friends = new RoaringIntSet();
+    /**
+     * Растёт при каждом изменении пользователя, в том числе списка друзей. Назначается хранилищем.
+     */
+    private volatile long version;
 
     public User(int id, String email, String login, String name, LocalDate birthday) {
         this.id = id;
@@ -26,4 +30,19 @@ public class User {
         this.name = name;
         this.birthday = birthday;
     }
+
+    /**
+     * Копия со своим набором друзей. Хранилище не меняет опубликованного пользователя, а публикует изменённую копию.
+     * Набор копируется за O(1): он делит неизменяемое состояние с исходным, пока один из них не изменится.
+     */
+    public User copy() {
+        User copy = new User(id, email, login, name, birthday);
+        copy.setFriends(friends);
+        copy.version = version;
+        return copy;
+    }
+
+    public void setFriends(Set<Integer> friends) {
+        this.friends = friends == null ? new RoaringIntSet() : new RoaringIntSet(friends);
+    }
 }
\ No newline at end of file
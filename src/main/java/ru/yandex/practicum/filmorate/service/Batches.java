@@ -0,0 +1,93 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Slf4j
+final class Batches {
+    static final int MAX_BATCH_SIZE = 10_000;
+
+    private static final Validator BEAN_VALIDATOR = Validation.buildDefaultValidatorFactory().getValidator();
+
+    private Batches() {
+    }
+
+    /**
+     * Проверяет каждый элемент пачки по отдельности, прошедшие проверку передаёт в хранилище одной операцией
+     * и возвращает результаты в порядке исходных элементов. Кроме проверок сервиса применяются ограничения
+     * javax.validation, которые у одиночных эндпоинтов проверяет @Valid: элементы пачки Spring не проверяет.
+     */
+    static <T> List<BatchResult> apply(List<T> items, Consumer<T> validator,
+                                       Function<List<T>, List<BatchResult>> storageOperation) {
+        if (items == null || items.isEmpty() || items.size() > MAX_BATCH_SIZE) {
+            log.warn("Попытка выполнить пакетную операцию недопустимого размера");
+            throw new ValidationException(String.format("Размер пакета должен быть от 1 до %d", MAX_BATCH_SIZE));
+        }
+
+        BatchResult[] results = new BatchResult[items.size()];
+        List<T> valid = new ArrayList<>(items.size());
+        List<Integer> positions = new ArrayList<>(items.size());
+
+        for (int i = 0; i < items.size(); i++) {
+            T item = items.get(i);
+            if (item == null) {
+                results[i] = BatchResult.invalid("Элемент пакета не может быть пустым");
+                continue;
+            }
+            try {
+                validator.accept(item);
+                String violations = violations(item);
+                if (violations != null) {
+                    log.warn("Элемент пакета не прошёл проверку ограничений: {}", violations);
+                    results[i] = BatchResult.invalid(violations);
+                    continue;
+                }
+                valid.add(item);
+                positions.add(i);
+            } catch (ValidationException e) {
+                results[i] = BatchResult.invalid(e.getMessage());
+            } catch (FilmNotFoundException | UserNotFoundException e) {
+                results[i] = BatchResult.notFound(e.getMessage());
+            }
+        }
+
+        if (!valid.isEmpty()) {
+            List<BatchResult> stored = storageOperation.apply(valid);
+            for (int i = 0; i < stored.size(); i++) {
+                results[positions.get(i)] = stored.get(i);
+            }
+        }
+
+        for (int i = 0; i < results.length; i++) {
+            results[i].setIndex(i);
+        }
+        log.debug("Пакет из {} элементов обработан", results.length);
+
+        return Arrays.asList(results);
+    }
+
+    private static <T> String violations(T item) {
+        Set<ConstraintViolation<T>> violations = BEAN_VALIDATOR.validate(item);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+}
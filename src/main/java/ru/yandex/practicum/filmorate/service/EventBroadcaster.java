@@ -0,0 +1,299 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.model.ChangeEvent;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Рассылка изменений лайков и дружбы подписчикам SSE.
+ * <p>
+ * Публикация не блокирует пишущий поток: событие кладётся в ограниченный буфер каждого подписчика,
+ * а отправкой занимается пул рассылки. Когда буфер медленного клиента полон, самое старое событие
+ * выбрасывается, а клиент получает событие "dropped" с числом потерянных. Подписка на популярные фильмы
+ * не буферизует лайки: изменения схлопываются в одну отметку, и при отправке клиент получает
+ * актуальный список целиком.
+ * <p>
+ * Отправка клиенту блокирует поток рассылки, поэтому сторож следит за её длительностью. Если отправка
+ * не уложилась в {@link #SEND_TIMEOUT_MILLIS}, подписчик отключается, а пул получает поток взамен занятого,
+ * так что несколько зависших клиентов не останавливают рассылку остальным. Когда зависшая отправка
+ * всё-таки завершится, поток возвращается в пул, а соединение закрывается с ошибкой.
+ */
+@Slf4j
+@Component
+public class EventBroadcaster {
+    static final int BUFFER_SIZE = 256;
+    static final int BATCH_SIZE = 32;
+    static final long SEND_TIMEOUT_MILLIS = 10_000;
+    private static final int DISPATCH_THREADS = 4;
+    private static final int MAX_STUCK_SENDS = 64;
+    private static final long TIMEOUT_MILLIS = 30 * 60 * 1000L;
+    private static final String POPULAR = "popular";
+
+    private final Map<String, Set<Subscriber>> topics = new ConcurrentHashMap<>();
+    private final AtomicInteger threadNumber = new AtomicInteger();
+    private final AtomicInteger stuckSends = new AtomicInteger();
+    private final long sendTimeoutNanos;
+    private final ThreadPoolExecutor dispatcher;
+    private final ScheduledExecutorService watchdog;
+
+    @Autowired
+    public EventBroadcaster() {
+        this(SEND_TIMEOUT_MILLIS);
+    }
+
+    EventBroadcaster(long sendTimeoutMillis) {
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        this.dispatcher = new ThreadPoolExecutor(DISPATCH_THREADS, DISPATCH_THREADS + MAX_STUCK_SENDS,
+                1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "sse-dispatch-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sse-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(sendTimeoutMillis / 2, 10);
+        watchdog.scheduleWithFixedDelay(this::abandonStuckSends, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public SseEmitter subscribeFilm(int filmId) {
+        return subscribe(filmTopic(filmId), new SseEmitter(TIMEOUT_MILLIS), null);
+    }
+
+    public SseEmitter subscribeUser(int userId) {
+        return subscribe(userTopic(userId), new SseEmitter(TIMEOUT_MILLIS), null);
+    }
+
+    public SseEmitter subscribePopular(Supplier<?> popular) {
+        return subscribe(POPULAR, new SseEmitter(TIMEOUT_MILLIS), popular);
+    }
+
+    public void likeChanged(ChangeEvent event) {
+        publish(filmTopic(event.getFilmId()), event);
+        publish(userTopic(event.getUserId()), event);
+        Set<Subscriber> popular = topics.get(POPULAR);
+        if (popular != null) {
+            popular.forEach(Subscriber::touch);
+        }
+    }
+
+    public void friendshipChanged(ChangeEvent event) {
+        publish(userTopic(event.getUserId()), event);
+        publish(userTopic(event.getFriendId()), event);
+    }
+
+    int subscribers() {
+        return topics.values().stream().mapToInt(Set::size).sum();
+    }
+
+    SseEmitter subscribe(String topic, SseEmitter emitter, Supplier<?> snapshot) {
+        Subscriber subscriber = new Subscriber(topic, emitter, snapshot);
+        topics.compute(topic, (key, subscribers) -> {
+            Set<Subscriber> updated = subscribers == null ? ConcurrentHashMap.newKeySet() : subscribers;
+            updated.add(subscriber);
+            return updated;
+        });
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+        log.debug("Новый подписчик на события {}", topic);
+        return emitter;
+    }
+
+    @PreDestroy
+    public void stop() {
+        watchdog.shutdownNow();
+        dispatcher.shutdownNow();
+    }
+
+    static String filmTopic(int filmId) {
+        return "film:" + filmId;
+    }
+
+    static String userTopic(int userId) {
+        return "user:" + userId;
+    }
+
+    private void abandonStuckSends() {
+        long now = System.nanoTime();
+        topics.values().forEach(subscribers -> subscribers.forEach(subscriber -> {
+            if (subscriber.sending && now - subscriber.sendStarted > sendTimeoutNanos) {
+                subscriber.abandon();
+            }
+        }));
+    }
+
+    /**
+     * Держит в пуле DISPATCH_THREADS свободных потоков сверх занятых зависшими отправками.
+     */
+    private synchronized void resizeDispatcher() {
+        dispatcher.setCorePoolSize(DISPATCH_THREADS + Math.min(stuckSends.get(), MAX_STUCK_SENDS));
+    }
+
+    private void publish(String topic, ChangeEvent event) {
+        Set<Subscriber> subscribers = topics.get(topic);
+        if (subscribers != null) {
+            subscribers.forEach(subscriber -> subscriber.offer(event));
+        }
+    }
+
+    private class Subscriber implements Runnable {
+        private final String topic;
+        private final SseEmitter emitter;
+        private final Supplier<?> snapshot;
+        private final ArrayDeque<ChangeEvent> buffer = new ArrayDeque<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private int dropped;
+        private boolean changed;
+        private boolean abandoned;
+        private volatile boolean closed;
+        private volatile boolean sending;
+        private volatile long sendStarted;
+
+        private Subscriber(String topic, SseEmitter emitter, Supplier<?> snapshot) {
+            this.topic = topic;
+            this.emitter = emitter;
+            this.snapshot = snapshot;
+        }
+
+        private void offer(ChangeEvent event) {
+            synchronized (this) {
+                if (buffer.size() == BUFFER_SIZE) {
+                    buffer.pollFirst();
+                    dropped++;
+                }
+                buffer.addLast(event);
+            }
+            schedule();
+        }
+
+        private void touch() {
+            synchronized (this) {
+                changed = true;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (!closed && scheduled.compareAndSet(false, true)) {
+                dispatcher.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!closed) {
+                    drain();
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Подписчик на события {} отключился: {}", topic, e.getMessage());
+                emitter.completeWithError(e);
+                close();
+            } finally {
+                scheduled.set(false);
+            }
+            synchronized (this) {
+                if (!buffer.isEmpty() || changed) {
+                    schedule();
+                }
+            }
+        }
+
+        /**
+         * Отправляет не больше {@link #BATCH_SIZE} событий. Остальное уходит следующим заходом в конец очереди
+         * пула, так что подписчики с непрерывным потоком событий чередуются с остальными.
+         */
+        private void drain() throws IOException {
+            List<ChangeEvent> events = new ArrayList<>(BATCH_SIZE);
+            int lost;
+            boolean refresh;
+            synchronized (this) {
+                while (events.size() < BATCH_SIZE && !buffer.isEmpty()) {
+                    events.add(buffer.pollFirst());
+                }
+                lost = dropped;
+                dropped = 0;
+                refresh = changed;
+                changed = false;
+            }
+            if (lost > 0) {
+                send(SseEmitter.event().name("dropped").data(Map.of("count", lost)));
+            }
+            for (ChangeEvent event : events) {
+                send(SseEmitter.event().name(event.getType()).data(event, MediaType.APPLICATION_JSON));
+            }
+            if (refresh) {
+                send(SseEmitter.event().name(POPULAR).data(snapshot.get(), MediaType.APPLICATION_JSON));
+            }
+        }
+
+        private void send(SseEmitter.SseEventBuilder event) throws IOException {
+            sendStarted = System.nanoTime();
+            sending = true;
+            boolean timedOut;
+            try {
+                emitter.send(event);
+            } finally {
+                synchronized (this) {
+                    sending = false;
+                    timedOut = abandoned;
+                }
+                if (timedOut) {
+                    stuckSends.decrementAndGet();
+                    resizeDispatcher();
+                }
+            }
+            if (timedOut) {
+                throw new IOException("Отправка не уложилась в "
+                        + TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos) + " мс");
+            }
+        }
+
+        /**
+         * Отключает подписчика, чья отправка зависла, и даёт пулу поток взамен занятого ею.
+         */
+        private void abandon() {
+            synchronized (this) {
+                if (!sending || abandoned) {
+                    return;
+                }
+                abandoned = true;
+            }
+            log.warn("Подписчик на события {} не принимает данные и отключён", topic);
+            close();
+            stuckSends.incrementAndGet();
+            resizeDispatcher();
+        }
+
+        private void close() {
+            closed = true;
+            topics.computeIfPresent(topic, (key, subscribers) -> {
+                subscribers.remove(this);
+                return subscribers.isEmpty() ? null : subscribers;
+            });
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.StripedLock;
+import ru.yandex.practicum.filmorate.util.CompactIntSet;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Рекомендации "с этим фильмом также лайкают" и персональные рекомендации по совместным лайкам.
+ * <p>
+ * Для каждого фильма хранится не больше {@link #MAX_NEIGHBOURS} соседей со счётчиками совместных лайков.
+ * Переполнение обрабатывается по схеме Space-Saving: новый сосед вытесняет соседа с минимальным счётчиком
+ * и наследует его значение, поэтому часто совместно лайкаемые фильмы не теряются, а счётчики редких
+ * могут быть завышены. Пары считаются только внутри окна из {@link #MAX_USER_HISTORY} последних лайков
+ * пользователя: новый лайк добавляет пары с окном, а вытесненный из окна фильм снимает свои, поэтому
+ * добавление и удаление лайка меняют одни и те же пары, а стоимость обновления ограничена. При построении
+ * из хранилища порядок лайков неизвестен, и окном считаются фильмы с наибольшими id, то есть самые новые.
+ * <p>
+ * Сходство - косинусная мера: совместные лайки, делённые на корень из произведения числа лайков фильмов.
+ * Индекс строится из хранилища при первом обращении и дальше обновляется инкрементально из FilmService.
+ * Применение лайка идемпотентно, поэтому лайк, уже учтённый при построении, повторно не засчитывается.
+ */
+@Slf4j
+@Component
+public class FilmRecommendations {
+    static final int MAX_NEIGHBOURS = 100;
+    static final int MAX_USER_HISTORY = 200;
+    static final int MAX_RECOMMENDATIONS = 100;
+    private static final int LOCK_STRIPES = 64;
+
+    private final FilmStorage filmStorage;
+    private final StripedLock userLocks = new StripedLock(LOCK_STRIPES);
+    private final ReadWriteLock buildLock = new ReentrantReadWriteLock();
+    private final Map<Integer, UserLikes> filmsByUser = new ConcurrentHashMap<>();
+    private final Map<Integer, Neighbours> neighbours = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> likeCounts = new ConcurrentHashMap<>();
+    private volatile boolean built;
+
+    @Autowired
+    public FilmRecommendations(FilmStorage filmStorage) {
+        this.filmStorage = filmStorage;
+    }
+
+    public void likeAdded(int filmId, int userId) {
+        ensureBuilt();
+        buildLock.readLock().lock();
+        userLocks.lock(userId);
+        try {
+            UserLikes likes = filmsByUser.computeIfAbsent(userId, key -> new UserLikes());
+            if (!likes.films.addInt(filmId)) {
+                return;
+            }
+            int[] recent = likes.recent;
+            if (recent.length == MAX_USER_HISTORY) {
+                // самый старый лайк выходит из окна вместе со своими парами
+                for (int i = 1; i < recent.length; i++) {
+                    pair(recent[0], recent[i], -1);
+                }
+                recent = Arrays.copyOfRange(recent, 1, recent.length);
+            }
+            for (int other : recent) {
+                pair(filmId, other, 1);
+            }
+            int[] updated = Arrays.copyOf(recent, recent.length + 1);
+            updated[recent.length] = filmId;
+            likes.recent = updated;
+            likeCounts.merge(filmId, 1, Integer::sum);
+        } finally {
+            userLocks.unlock(userId);
+            buildLock.readLock().unlock();
+        }
+    }
+
+    public void likeRemoved(int filmId, int userId) {
+        ensureBuilt();
+        buildLock.readLock().lock();
+        userLocks.lock(userId);
+        try {
+            UserLikes likes = filmsByUser.get(userId);
+            if (likes == null || !likes.films.removeInt(filmId)) {
+                return;
+            }
+            int[] recent = likes.recent;
+            int index = indexOf(recent, filmId);
+            if (index >= 0) {
+                int[] updated = new int[recent.length - 1];
+                System.arraycopy(recent, 0, updated, 0, index);
+                System.arraycopy(recent, index + 1, updated, index, updated.length - index);
+                for (int other : updated) {
+                    pair(filmId, other, -1);
+                }
+                likes.recent = updated;
+            }
+            likeCounts.merge(filmId, -1, Integer::sum);
+        } finally {
+            userLocks.unlock(userId);
+            buildLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Переносит в индекс замену лайков фильма целиком, например при обновлении фильма: применяются только
+     * лайки, которые появились или пропали, так что без изменений лайков индекс не трогается.
+     */
+    public void likesReplaced(int filmId, Set<Integer> before, Set<Integer> after) {
+        for (Integer userId : before) {
+            if (!after.contains(userId)) {
+                likeRemoved(filmId, userId);
+            }
+        }
+        for (Integer userId : after) {
+            if (!before.contains(userId)) {
+                likeAdded(filmId, userId);
+            }
+        }
+    }
+
+    public List<Integer> similar(int filmId, int count) {
+        ensureBuilt();
+        Neighbours filmNeighbours = neighbours.get(filmId);
+        if (filmNeighbours == null) {
+            return List.of();
+        }
+        Map<Integer, Double> scores = new HashMap<>();
+        filmNeighbours.forEach((other, together) -> scores.put(other, similarity(filmId, other, together)));
+        return top(scores, count);
+    }
+
+    public List<Integer> recommend(int userId, int count) {
+        ensureBuilt();
+        UserLikes likes = filmsByUser.get(userId);
+        if (likes == null) {
+            return List.of();
+        }
+        Map<Integer, Double> scores = new HashMap<>();
+        for (int filmId : likes.recent) {
+            Neighbours filmNeighbours = neighbours.get(filmId);
+            if (filmNeighbours != null) {
+                filmNeighbours.forEach((other, together) -> {
+                    if (!likes.films.containsInt(other)) {
+                        scores.merge(other, similarity(filmId, other, together), Double::sum);
+                    }
+                });
+            }
+        }
+        return top(scores, count);
+    }
+
+    private void ensureBuilt() {
+        if (built) {
+            return;
+        }
+        buildLock.writeLock().lock();
+        try {
+            if (built) {
+                return;
+            }
+            long start = System.nanoTime();
+            for (Film film : filmStorage.findAll()) {
+                likeCounts.put(film.getId(), film.getLikesByUsers().size());
+                for (Integer userId : film.getLikesByUsers()) {
+                    filmsByUser.computeIfAbsent(userId, key -> new UserLikes()).films.addInt(film.getId());
+                }
+            }
+            filmsByUser.values().forEach(likes -> {
+                int[] films = likes.films.toIntArray();
+                int[] recent = Arrays.copyOfRange(films, Math.max(films.length - MAX_USER_HISTORY, 0), films.length);
+                for (int i = 0; i < recent.length; i++) {
+                    for (int j = i + 1; j < recent.length; j++) {
+                        pair(recent[i], recent[j], 1);
+                    }
+                }
+                likes.recent = recent;
+            });
+            built = true;
+            log.info("Индекс рекомендаций построен за {} мс: фильмов {}, пользователей {}",
+                    (System.nanoTime() - start) / 1_000_000, likeCounts.size(), filmsByUser.size());
+        } finally {
+            buildLock.writeLock().unlock();
+        }
+    }
+
+    private Neighbours neighbours(int filmId) {
+        return neighbours.computeIfAbsent(filmId, key -> new Neighbours());
+    }
+
+    private void pair(int filmId, int other, int delta) {
+        neighbours(filmId).add(other, delta);
+        neighbours(other).add(filmId, delta);
+    }
+
+    private double similarity(int filmId, int other, int together) {
+        int likes = Math.max(likeCounts.getOrDefault(filmId, 0), 1);
+        int otherLikes = Math.max(likeCounts.getOrDefault(other, 0), 1);
+        return together / Math.sqrt((double) likes * otherLikes);
+    }
+
+    private static int indexOf(int[] values, int value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static List<Integer> top(Map<Integer, Double> scores, int count) {
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Double>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(count)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Все фильмы, которые лайкнул пользователь, и окно последних лайков в порядке их появления.
+     * Окно заменяется целиком под блокировкой пользователя, поэтому читается без неё.
+     */
+    private static final class UserLikes {
+        private final CompactIntSet films = new CompactIntSet();
+        private volatile int[] recent = new int[0];
+    }
+
+    /**
+     * Ограниченный список соседей фильма со счётчиками совместных лайков.
+     */
+    static class Neighbours {
+        private int[] ids = new int[8];
+        private int[] counts = new int[8];
+        private int size;
+
+        synchronized void add(int id, int delta) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    counts[i] += delta;
+                    if (counts[i] <= 0) {
+                        size--;
+                        ids[i] = ids[size];
+                        counts[i] = counts[size];
+                    }
+                    return;
+                }
+            }
+            if (delta <= 0) {
+                return;
+            }
+            if (size < MAX_NEIGHBOURS) {
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                    counts = Arrays.copyOf(counts, size * 2);
+                }
+                ids[size] = id;
+                counts[size++] = delta;
+                return;
+            }
+            int min = 0;
+            for (int i = 1; i < size; i++) {
+                if (counts[i] < counts[min]) {
+                    min = i;
+                }
+            }
+            ids[min] = id;
+            counts[min] += delta;
+        }
+
+        synchronized void forEach(Visitor visitor) {
+            for (int i = 0; i < size; i++) {
+                visitor.visit(ids[i], counts[i]);
+            }
+        }
+
+        interface Visitor {
+            void visit(int id, int count);
+        }
+    }
+}
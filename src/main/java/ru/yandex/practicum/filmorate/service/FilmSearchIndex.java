@@ -0,0 +1,189 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Инвертированный индекс по названиям и описаниям фильмов.
+ * <p>
+ * Текст разбивается на слова из букв и цифр любого алфавита, слова приводятся к нижнему регистру, "ё" заменяется
+ * на "е". Фильм должен содержать все слова запроса, последнее слово ищется по префиксу, чтобы поиск работал
+ * при наборе. Релевантность - сумма idf совпавших слов, совпадение в названии весит втрое больше,
+ * затем первые {@link #RERANKED} кандидатов переупорядочиваются с учётом числа лайков.
+ * <p>
+ * Индекс строится из хранилища при первом поиске, затем FilmService обновляет его при создании и изменении фильмов.
+ */
+@Slf4j
+@Component
+public class FilmSearchIndex {
+    static final int MAX_RESULTS = 100;
+    static final int RERANKED = 200;
+    private static final int MAX_PREFIX_TERMS = 64;
+    private static final int NAME_WEIGHT = 3;
+    private static final double LIKES_WEIGHT = 0.2;
+
+    private final FilmStorage filmStorage;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Map<Integer, Integer>> postings = new TreeMap<>();
+    private final Map<Integer, Map<String, Integer>> terms = new HashMap<>();
+    private volatile boolean built;
+
+    @Autowired
+    public FilmSearchIndex(FilmStorage filmStorage) {
+        this.filmStorage = filmStorage;
+    }
+
+    /**
+     * Добавляет фильм в индекс или заменяет его прежние слова. Повторный вызов с тем же фильмом ничего не меняет.
+     */
+    public void index(Film film) {
+        lock.writeLock().lock();
+        try {
+            // до построения индекса фильм попадёт в него из хранилища
+            if (built) {
+                put(film);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Integer> search(String query, int limit) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty()) {
+            return List.of();
+        }
+        ensureBuilt();
+        Map<Integer, Double> scores;
+        lock.readLock().lock();
+        try {
+            scores = match(words);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Double>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(RERANKED)
+                .map(entry -> Map.entry(entry.getKey(), entry.getValue()
+                        * (1 + LIKES_WEIGHT * Math.log1p(filmStorage.getById(entry.getKey()).getLikesByUsers().size()))))
+                .sorted(Map.Entry.<Integer, Double>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        String normalized = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean letter = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                words.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private Map<Integer, Double> match(List<String> words) {
+        Map<Integer, Double> scores = null;
+        for (int i = 0; i < words.size(); i++) {
+            String word = words.get(i);
+            Map<String, Map<Integer, Integer>> matched = i == words.size() - 1
+                    ? postings.subMap(word, true, word + Character.MAX_VALUE, false)
+                    : postings.subMap(word, true, word, true);
+
+            Map<Integer, Double> wordScores = new HashMap<>();
+            int expanded = 0;
+            for (Map<Integer, Integer> films : matched.values()) {
+                if (expanded++ == MAX_PREFIX_TERMS) {
+                    break;
+                }
+                double idf = Math.log(1 + (double) terms.size() / films.size());
+                for (Map.Entry<Integer, Integer> film : films.entrySet()) {
+                    if (scores == null || scores.containsKey(film.getKey())) {
+                        wordScores.merge(film.getKey(), idf * film.getValue(), Math::max);
+                    }
+                }
+            }
+
+            if (scores != null) {
+                Map<Integer, Double> previous = scores;
+                wordScores.replaceAll((id, score) -> score + previous.get(id));
+            }
+            scores = wordScores;
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        return scores;
+    }
+
+    private void ensureBuilt() {
+        if (built) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (built) {
+                return;
+            }
+            long start = System.nanoTime();
+            for (Film film : filmStorage.findAll()) {
+                put(film);
+            }
+            built = true;
+            log.info("Поисковый индекс построен за {} мс: фильмов {}, слов {}",
+                    (System.nanoTime() - start) / 1_000_000, terms.size(), postings.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void put(Film film) {
+        Map<String, Integer> previous = terms.remove(film.getId());
+        if (previous != null) {
+            for (String term : previous.keySet()) {
+                Map<Integer, Integer> films = postings.get(term);
+                films.remove(film.getId());
+                if (films.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+
+        Map<String, Integer> weights = new HashMap<>();
+        for (String word : tokenize(film.getName())) {
+            weights.merge(word, NAME_WEIGHT, Integer::sum);
+        }
+        for (String word : tokenize(film.getDescription())) {
+            weights.merge(word, 1, Integer::sum);
+        }
+        terms.put(film.getId(), weights);
+        weights.forEach((term, weight) -> postings.computeIfAbsent(term, key -> new HashMap<>()).put(film.getId(), weight));
+    }
+}
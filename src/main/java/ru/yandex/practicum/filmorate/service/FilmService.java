@@ -1,40 +1,95 @@
 package ru.yandex.practicum.filmorate.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.ChangeEvent;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.TrendWindow;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
+import javax.annotation.PreDestroy;
 import java.time.LocalDate;
 import java.time.Month;
 import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
-public class FilmService {
+public class FilmService implements MeterBinder {
 
     private final LocalDate firstFilmBirthday = LocalDate.of(1895, Month.DECEMBER, 28);
     private FilmStorage filmStorage;
     private UserStorage userStorage;
+    private FilmRecommendations recommendations;
+    private FilmTrends trends;
+    private FilmSearchIndex searchIndex;
+    private EventBroadcaster events;
+    private LikeIngestion likeIngestion;
+    private ResponseCache responseCache;
 
+    public FilmService(FilmStorage filmStorage, UserStorage userStorage, FilmRecommendations recommendations,
+                       FilmTrends trends, FilmSearchIndex searchIndex, EventBroadcaster events) {
+        this(filmStorage, userStorage, recommendations, trends, searchIndex, events, new LikeIngestionProperties(),
+                new ResponseCache(0));
+    }
+
+    /**
+     * @param likes настройки асинхронного приёма лайков; если он выключен, лайки применяются в потоке запроса
+     * @param responseCache кеш готового JSON, из которого удаляются изменённые фильмы
+     */
     @Autowired
-    public FilmService(FilmStorage filmStorage, UserStorage userStorage) {
+    public FilmService(FilmStorage filmStorage, UserStorage userStorage, FilmRecommendations recommendations,
+                       FilmTrends trends, FilmSearchIndex searchIndex, EventBroadcaster events,
+                       LikeIngestionProperties likes, ResponseCache responseCache) {
         this.filmStorage = filmStorage;
         this.userStorage = userStorage;
+        this.recommendations = recommendations;
+        this.trends = trends;
+        this.searchIndex = searchIndex;
+        this.events = events;
+        this.responseCache = responseCache;
+        if (likes.isEnabled()) {
+            this.likeIngestion = new LikeIngestion(likes, this::applyLikes);
+            log.info("Асинхронный приём лайков включён: очередь {}, пачка {}, задержка до {} мс",
+                    likes.getQueueCapacity(), likes.getBatchSize(), likes.getMaxDelayMillis());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (likeIngestion != null) {
+            likeIngestion.bindTo(registry);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (likeIngestion != null) {
+            likeIngestion.close();
+        }
     }
 
     private void validFilm(Film film) {
         if (film.getName() == null || film.getName().isEmpty() || film.getName().isBlank()) {
             log.warn("Попытка создания фильма с пустым названием");
             throw new ValidationException("Название фильма не может быть пустым");
-        } else if (film.getDescription().length() > 200) {
+        } else if (film.getDescription() != null && film.getDescription().length() > 200) {
             log.warn("Попытка создания фильма с описанием свыше 200 знаков");
             throw new ValidationException("Описание фильма превышает максимальное количество знаков 200");
-        } else if (film.getReleaseDate().isBefore(firstFilmBirthday)) {
+        } else if (film.getReleaseDate() != null && film.getReleaseDate().isBefore(firstFilmBirthday)) {
             log.warn("Попытка создания фильма с датой, предшествующей появлению первого фильма");
             throw new ValidationException("Дата релиза фильма введена неверна");
         } else if (film.getDuration() <= 0) {
@@ -47,41 +102,230 @@ public class FilmService {
         return filmStorage.findAll();
     }
 
+    public Collection<Film> findPage(Integer after, Integer limit) {
+        Pages.validate(after, limit);
+        return filmStorage.findPage(after, limit);
+    }
+
     public Film create(Film film) {
         validFilm(film);
-        return filmStorage.create(film);
+        Film created = filmStorage.create(film);
+        searchIndex.index(created);
+        return created;
+    }
+
+    public List<BatchResult> createAll(List<Film> films) {
+        List<BatchResult> results = Batches.apply(films, this::validFilm, filmStorage::createAll);
+
+        results.stream()
+                .filter(BatchResult::isSuccessful)
+                .forEach(result -> searchIndex.index(filmStorage.getById(result.getId())));
+        return results;
     }
 
     public Film update(Film film) {
         validFilm(film);
-        return filmStorage.update(film);
+        Set<Integer> likesBefore = currentLikes(film.getId());
+        Film updated = filmStorage.update(film);
+        responseCache.invalidateFilm(updated.getId());
+        recommendations.likesReplaced(updated.getId(), likesBefore, updated.getLikesByUsers());
+        searchIndex.index(updated);
+        return updated;
     }
 
     public Film getById(Integer id) {
         return filmStorage.getById(id);
     }
 
+    /**
+     * Лайки принимаются асинхронно: addLike и removeLike только ставят их в очередь.
+     */
+    public boolean isAsyncLikes() {
+        return likeIngestion != null;
+    }
+
     public void addLike(Integer id, Integer userId) {
-        Film film = filmStorage.getById(id);
+        filmStorage.getById(id);
 
         userStorage.checkUserExist(userId);
 
-        film.getLikesByUsers().add(userId);
+        if (likeIngestion != null) {
+            likeIngestion.like(id, userId);
+            return;
+        }
+        if (filmStorage.addLike(id, userId)) {
+            likeAdded(id, userId);
+        }
     }
 
     public void removeLike(Integer id, Integer userId) {
-        Film film = filmStorage.getById(id);
+        filmStorage.getById(id);
 
         userStorage.checkUserExist(userId);
 
-        film.getLikesByUsers().removeIf(integer -> integer.equals(userId));
+        if (likeIngestion != null) {
+            likeIngestion.unlike(id, userId);
+            return;
+        }
+        if (filmStorage.removeLike(id, userId)) {
+            likeRemoved(id, userId);
+        }
+    }
+
+    public List<BatchResult> addLikes(List<Like> likes) {
+        List<BatchResult> results = Batches.apply(likes,
+                like -> userStorage.checkUserExist(like.getUserId()), filmStorage::addLikes);
+
+        for (int i = 0; i < likes.size(); i++) {
+            if (results.get(i).isSuccessful() && results.get(i).isChanged()) {
+                likeAdded(likes.get(i).getFilmId(), likes.get(i).getUserId());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Лайки фильма до обновления. Несуществующий фильм отклонит само обновление со своим сообщением.
+     */
+    private Set<Integer> currentLikes(Integer id) {
+        if (id == null) {
+            return Set.of();
+        }
+        try {
+            return filmStorage.getById(id).getLikesByUsers();
+        } catch (FilmNotFoundException e) {
+            return Set.of();
+        }
+    }
+
+    /**
+     * Применяет пачку из очереди асинхронного приёма. Существование фильмов и пользователей уже проверено
+     * при постановке в очередь, а фильмы не удаляются.
+     */
+    private void applyLikes(List<Like> added, List<Like> removed) {
+        List<BatchResult> results = filmStorage.addLikes(added);
+        for (int i = 0; i < added.size(); i++) {
+            if (results.get(i).isSuccessful() && results.get(i).isChanged()) {
+                likeAdded(added.get(i).getFilmId(), added.get(i).getUserId());
+            }
+        }
+        for (Like like : removed) {
+            if (filmStorage.removeLike(like.getFilmId(), like.getUserId())) {
+                likeRemoved(like.getFilmId(), like.getUserId());
+            }
+        }
+    }
+
+    private void likeAdded(int filmId, int userId) {
+        responseCache.invalidateFilm(filmId);
+        recommendations.likeAdded(filmId, userId);
+        trends.likeAdded(filmId, userId);
+        events.likeChanged(ChangeEvent.like(ChangeEvent.LIKE_ADDED, filmId, userId));
+    }
+
+    private void likeRemoved(int filmId, int userId) {
+        responseCache.invalidateFilm(filmId);
+        recommendations.likeRemoved(filmId, userId);
+        trends.likeRemoved(filmId, userId);
+        events.likeChanged(ChangeEvent.like(ChangeEvent.LIKE_REMOVED, filmId, userId));
     }
 
     public Collection<Film> getPopular(Integer count) {
-        return filmStorage.findAll().stream().sorted((f1, f2) -> {
-            Integer film1 = f1.getLikesByUsers().size();
-            Integer film2 = f2.getLikesByUsers().size();
-            return film1.compareTo(film2) * -1;
-        }).limit(count).collect(Collectors.toList());
+        validPopularCount(count);
+        return filmStorage.getPopular(count);
+    }
+
+    public SseEmitter subscribeFilm(Integer id) {
+        filmStorage.getById(id);
+        return events.subscribeFilm(id);
+    }
+
+    public SseEmitter subscribePopular(Integer count) {
+        validPopularCount(count);
+        return events.subscribePopular(() -> filmStorage.getPopular(count));
+    }
+
+    public Collection<Film> findFiltered(FilmFilter filter, Integer offset, Integer limit) {
+        if (offset == null || offset < 0) {
+            log.warn("Попытка получить выборку фильмов с отрицательным смещением");
+            throw new ValidationException("Смещение offset не может быть отрицательным");
+        } else if (limit == null || limit <= 0 || limit > Pages.MAX_LIMIT) {
+            log.warn("Попытка получить выборку фильмов недопустимого размера: {}", limit);
+            throw new ValidationException(String.format("Размер страницы должен быть от 1 до %d", Pages.MAX_LIMIT));
+        } else if (filter.getReleasedFrom() != null && filter.getReleasedTo() != null
+                && filter.getReleasedFrom().isAfter(filter.getReleasedTo())) {
+            log.warn("Попытка получить выборку фильмов с пустым диапазоном дат релиза");
+            throw new ValidationException("Начало диапазона дат релиза не может быть позже конца");
+        } else if (filter.getMinDuration() != null && filter.getMaxDuration() != null
+                && filter.getMinDuration() > filter.getMaxDuration()) {
+            log.warn("Попытка получить выборку фильмов с пустым диапазоном продолжительности");
+            throw new ValidationException("Минимальная продолжительность не может быть больше максимальной");
+        }
+        if (offset >= filmStorage.size()) {
+            // дальше последнего фильма выборка пуста, а индекс не должен собирать offset + limit позиций
+            return List.of();
+        }
+        return filmStorage.findFiltered(filter, offset, limit);
+    }
+
+    public Collection<Film> search(String query, Integer limit) {
+        if (query == null || query.isBlank()) {
+            log.warn("Попытка поиска фильмов по пустому запросу");
+            throw new ValidationException("Поисковый запрос не может быть пустым");
+        }
+        if (limit == null || limit <= 0) {
+            log.warn("Попытка поиска фильмов с неположительным количеством результатов: {}", limit);
+            throw new ValidationException("Количество результатов должно быть положительным");
+        }
+        return searchIndex.search(query, Math.min(limit, FilmSearchIndex.MAX_RESULTS)).stream()
+                .map(filmStorage::getById)
+                .collect(Collectors.toList());
+    }
+
+    public Collection<Film> getTrending(String window, Integer count) {
+        TrendWindow trendWindow;
+        try {
+            trendWindow = TrendWindow.valueOf(window.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            log.warn("Попытка получить тренды за неизвестный период: {}", window);
+            throw new ValidationException("Период трендов должен быть одним из: hour, day, week");
+        }
+        if (count == null || count <= 0) {
+            log.warn("Попытка получить тренды с неположительным количеством: {}", count);
+            throw new ValidationException("Количество фильмов должно быть положительным");
+        }
+        return trends.top(trendWindow, count).stream()
+                .map(filmStorage::getById)
+                .collect(Collectors.toList());
+    }
+
+    public Collection<Film> getSimilar(Integer id, Integer count) {
+        validCount(count);
+        filmStorage.getById(id);
+        return recommendations.similar(id, Math.min(count, FilmRecommendations.MAX_RECOMMENDATIONS)).stream()
+                .map(filmStorage::getById)
+                .collect(Collectors.toList());
+    }
+
+    public Collection<Film> getRecommendations(Integer userId, Integer count) {
+        validCount(count);
+        userStorage.checkUserExist(userId);
+        return recommendations.recommend(userId, Math.min(count, FilmRecommendations.MAX_RECOMMENDATIONS)).stream()
+                .map(filmStorage::getById)
+                .collect(Collectors.toList());
+    }
+
+    private void validPopularCount(Integer count) {
+        if (count == null || count <= 0 || count > Pages.MAX_LIMIT) {
+            log.warn("Попытка получить популярные фильмы в недопустимом количестве: {}", count);
+            throw new ValidationException(String.format("Количество фильмов должно быть от 1 до %d", Pages.MAX_LIMIT));
+        }
+    }
+
+    private void validCount(Integer count) {
+        if (count == null || count <= 0) {
+            log.warn("Попытка получить рекомендации фильмов с неположительным количеством: {}", count);
+            throw new ValidationException("Количество рекомендаций должно быть положительным");
+        }
     }
 }
@@ -0,0 +1,223 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.TrendWindow;
+import ru.yandex.practicum.filmorate.storage.PopularityIndex;
+import ru.yandex.practicum.filmorate.storage.StripedLock;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Тренды: число лайков фильмов за последний час, день и неделю.
+ * <p>
+ * Каждое окно делится на корзины фиксированной длины, и у фильма в окне своё кольцо счётчиков по корзинам,
+ * так что память зависит от числа недавно лайкнутых фильмов, а не от числа лайков. Рейтинг окна хранится
+ * в {@link PopularityIndex}, и первые count фильмов читаются без обхода всех фильмов. Когда корзина выходит
+ * из окна, пересчитываются только фильмы, получившие в неё лайки. Граница окна сдвигается с шагом в одну корзину.
+ * <p>
+ * Счётчики фильма меняются под блокировкой по его id, общий монитор окна берётся только на выходе корзины.
+ * Время отдельных лайков не хранится, поэтому отмена вычитается из самой свежей корзины, где у фильма
+ * есть лайки: отменяют чаще всего недавний лайк. Методы вызываются только для лайков, которые действительно
+ * добавлены или сняты. Состояние не сохраняется и после перезапуска набирается заново.
+ */
+@Component
+public class FilmTrends {
+    private static final int LOCK_STRIPES = 64;
+
+    private final Clock clock;
+    private final StripedLock locks = new StripedLock(LOCK_STRIPES);
+    private final Map<TrendWindow, Window> windows = new EnumMap<>(TrendWindow.class);
+
+    @Autowired
+    public FilmTrends() {
+        this(Clock.systemUTC());
+    }
+
+    public FilmTrends(Clock clock) {
+        this.clock = clock;
+        for (TrendWindow window : TrendWindow.values()) {
+            windows.put(window, new Window(window.getLength().toMillis(), window.getBucket().toMillis()));
+        }
+    }
+
+    public void likeAdded(int filmId, int userId) {
+        update(filmId, 1);
+    }
+
+    public void likeRemoved(int filmId, int userId) {
+        update(filmId, -1);
+    }
+
+    public List<Integer> top(TrendWindow window, int count) {
+        Window trend = windows.get(window);
+        trend.expire(clock.millis());
+        return trend.ranking.top(count);
+    }
+
+    private void update(int filmId, int delta) {
+        long now = clock.millis();
+        for (Window window : windows.values()) {
+            window.expire(now);
+        }
+        locks.lock(filmId);
+        try {
+            for (Window window : windows.values()) {
+                window.add(filmId, now, delta);
+            }
+        } finally {
+            locks.unlock(filmId);
+        }
+    }
+
+    private class Window {
+        private final long bucketLength;
+        private final int buckets;
+        private final Map<Integer, Counters> counters = new ConcurrentHashMap<>();
+        private final NavigableMap<Long, Set<Integer>> touched = new ConcurrentSkipListMap<>();
+        private final PopularityIndex ranking = new PopularityIndex();
+        private volatile long oldest = Long.MIN_VALUE;
+
+        private Window(long length, long bucketLength) {
+            this.bucketLength = bucketLength;
+            // текущая неполная корзина плюс корзины, целиком попадающие в окно
+            this.buckets = (int) (length / bucketLength) + 1;
+        }
+
+        /**
+         * Вызывается под блокировкой фильма.
+         */
+        private void add(int filmId, long now, int delta) {
+            long bucket = now / bucketLength;
+            Counters film = counters.get(filmId);
+            if (film == null) {
+                if (delta < 0) {
+                    return;
+                }
+                film = new Counters(buckets);
+                counters.put(filmId, film);
+            }
+            if (!film.add(bucket, delta)) {
+                return;
+            }
+            if (delta > 0) {
+                touched.computeIfAbsent(bucket, key -> ConcurrentHashMap.newKeySet()).add(filmId);
+            }
+            rank(filmId, film, bucket);
+        }
+
+        /**
+         * Вычитает из рейтинга корзины, вышедшие из окна. Проверка без монитора, поэтому в пределах одной
+         * корзины вызов почти бесплатен.
+         */
+        private void expire(long now) {
+            long bucket = now / bucketLength;
+            long first = bucket - buckets + 1;
+            if (first <= oldest) {
+                return;
+            }
+            synchronized (this) {
+                if (first <= oldest) {
+                    return;
+                }
+                Iterator<Set<Integer>> expired = touched.headMap(first).values().iterator();
+                while (expired.hasNext()) {
+                    for (int filmId : expired.next()) {
+                        locks.lock(filmId);
+                        try {
+                            Counters film = counters.get(filmId);
+                            if (film != null) {
+                                rank(filmId, film, bucket);
+                            }
+                        } finally {
+                            locks.unlock(filmId);
+                        }
+                    }
+                    expired.remove();
+                }
+                oldest = first;
+            }
+        }
+
+        private void rank(int filmId, Counters film, long bucket) {
+            int score = film.sum(bucket);
+            if (score > 0) {
+                ranking.put(filmId, score);
+            } else {
+                ranking.remove(filmId);
+                counters.remove(filmId);
+            }
+        }
+    }
+
+    /**
+     * Счётчики лайков фильма по корзинам окна: корзина с номером n лежит в слоте n % длина кольца,
+     * latest - номер самой свежей корзины. Меняются под блокировкой фильма.
+     */
+    private static final class Counters {
+        private final int[] counts;
+        private long latest = Long.MIN_VALUE;
+
+        private Counters(int buckets) {
+            this.counts = new int[buckets];
+        }
+
+        private boolean add(long bucket, int delta) {
+            if (delta > 0) {
+                advance(bucket);
+                counts[slot(bucket)] += delta;
+                return true;
+            }
+            for (long candidate = Math.min(latest, bucket); candidate >= first(bucket); candidate--) {
+                if (counts[slot(candidate)] > 0) {
+                    counts[slot(candidate)]--;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Лайки в окне, которое заканчивается корзиной bucket.
+         */
+        private int sum(long bucket) {
+            int sum = 0;
+            for (long candidate = Math.min(latest, bucket); candidate >= first(bucket); candidate--) {
+                sum += counts[slot(candidate)];
+            }
+            return sum;
+        }
+
+        private void advance(long bucket) {
+            if (latest == Long.MIN_VALUE || bucket - latest >= counts.length) {
+                Arrays.fill(counts, 0);
+                latest = bucket;
+                return;
+            }
+            for (long next = latest + 1; next <= bucket; next++) {
+                counts[slot(next)] = 0;
+            }
+            latest = Math.max(latest, bucket);
+        }
+
+        /**
+         * Самая старая корзина, которая ещё попадает в окно и не затёрта более свежей.
+         */
+        private long first(long bucket) {
+            return Math.max(bucket, latest) - counts.length + 1;
+        }
+
+        private int slot(long bucket) {
+            return (int) Math.floorMod(bucket, (long) counts.length);
+        }
+    }
+}
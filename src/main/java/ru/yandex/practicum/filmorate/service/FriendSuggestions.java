@@ -0,0 +1,197 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.util.IntSet;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+
+/**
+ * "Возможно, вы знакомы": друзья друзей, ранжированные по числу общих друзей (при равенстве - по id).
+ * <p>
+ * Обход ограничен: у пользователя раскрывается не больше {@link #MAX_EXPANDED_FRIENDS} друзей, у каждого друга
+ * учитывается не больше {@link #MAX_FRIEND_DEGREE} его друзей. Из слишком длинных списков берётся равномерная
+ * выборка, чтобы пользователи с огромным числом связей не делали запрос неограниченно дорогим.
+ * Большие окрестности считаются параллельно.
+ * <p>
+ * Ранжированный список кешируется на пользователя. Изменение дружбы a-b сбрасывает кеш a, b и всех их друзей -
+ * только у них меняется окружение второго уровня.
+ */
+@Slf4j
+@Component
+public class FriendSuggestions {
+    static final int MAX_EXPANDED_FRIENDS = 500;
+    static final int MAX_FRIEND_DEGREE = 2_000;
+    static final int PARALLEL_THRESHOLD = 50_000;
+    static final int MAX_SUGGESTIONS = 100;
+    static final int MAX_CACHED_USERS = 100_000;
+
+    private final UserStorage userStorage;
+    private final Map<Integer, int[]> cache = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @Autowired
+    public FriendSuggestions(UserStorage userStorage) {
+        this.userStorage = userStorage;
+    }
+
+    public List<User> suggest(int id, int count) {
+        int[] ranked = cache.get(id);
+
+        if (ranked == null) {
+            long stamp = invalidations.get();
+            ranked = rank(userStorage.getById(id));
+            if (cache.size() < MAX_CACHED_USERS) {
+                cache.put(id, ranked);
+                // если кеш сбросили, пока список считался, он мог устареть
+                if (invalidations.get() != stamp) {
+                    cache.remove(id, ranked);
+                }
+            }
+        }
+
+        return Arrays.stream(ranked).limit(count).mapToObj(userStorage::getById).collect(Collectors.toList());
+    }
+
+    public void invalidate(int... ids) {
+        invalidations.incrementAndGet();
+        for (int id : ids) {
+            cache.remove(id);
+            for (int friendId : toArray(userStorage.getById(id).getFriends())) {
+                cache.remove(friendId);
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        cache.clear();
+    }
+
+    int[] rank(User user) {
+        Set<Integer> friends = user.getFriends();
+        int[] expanded = sample(toArray(friends), MAX_EXPANDED_FRIENDS);
+        int[][] neighbourhoods = new int[expanded.length][];
+        long edges = 0;
+
+        for (int i = 0; i < expanded.length; i++) {
+            neighbourhoods[i] = sample(toArray(userStorage.getById(expanded[i]).getFriends()), MAX_FRIEND_DEGREE);
+            edges += neighbourhoods[i].length;
+        }
+
+        Counter counter;
+        if (edges >= PARALLEL_THRESHOLD) {
+            counter = Arrays.stream(neighbourhoods).parallel()
+                    .collect(Counter::new, Counter::addAll, Counter::merge);
+        } else {
+            counter = new Counter();
+            for (int[] neighbourhood : neighbourhoods) {
+                counter.addAll(neighbourhood);
+            }
+        }
+
+        return counter.top(MAX_SUGGESTIONS, candidate -> candidate != user.getId() && !friends.contains(candidate));
+    }
+
+    private static int[] toArray(Set<Integer> ids) {
+        return ids instanceof IntSet ? ((IntSet) ids).toIntArray()
+                : ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Равномерная выборка не больше limit элементов с сохранением порядка.
+     */
+    private static int[] sample(int[] ids, int limit) {
+        if (ids.length <= limit) {
+            return ids;
+        }
+        int[] sample = new int[limit];
+        for (int i = 0; i < limit; i++) {
+            sample[i] = ids[(int) ((long) i * ids.length / limit)];
+        }
+        return sample;
+    }
+
+    /**
+     * Счётчик вхождений id на открытой адресации, без упаковки в Integer.
+     */
+    static class Counter {
+        private static final int EMPTY = 0;
+
+        private int[] keys = new int[64];
+        private int[] counts = new int[64];
+        private int size;
+
+        void addAll(int[] ids) {
+            for (int id : ids) {
+                add(id, 1);
+            }
+        }
+
+        void merge(Counter other) {
+            for (int i = 0; i < other.keys.length; i++) {
+                if (other.keys[i] != EMPTY) {
+                    add(other.keys[i], other.counts[i]);
+                }
+            }
+        }
+
+        void add(int id, int count) {
+            // id пользователей начинаются с 1, поэтому 0 свободен под пустую ячейку
+            if (size * 2 >= keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int slot = (id * 0x9E3779B9) & mask;
+            while (keys[slot] != EMPTY && keys[slot] != id) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == EMPTY) {
+                keys[slot] = id;
+                size++;
+            }
+            counts[slot] += count;
+        }
+
+        int[] top(int limit, IntPredicate filter) {
+            long[] ranked = new long[size];
+            int candidates = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY && filter.test(keys[i])) {
+                    // больше общих друзей - меньше ключ, при равенстве порядок по id
+                    ranked[candidates++] = ((long) (Integer.MAX_VALUE - counts[i]) << 32) | keys[i];
+                }
+            }
+            Arrays.sort(ranked, 0, candidates);
+
+            int[] top = new int[Math.min(limit, candidates)];
+            for (int i = 0; i < top.length; i++) {
+                top[i] = (int) ranked[i];
+            }
+            return top;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new int[oldKeys.length * 2];
+            counts = new int[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    add(oldKeys[i], oldCounts[i]);
+                }
+            }
+        }
+    }
+}
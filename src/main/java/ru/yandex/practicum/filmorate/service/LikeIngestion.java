@@ -0,0 +1,188 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.exception.OverloadedException;
+import ru.yandex.practicum.filmorate.model.Like;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Асинхронный приём лайков. Запрос кладёт команду в ограниченную очередь и сразу получает подтверждение,
+ * а отдельный поток забирает команды пачками, схлопывает повторы одной пары фильм-пользователь до последней
+ * и передаёт пачку целиком: добавленные лайки применяются одной пакетной операцией, то есть по одной копии
+ * фильма на пачку, а не на каждый лайк. Пачка уходит, как только набралось batchSize команд или с первой
+ * команды прошло maxDelayMillis, поэтому индекс популярности видит лайк не позже чем через maxDelayMillis
+ * плюс время применения пачки. Если очередь заполнена, запрос ждёт места не дольше offerTimeoutMillis
+ * и получает {@link OverloadedException}.
+ * <p>
+ * Если пачка целиком не применилась, её лайки применяются по одному: команды идемпотентны, поэтому уже
+ * применённая часть пачки повторно ничего не меняет, а ошибочный лайк не уносит с собой остальные.
+ * Лайки, не применившиеся и по одному, считаются в метрике filmorate.likes.async.failed.
+ */
+@Slf4j
+public class LikeIngestion implements AutoCloseable, MeterBinder {
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final BlockingQueue<Command> queue;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final long offerTimeoutMillis;
+    private final BiConsumer<List<Like>, List<Like>> sink;
+    private final Thread worker;
+    private final LongAdder failed = new LongAdder();
+    private volatile boolean closed;
+
+    /**
+     * @param sink получает добавленные и удалённые лайки очередной пачки, вызывается только из фонового потока
+     */
+    public LikeIngestion(LikeIngestionProperties properties, BiConsumer<List<Like>, List<Like>> sink) {
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.batchSize = properties.getBatchSize();
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(properties.getMaxDelayMillis());
+        this.offerTimeoutMillis = properties.getOfferTimeoutMillis();
+        this.sink = sink;
+        this.worker = new Thread(this::run, "like-ingestion");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public void like(int filmId, int userId) {
+        submit(new Command(filmId, userId, true));
+    }
+
+    public void unlike(int filmId, int userId) {
+        submit(new Command(filmId, userId, false));
+    }
+
+    public int backlog() {
+        return queue.size();
+    }
+
+    public long failed() {
+        return failed.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("filmorate.likes.async.failed", failed, LongAdder::sum).register(registry);
+    }
+
+    /**
+     * Перестаёт принимать команды и дожидается, пока фоновый поток применит уже принятые.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void submit(Command command) {
+        if (closed) {
+            throw new IllegalStateException("Приём лайков остановлен");
+        }
+        try {
+            if (!queue.offer(command, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                log.warn("Очередь лайков заполнена, лайк фильму {} от пользователя {} отклонён",
+                        command.filmId, command.userId);
+                throw new OverloadedException("Слишком много лайков, повторите запрос позже");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OverloadedException("Ожидание места в очереди лайков прервано", e);
+        }
+    }
+
+    private void run() {
+        List<Command> batch = new ArrayList<>(batchSize);
+
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Command first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long left = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || left <= 0) {
+                        break;
+                    }
+                    Command next = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                closed = true;
+            }
+            apply(batch);
+            batch.clear();
+        }
+    }
+
+    private void apply(List<Command> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Map<Long, Command> last = new LinkedHashMap<>();
+        for (Command command : batch) {
+            last.put(((long) command.filmId << Integer.SIZE) | (command.userId & 0xFFFFFFFFL), command);
+        }
+
+        List<Like> added = new ArrayList<>();
+        List<Like> removed = new ArrayList<>();
+        for (Command command : last.values()) {
+            (command.added ? added : removed).add(new Like(command.filmId, command.userId));
+        }
+
+        try {
+            sink.accept(added, removed);
+        } catch (RuntimeException e) {
+            log.warn("Не удалось применить пачку лайков: добавлено {}, удалено {}, применяю по одному",
+                    added.size(), removed.size(), e);
+            added.forEach(like -> applyOne(List.of(like), List.of()));
+            removed.forEach(like -> applyOne(List.of(), List.of(like)));
+        }
+        log.debug("Применена пачка лайков: команд {}, добавлено {}, удалено {}",
+                batch.size(), added.size(), removed.size());
+    }
+
+    private void applyOne(List<Like> added, List<Like> removed) {
+        try {
+            sink.accept(added, removed);
+        } catch (RuntimeException e) {
+            failed.increment();
+            log.error("Не удалось применить лайк: добавлен {}, удалён {}", added, removed, e);
+        }
+    }
+
+    private static final class Command {
+        private final int filmId;
+        private final int userId;
+        private final boolean added;
+
+        private Command(int filmId, int userId, boolean added) {
+            this.filmId = filmId;
+            this.userId = userId;
+            this.added = added;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "filmorate.likes.async")
+public class LikeIngestionProperties {
+    private boolean enabled = false;
+    private int queueCapacity = 65_536;
+    private int batchSize = 4_096;
+    private long maxDelayMillis = 20;
+    private long offerTimeoutMillis = 50;
+}
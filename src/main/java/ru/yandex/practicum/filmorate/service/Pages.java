@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+@Slf4j
+public final class Pages {
+    public static final int MAX_LIMIT = 1000;
+
+    private Pages() {
+    }
+
+    public static void validate(Integer after, Integer limit) {
+        if (after == null || after < 0) {
+            log.warn("Попытка получить страницу с отрицательным курсором");
+            throw new ValidationException("Курсор after не может быть отрицательным");
+        } else if (limit == null || limit <= 0 || limit > MAX_LIMIT) {
+            log.warn("Попытка получить страницу недопустимого размера: {}", limit);
+            throw new ValidationException(String.format("Размер страницы должен быть от 1 до %d", MAX_LIMIT));
+        }
+    }
+}
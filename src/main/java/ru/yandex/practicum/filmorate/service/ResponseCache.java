@@ -0,0 +1,286 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Кеш готового JSON фильмов, пользователей и собранных из них списков, ограниченный по объёму (max-bytes, 0 - выключен).
+ * Запись сущности годится только для той версии, с которой сериализована, поэтому устаревший ответ не отдаётся,
+ * даже если инвалидация запоздала; явная инвалидация из сервисов освобождает память сразу. Список хранится
+ * по хешу пар id и версии своих элементов, сверяется с ними целиком и собирается из записей сущностей.
+ * Списки при изменении сущности не перебираются: устаревший список больше не совпадёт ни с одним запросом
+ * и уйдёт при вытеснении.
+ * <p>
+ * Вытеснение - приближённый CLOCK: чтение помечает запись, а при переполнении один поток обходит таблицы,
+ * снимая метки и удаляя записи без метки, пока объём не опустится до 90% предела.
+ * Метрики filmorate.cache: попадания, промахи и вытеснения по виду записи, объём и число записей.
+ */
+@Component
+public class ResponseCache implements MeterBinder {
+    public static final int MAX_LIST_SIZE = Pages.MAX_LIMIT;
+
+    private static final int ENTRY_OVERHEAD = 64;
+    private static final long USER_KEY = 1L << Integer.SIZE;
+
+    private final long maxBytes;
+    private final Map<Long, Entry> entities = new ConcurrentHashMap<>();
+    private final Map<Long, ListEntry> lists = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+    private final ReentrantLock evicting = new ReentrantLock();
+    private final Stats films = new Stats();
+    private final Stats users = new Stats();
+    private final Stats filmLists = new Stats();
+    private final Stats userLists = new Stats();
+
+    @Autowired
+    public ResponseCache(@Value("${filmorate.cache.max-bytes:67108864}") long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    public byte[] film(Film film, Serializer serializer) throws IOException {
+        return entity(film.getId(), film.getVersion(), film, films, serializer);
+    }
+
+    public byte[] user(User user, Serializer serializer) throws IOException {
+        return entity(USER_KEY | user.getId(), user.getVersion(), user, users, serializer);
+    }
+
+    /**
+     * JSON-массив фильмов в заданном порядке. Списки длиннее {@link #MAX_LIST_SIZE} не кешируются.
+     */
+    public byte[] films(Collection<Film> list, Serializer serializer) throws IOException {
+        int[] ids = new int[list.size()];
+        long[] versions = new long[list.size()];
+        int i = 0;
+        for (Film film : list) {
+            ids[i] = film.getId();
+            versions[i++] = film.getVersion();
+        }
+        return list(false, ids, versions, list, filmLists, serializer);
+    }
+
+    public byte[] users(Collection<User> list, Serializer serializer) throws IOException {
+        int[] ids = new int[list.size()];
+        long[] versions = new long[list.size()];
+        int i = 0;
+        for (User user : list) {
+            ids[i] = user.getId();
+            versions[i++] = user.getVersion();
+        }
+        return list(true, ids, versions, list, userLists, serializer);
+    }
+
+    public void invalidateFilm(int id) {
+        invalidate(id, false);
+    }
+
+    public void invalidateUser(int id) {
+        invalidate(id, true);
+    }
+
+    public long bytes() {
+        return bytes.get();
+    }
+
+    public int size() {
+        return entities.size() + lists.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        films.bindTo(registry, "film");
+        users.bindTo(registry, "user");
+        filmLists.bindTo(registry, "film_list");
+        userLists.bindTo(registry, "user_list");
+        Gauge.builder("filmorate.cache.bytes", this, ResponseCache::bytes).register(registry);
+        Gauge.builder("filmorate.cache.entries", this, ResponseCache::size).register(registry);
+    }
+
+    private byte[] entity(long key, long version, Object value, Stats stats, Serializer serializer)
+            throws IOException {
+        if (!isEnabled()) {
+            return serializer.serialize(value);
+        }
+        Entry entry = entities.get(key);
+        if (entry != null && entry.version == version) {
+            entry.referenced = true;
+            stats.hits.increment();
+            return entry.json;
+        }
+
+        stats.misses.increment();
+        byte[] json = serializer.serialize(value);
+        Entry created = new Entry(version, json, stats);
+        account(created, entities.put(key, created));
+        return json;
+    }
+
+    private <T> byte[] list(boolean ofUsers, int[] ids, long[] versions, Collection<T> list, Stats stats,
+                            Serializer serializer) throws IOException {
+        if (!isEnabled() || ids.length > MAX_LIST_SIZE) {
+            return serializer.serialize(list);
+        }
+        long key = hash(ofUsers, ids, versions);
+        ListEntry entry = lists.get(key);
+        if (entry != null && entry.ofUsers == ofUsers && Arrays.equals(entry.ids, ids)
+                && Arrays.equals(entry.versions, versions)) {
+            entry.referenced = true;
+            stats.hits.increment();
+            return entry.json;
+        }
+
+        stats.misses.increment();
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        json.write('[');
+        Iterator<T> elements = list.iterator();
+        while (elements.hasNext()) {
+            T element = elements.next();
+            json.write(ofUsers ? user((User) element, serializer) : film((Film) element, serializer));
+            if (elements.hasNext()) {
+                json.write(',');
+            }
+        }
+        json.write(']');
+
+        ListEntry created = new ListEntry(ofUsers, ids, versions, json.toByteArray(), stats);
+        account(created, lists.put(key, created));
+        return created.json;
+    }
+
+    private void invalidate(int id, boolean ofUsers) {
+        if (!isEnabled()) {
+            return;
+        }
+        Entry removed = entities.remove(ofUsers ? USER_KEY | id : id);
+        if (removed != null) {
+            bytes.addAndGet(-removed.size());
+        }
+    }
+
+    private void account(Entry added, Entry replaced) {
+        long total = bytes.addAndGet(added.size() - (replaced == null ? 0 : replaced.size()));
+        if (total > maxBytes) {
+            evict();
+        }
+    }
+
+    private void evict() {
+        if (!evicting.tryLock()) {
+            return;
+        }
+        try {
+            long target = maxBytes / 10 * 9;
+            for (int pass = 0; pass < 2 && bytes.get() > target; pass++) {
+                sweep(entities, target);
+                sweep(lists, target);
+            }
+        } finally {
+            evicting.unlock();
+        }
+    }
+
+    private <E extends Entry> void sweep(Map<Long, E> table, long target) {
+        for (Map.Entry<Long, E> slot : table.entrySet()) {
+            if (bytes.get() <= target) {
+                return;
+            }
+            E entry = slot.getValue();
+            if (entry.referenced) {
+                entry.referenced = false;
+            } else if (table.remove(slot.getKey(), entry)) {
+                bytes.addAndGet(-entry.size());
+                entry.stats.evictions.increment();
+            }
+        }
+    }
+
+    private static long hash(boolean ofUsers, int[] ids, long[] versions) {
+        long hash = ofUsers ? ~ids.length : ids.length;
+        for (int i = 0; i < ids.length; i++) {
+            hash = (hash ^ ids[i]) * 0x9E3779B97F4A7C15L;
+            hash = (hash ^ versions[i]) * 0xC2B2AE3D27D4EB4FL;
+            hash ^= hash >>> 29;
+        }
+        return hash;
+    }
+
+    /**
+     * Сериализация значения в JSON; подставляется контроллером, чтобы кеш не зависел от настроек Jackson.
+     */
+    @FunctionalInterface
+    public interface Serializer {
+        byte[] serialize(Object value) throws IOException;
+    }
+
+    private static class Entry {
+        final long version;
+        final byte[] json;
+        final Stats stats;
+        volatile boolean referenced;
+
+        private Entry(long version, byte[] json, Stats stats) {
+            this.version = version;
+            this.json = json;
+            this.stats = stats;
+        }
+
+        long size() {
+            return ENTRY_OVERHEAD + json.length;
+        }
+    }
+
+    private static final class ListEntry extends Entry {
+        private final boolean ofUsers;
+        private final int[] ids;
+        private final long[] versions;
+
+        private ListEntry(boolean ofUsers, int[] ids, long[] versions, byte[] json, Stats stats) {
+            super(0, json, stats);
+            this.ofUsers = ofUsers;
+            this.ids = ids;
+            this.versions = versions;
+        }
+
+        @Override
+        long size() {
+            return super.size() + (long) ids.length * (Integer.BYTES + Long.BYTES);
+        }
+    }
+
+    private static final class Stats {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        private void bindTo(MeterRegistry registry, String kind) {
+            FunctionCounter.builder("filmorate.cache.hits", hits, LongAdder::sum).tag("kind", kind)
+                    .register(registry);
+            FunctionCounter.builder("filmorate.cache.misses", misses, LongAdder::sum).tag("kind", kind)
+                    .register(registry);
+            FunctionCounter.builder("filmorate.cache.evictions", evictions, LongAdder::sum).tag("kind", kind)
+                    .register(registry);
+        }
+    }
+}
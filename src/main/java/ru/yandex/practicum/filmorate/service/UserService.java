@@ -3,22 +3,42 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.ChangeEvent;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.time.LocalDate;
 import java.util.Collection;
+import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Slf4j
 @Service
 public class UserService {
     private UserStorage userStorage;
+    private FriendSuggestions friendSuggestions;
+    private EventBroadcaster events;
+    private ResponseCache responseCache;
 
+    public UserService(UserStorage userStorage, FriendSuggestions friendSuggestions, EventBroadcaster events) {
+        this(userStorage, friendSuggestions, events, new ResponseCache(0));
+    }
+
+    /**
+     * @param responseCache кеш готового JSON, из которого удаляются изменённые пользователи
+     */
     @Autowired
-    public UserService(UserStorage userStorage) {
+    public UserService(UserStorage userStorage, FriendSuggestions friendSuggestions, EventBroadcaster events,
+                       ResponseCache responseCache) {
         this.userStorage = userStorage;
+        this.friendSuggestions = friendSuggestions;
+        this.events = events;
+        this.responseCache = responseCache;
     }
 
     private void validUser(User user) {
@@ -32,7 +52,7 @@ public class UserService {
                 || user.getLogin().contains(" ")) {
             log.warn("Попытка создать пользователя с пустым или содержащим пробелы логином");
             throw new ValidationException("Логин не должен быть пустым и содержать пробелы");
-        } else if (user.getBirthday().isAfter(now)) {
+        } else if (user.getBirthday() != null && user.getBirthday().isAfter(now)) {
             log.warn("Попытка создать пользователя с датой рождения из будущего");
             throw new ValidationException("День рождения не может быть из будущего :)");
         }
@@ -47,14 +67,27 @@ public class UserService {
         return userStorage.findAll();
     }
 
+    public Collection<User> findPage(Integer after, Integer limit) {
+        Pages.validate(after, limit);
+        return userStorage.findPage(after, limit);
+    }
+
     public User create(User user) {
         validUser(user);
         return userStorage.create(user);
     }
 
+    public List<BatchResult> createAll(List<User> users) {
+        return Batches.apply(users, this::validUser, userStorage::createAll);
+    }
+
     public User update(User user) {
         validUser(user);
-        return userStorage.update(user);
+        User updated = userStorage.update(user);
+        responseCache.invalidateUser(updated.getId());
+        // обновление может заменить весь список друзей
+        friendSuggestions.invalidateAll();
+        return updated;
     }
 
     public User getById(Integer id) {
@@ -62,21 +95,46 @@ public class UserService {
     }
 
     public void addFriend(Integer id, Integer friendId) {
-        User user = userStorage.getById(id);
-        User friend = userStorage.getById(friendId);
-
-        user.getFriends().add(friendId);
-        friend.getFriends().add(id);
+        if (userStorage.addFriend(id, friendId)) {
+            friendshipChanged(ChangeEvent.FRIEND_ADDED, id, friendId);
+        }
     }
 
     public void removeFriend(Integer id, Integer friendId) {
-        User user = userStorage.getById(id);
-        User friend = userStorage.getById(friendId);
+        if (userStorage.removeFriend(id, friendId)) {
+            friendshipChanged(ChangeEvent.FRIEND_REMOVED, id, friendId);
+        }
+    }
+
+    private void friendshipChanged(String type, int id, int friendId) {
+        friendSuggestions.invalidate(id, friendId);
+        responseCache.invalidateUser(id);
+        responseCache.invalidateUser(friendId);
+        events.friendshipChanged(ChangeEvent.friendship(type, id, friendId));
+    }
 
-        if (user.getFriends().contains(friendId) && friend.getFriends().contains(id)) {
-            user.getFriends().remove(friendId);
-            friend.getFriends().remove(id);
+    public List<BatchResult> addFriends(List<Friendship> friendships) {
+        List<BatchResult> results = Batches.apply(friendships, friendship -> {
+            userStorage.checkUserExist(friendship.getUserId());
+            userStorage.checkUserExist(friendship.getFriendId());
+        }, userStorage::addFriends);
+
+        int[] changed = IntStream.range(0, friendships.size())
+                .filter(i -> results.get(i).isSuccessful() && results.get(i).isChanged())
+                .flatMap(i -> IntStream.of(friendships.get(i).getUserId(), friendships.get(i).getFriendId()))
+                .distinct()
+                .toArray();
+        friendSuggestions.invalidate(changed);
+        for (int userId : changed) {
+            responseCache.invalidateUser(userId);
         }
+        for (int i = 0; i < friendships.size(); i++) {
+            if (results.get(i).isSuccessful() && results.get(i).isChanged()) {
+                events.friendshipChanged(ChangeEvent.friendship(ChangeEvent.FRIEND_ADDED,
+                        friendships.get(i).getUserId(), friendships.get(i).getFriendId()));
+            }
+        }
+        return results;
     }
 
     public Collection<User> getFriends(Integer id) {
@@ -84,11 +142,24 @@ public class UserService {
         return user.getFriends().stream().map(integer -> userStorage.getById(integer)).collect(Collectors.toList());
     }
 
+    public SseEmitter subscribe(Integer id) {
+        userStorage.checkUserExist(id);
+        return events.subscribeUser(id);
+    }
+
     public Collection<User> getCommonFriends(Integer id, Integer otherId) {
-        User user = userStorage.getById(id);
-        User otherUser = userStorage.getById(otherId);
+        return userStorage.getCommonFriends(id, otherId);
+    }
 
-        return user.getFriends().stream().filter(i -> otherUser.getFriends().contains(i))
-                .map(i -> userStorage.getById(i)).collect(Collectors.toList());
+    public int getCommonFriendsCount(Integer id, Integer otherId) {
+        return userStorage.getCommonFriendsCount(id, otherId);
+    }
+
+    public Collection<User> getFriendSuggestions(Integer id, Integer count) {
+        if (count == null || count <= 0) {
+            log.warn("Попытка получить рекомендации друзей с неположительным количеством: {}", count);
+            throw new ValidationException("Количество рекомендаций должно быть положительным");
+        }
+        return friendSuggestions.suggest(id, Math.min(count, FriendSuggestions.MAX_SUGGESTIONS));
     }
 }
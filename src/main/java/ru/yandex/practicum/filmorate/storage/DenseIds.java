@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Счёт и постраничный обход сущностей in-memory хранилищ по последнему выданному id. Id выдаются подряд
+ * и не удаляются, поэтому последний id равен числу сущностей, в том числе ещё не поднятых из снимка,
+ * а страница собирается прямым перебором id за O(limit).
+ */
+final class DenseIds {
+    private DenseIds() {
+    }
+
+    static int count(AtomicInteger lastId) {
+        return lastId.get();
+    }
+
+    static <T> List<T> page(AtomicInteger lastId, int after, int limit, IntFunction<T> find) {
+        List<T> page = new ArrayList<>(limit);
+        int last = lastId.get();
+
+        for (int next = after + 1; next <= last && page.size() < limit; next++) {
+            T entity = find.apply(next);
+            if (entity != null) {
+                page.add(entity);
+            }
+        }
+
+        return page;
+    }
+}
@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.storage;
+
+/**
+ * Источник сущностей, которые хранилище поднимает в память только при первом обращении,
+ * например отображённый в память снимок.
+ */
+public interface EntityLoader<T> {
+    int maxId();
+
+    /**
+     * @return сущность или null, если сущности с таким id нет
+     */
+    T load(int id);
+
+    /**
+     * Количество лайков фильма или друзей пользователя без загрузки самой сущности, -1 если сущности нет.
+     */
+    int linkCount(int id);
+}
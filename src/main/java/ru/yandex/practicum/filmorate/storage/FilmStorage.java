@@ -1,15 +1,47 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import ru.yandex.practicum.filmorate.model.BatchResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.Like;
 
 import java.util.Collection;
+import java.util.List;
 
 public interface FilmStorage {
     Collection<Film> findAll();
 
+    int size();
+
+    Collection<Film> findPage(Integer after, Integer limit);
+
     Film create(Film film);
 
+    List<BatchResult> createAll(List<Film> films);
+
     Film update(Film film);
 
     Film getById(Integer id);
+
+    /**
+     * @return true, если лайк добавлен, false - если он уже был
+     */
+    boolean addLike(Integer id, Integer userId);
+
+    /**
+     * @return true, если лайк снят, false - если его не было
+     */
+    boolean removeLike(Integer id, Integer userId);
+
+    /**
+     * Лайки, которые уже были поставлены или повторяются в пачке, отмечаются {@link BatchResult#unchanged}.
+     */
+    List<BatchResult> addLikes(List<Like> likes);
+
+    Collection<Film> getPopular(Integer count);
+
+    /**
+     * Фильмы, подходящие под фильтр, по убыванию числа лайков, при равенстве - по id.
+     */
+    List<Film> findFiltered(FilmFilter filter, Integer offset, Integer limit);
 }
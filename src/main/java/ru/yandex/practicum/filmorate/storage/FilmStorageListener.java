@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.Film;
+
+/**
+ * Получает уведомления об изменениях в хранилище фильмов. Вызывается под блокировкой изменяемого фильма,
+ * поэтому уведомления об одном фильме приходят в том же порядке, в каком применялись изменения.
+ */
+public interface FilmStorageListener {
+    default void filmCreated(Film film) {
+    }
+
+    default void filmUpdated(Film film) {
+    }
+
+    default void likeAdded(int filmId, int userId) {
+    }
+
+    default void likeRemoved(int filmId, int userId) {
+    }
+
+    /**
+     * Вызывается в потоке, внёсшем изменение, после снятия блокировок. Здесь можно дождаться долгой работы
+     * по уже полученным уведомлениям (например, fsync журнала), не задерживая других писателей.
+     */
+    default void committed() {
+    }
+}
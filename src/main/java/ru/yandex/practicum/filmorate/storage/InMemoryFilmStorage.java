@@ -1,35 +1,121 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.Like;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Component
+@Profile("!jdbc")
 public class InMemoryFilmStorage implements FilmStorage {
-    private Map<Integer, Film> films = new HashMap<>();
-    private int id = 0;
+    private static final int LOCK_STRIPES = 64;
 
+    private final int shards;
+
+    private final SnapshotTable<Film> films = new SnapshotTable<>();
+    private final AtomicInteger id = new AtomicInteger();
+    private final StripedLock locks = new StripedLock(LOCK_STRIPES);
+    private final PopularityIndex popularity;
+    private final RangeIndex byReleaseDate = new RangeIndex();
+    private final RangeIndex byDuration = new RangeIndex();
+    private final List<FilmStorageListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile EntityLoader<Film> loader;
+
+    public InMemoryFilmStorage() {
+        this(0);
+    }
+
+    /**
+     * @param shards число шардов индекса популярности и параллельных задач при полном обходе, 0 - по числу ядер
+     */
+    @Autowired
+    public InMemoryFilmStorage(@Value("${filmorate.storage.shards:0}") int shards) {
+        this.shards = Shards.resolve(shards);
+        this.popularity = new PopularityIndex(this.shards);
+    }
+
+    public void addListener(FilmStorageListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Кладёт фильм с уже назначенным id в обход проверок и слушателей. Используется при восстановлении данных.
+     */
+    public void restore(Film film) {
+        Film previous = films.put(film.getId(), film);
+        if (previous != null) {
+            unindexFields(previous);
+        }
+        id.accumulateAndGet(film.getId(), Math::max);
+        popularity.put(film.getId(), film.getLikesByUsers().size());
+        indexFields(film);
+    }
+
+    /**
+     * Подключает источник, из которого фильмы поднимаются в память при первом обращении. Индекс популярности
+     * строится сразу по количеству лайков, без загрузки самих фильмов.
+     */
+    public void attach(EntityLoader<Film> source) {
+        id.accumulateAndGet(source.maxId(), Math::max);
+        for (int filmId = 1; filmId <= source.maxId(); filmId++) {
+            int likes = source.linkCount(filmId);
+            if (likes >= 0 && films.get(filmId) == null) {
+                popularity.put(filmId, likes);
+            }
+        }
+        loader = source;
+    }
+
+    /**
+     * Неизменяемый срез всех фильмов на момент вызова: последующие изменения в нём не видны.
+     */
     @Override
     public Collection<Film> findAll() {
-        return films.values();
+        loadAll();
+        return films.snapshot();
+    }
+
+    @Override
+    public int size() {
+        return DenseIds.count(id);
+    }
+
+    @Override
+    public Collection<Film> findPage(Integer after, Integer limit) {
+        return DenseIds.page(id, after, limit, this::find);
     }
 
     @Override
     public Film create(Film film) {
-        if (films.containsKey(film.getId())) {
+        if (find(film.getId()) != null) {
             log.warn("Попытка создать фильм с уже существующим id");
             throw new ValidationException("Фильм с таким id уже существует");
         }
 
-        film.setId(++id);
-        films.put(film.getId(), film);
+        insert(film, id.incrementAndGet());
+        committed();
 
         log.debug("Создан новый фильм: {}", film);
 
@@ -37,13 +123,53 @@ public class InMemoryFilmStorage implements FilmStorage {
     }
 
     @Override
-    public Film update(Film film) {
-        if (!films.containsKey(film.getId())) {
-            log.warn("Попытка изменить фильм по не существующему id");
-            throw new FilmNotFoundException("Фильма с таким id не существует, обновление невозможно");
+    public List<BatchResult> createAll(List<Film> batch) {
+        List<BatchResult> results = new ArrayList<>(batch.size());
+        int accepted = 0;
+
+        for (Film film : batch) {
+            if (find(film.getId()) != null) {
+                results.add(BatchResult.invalid("Фильм с таким id уже существует"));
+            } else {
+                results.add(null);
+                accepted++;
+            }
         }
 
-        films.put(film.getId(), film);
+        int next = id.getAndAdd(accepted) + 1;
+        for (int i = 0; i < batch.size(); i++) {
+            if (results.get(i) == null) {
+                Film film = batch.get(i);
+                insert(film, next++);
+                results.set(i, BatchResult.ok(film.getId()));
+            }
+        }
+        committed();
+        log.debug("Пакетно создано фильмов: {}", accepted);
+
+        return results;
+    }
+
+    @Override
+    public Film update(Film film) {
+        locks.lock(film.getId());
+        try {
+            Film previous = find(film.getId());
+            if (previous == null) {
+                log.warn("Попытка изменить фильм по не существующему id");
+                throw new FilmNotFoundException("Фильма с таким id не существует, обновление невозможно");
+            }
+            film.setVersion(previous.getVersion() + 1);
+            films.put(film.getId(), film);
+            unindexFields(previous);
+            indexFields(film);
+
+            popularity.put(film.getId(), film.getLikesByUsers().size());
+            listeners.forEach(listener -> listener.filmUpdated(film));
+        } finally {
+            locks.unlock(film.getId());
+        }
+        committed();
         log.debug("Внесены изменения в фильм: {}", film);
 
         return film;
@@ -51,13 +177,245 @@ public class InMemoryFilmStorage implements FilmStorage {
 
     @Override
     public Film getById(Integer id) {
-        if (!films.containsKey(id)) {
+        Film film = find(id);
+
+        if (film == null) {
             log.warn("Попытка получить фильм по несуществующему id");
             throw new FilmNotFoundException(String.format("Фильма с id: %d не существует, получение невозможно", id));
         }
 
-        return films.get(id);
+        return film;
+    }
+
+    @Override
+    public boolean addLike(Integer id, Integer userId) {
+        locks.lock(id);
+        try {
+            Film film = getById(id);
+            if (film.getLikesByUsers().contains(userId)) {
+                return false;
+            }
+            Film changed = film.copy();
+            changed.getLikesByUsers().add(userId);
+            changed.setVersion(film.getVersion() + 1);
+            films.put(id, changed);
+            popularity.increment(id);
+            listeners.forEach(listener -> listener.likeAdded(id, userId));
+        } finally {
+            locks.unlock(id);
+        }
+        committed();
+        return true;
+    }
+
+    @Override
+    public boolean removeLike(Integer id, Integer userId) {
+        locks.lock(id);
+        try {
+            Film film = getById(id);
+            if (!film.getLikesByUsers().contains(userId)) {
+                return false;
+            }
+            Film changed = film.copy();
+            changed.getLikesByUsers().remove(userId);
+            changed.setVersion(film.getVersion() + 1);
+            films.put(id, changed);
+            popularity.decrement(id);
+            listeners.forEach(listener -> listener.likeRemoved(id, userId));
+        } finally {
+            locks.unlock(id);
+        }
+        committed();
+        return true;
+    }
+
+    @Override
+    public List<BatchResult> addLikes(List<Like> likes) {
+        List<BatchResult> results = new ArrayList<>(likes.size());
+        Map<Integer, List<Integer>> positionsByFilm = new LinkedHashMap<>();
+
+        for (int i = 0; i < likes.size(); i++) {
+            Like like = likes.get(i);
+            if (find(like.getFilmId()) == null) {
+                results.add(BatchResult.notFound(
+                        String.format("Фильма с id: %d не существует, получение невозможно", like.getFilmId())));
+            } else {
+                positionsByFilm.computeIfAbsent(like.getFilmId(), key -> new ArrayList<>()).add(i);
+                results.add(BatchResult.ok(like.getFilmId()));
+            }
+        }
+
+        int[] touched = positionsByFilm.keySet().stream().mapToInt(Integer::intValue).toArray();
+        Map<Integer, Film> changed = new HashMap<>();
+        Map<Integer, Set<Integer>> addedByFilm = new HashMap<>();
+        locks.lockAll(touched);
+        try {
+            positionsByFilm.forEach((filmId, positions) -> {
+                Film film = films.get(filmId);
+                Set<Integer> added = new LinkedHashSet<>();
+                for (int position : positions) {
+                    int userId = likes.get(position).getUserId();
+                    if (film.getLikesByUsers().contains(userId) || !added.add(userId)) {
+                        results.set(position, BatchResult.unchanged(filmId));
+                    }
+                }
+                if (!added.isEmpty()) {
+                    Film updated = film.copy();
+                    updated.getLikesByUsers().addAll(added);
+                    updated.setVersion(film.getVersion() + 1);
+                    changed.put(filmId, updated);
+                    addedByFilm.put(filmId, added);
+                }
+            });
+            films.putAll(changed);
+            changed.forEach((filmId, film) -> {
+                popularity.put(filmId, film.getLikesByUsers().size());
+                addedByFilm.get(filmId).forEach(userId ->
+                        listeners.forEach(listener -> listener.likeAdded(filmId, userId)));
+            });
+        } finally {
+            locks.unlockAll(touched);
+        }
+        committed();
+        log.debug("Пакетно добавлено лайков: {}, фильмов затронуто: {}", likes.size(), positionsByFilm.size());
+
+        return results;
+    }
+
+    @Override
+    public Collection<Film> getPopular(Integer count) {
+        SnapshotTable.Snapshot<Film> snapshot = films.snapshot();
+        return popularity.top(count).stream()
+                .map(filmId -> {
+                    Film film = snapshot.get(filmId);
+                    return film != null ? film : find(filmId);
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Выборка идёт по индексу заданного поля, а если заданы оба - по тому, чей диапазон короче: итераторы
+     * продвигаются поочерёдно, и первый закончившийся определяет кандидатов. Поэтому стоимость зависит
+     * от размера самого узкого диапазона, а не от размера каталога.
+     */
+    @Override
+    public List<Film> findFiltered(FilmFilter filter, Integer offset, Integer limit) {
+        loadAll();
+        List<Integer> candidates;
+
+        if (filter.hasReleaseDate() && filter.hasDuration()) {
+            candidates = shortest(releaseDateRange(filter), durationRange(filter));
+        } else if (filter.hasReleaseDate()) {
+            candidates = collect(releaseDateRange(filter));
+        } else if (filter.hasDuration()) {
+            candidates = collect(durationRange(filter));
+        } else {
+            return popularity.top(offset + limit).stream()
+                    .skip(offset)
+                    .map(this::find)
+                    .collect(Collectors.toList());
+        }
+
+        SnapshotTable.Snapshot<Film> snapshot = films.snapshot();
+        // индекс может ненадолго хранить устаревший ключ фильма, поэтому id повторно проверяются по срезу
+        return candidates.stream()
+                .distinct()
+                .map(snapshot::get)
+                .filter(film -> film != null && filter.test(film))
+                .sorted(Comparator.comparingInt((Film film) -> popularity.score(film.getId())).reversed()
+                        .thenComparingInt(Film::getId))
+                .skip(offset)
+                .limit(limit)
+                .collect(Collectors.toList());
     }
 
+    private Iterator<Integer> releaseDateRange(FilmFilter filter) {
+        return byReleaseDate.range(
+                filter.getReleasedFrom() == null ? Integer.MIN_VALUE : (int) filter.getReleasedFrom().toEpochDay(),
+                filter.getReleasedTo() == null ? Integer.MAX_VALUE : (int) filter.getReleasedTo().toEpochDay());
+    }
+
+    private Iterator<Integer> durationRange(FilmFilter filter) {
+        return byDuration.range(
+                filter.getMinDuration() == null ? Integer.MIN_VALUE : filter.getMinDuration(),
+                filter.getMaxDuration() == null ? Integer.MAX_VALUE : filter.getMaxDuration());
+    }
+
+    private static List<Integer> shortest(Iterator<Integer> first, Iterator<Integer> second) {
+        List<Integer> fromFirst = new ArrayList<>();
+        List<Integer> fromSecond = new ArrayList<>();
+
+        while (first.hasNext() && second.hasNext()) {
+            fromFirst.add(first.next());
+            fromSecond.add(second.next());
+        }
+        if (!first.hasNext()) {
+            return fromFirst;
+        }
+        fromSecond.addAll(collect(second));
+        return fromSecond;
+    }
 
+    private static List<Integer> collect(Iterator<Integer> ids) {
+        List<Integer> collected = new ArrayList<>();
+        ids.forEachRemaining(collected::add);
+        return collected;
+    }
+
+    private Film find(int filmId) {
+        Film film = films.get(filmId);
+        EntityLoader<Film> source = loader;
+
+        if (film == null && source != null) {
+            Film loaded = source.load(filmId);
+            if (loaded != null) {
+                film = films.putIfAbsent(filmId, loaded);
+                if (film == loaded) {
+                    indexFields(loaded);
+                }
+            }
+        }
+        return film;
+    }
+
+    private void indexFields(Film film) {
+        if (film.getReleaseDate() != null) {
+            byReleaseDate.add((int) film.getReleaseDate().toEpochDay(), film.getId());
+        }
+        byDuration.add(film.getDuration(), film.getId());
+    }
+
+    private void unindexFields(Film film) {
+        if (film.getReleaseDate() != null) {
+            byReleaseDate.remove((int) film.getReleaseDate().toEpochDay(), film.getId());
+        }
+        byDuration.remove(film.getDuration(), film.getId());
+    }
+
+    private void loadAll() {
+        EntityLoader<Film> source = loader;
+
+        if (source != null) {
+            films.fillMissing(source.maxId(), source::load, shards).forEach(this::indexFields);
+            loader = null;
+        }
+    }
+
+    private void committed() {
+        listeners.forEach(FilmStorageListener::committed);
+    }
+
+    private void insert(Film film, int filmId) {
+        locks.lock(filmId);
+        try {
+            film.setId(filmId);
+            film.setVersion(1);
+            films.put(filmId, film);
+            popularity.put(filmId, film.getLikesByUsers().size());
+            indexFields(film);
+            listeners.forEach(listener -> listener.filmCreated(film));
+        } finally {
+            locks.unlock(filmId);
+        }
+    }
 }
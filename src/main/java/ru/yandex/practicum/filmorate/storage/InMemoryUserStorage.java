@@ -1,35 +1,102 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.util.RoaringIntSet;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @Component
+@Profile("!jdbc")
 public class InMemoryUserStorage implements UserStorage {
-    private Map<Integer, User> users = new HashMap<>();
-    private int id = 0;
+    private static final int LOCK_STRIPES = 64;
 
+    private final int shards;
+
+    private final SnapshotTable<User> users = new SnapshotTable<>();
+    private final AtomicInteger id = new AtomicInteger();
+    private final StripedLock locks = new StripedLock(LOCK_STRIPES);
+    private final List<UserStorageListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile EntityLoader<User> loader;
+
+    public InMemoryUserStorage() {
+        this(0);
+    }
+
+    /**
+     * @param shards число параллельных задач при полном обходе, 0 - по числу ядер
+     */
+    @Autowired
+    public InMemoryUserStorage(@Value("${filmorate.storage.shards:0}") int shards) {
+        this.shards = Shards.resolve(shards);
+    }
+
+    public void addListener(UserStorageListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Кладёт пользователя с уже назначенным id в обход проверок и слушателей. Используется при восстановлении данных.
+     */
+    public void restore(User user) {
+        users.put(user.getId(), user);
+        id.accumulateAndGet(user.getId(), Math::max);
+    }
+
+    /**
+     * Подключает источник, из которого пользователи поднимаются в память при первом обращении.
+     */
+    public void attach(EntityLoader<User> source) {
+        id.accumulateAndGet(source.maxId(), Math::max);
+        loader = source;
+    }
+
+    /**
+     * Неизменяемый срез всех пользователей на момент вызова: последующие изменения в нём не видны.
+     */
     @Override
     public Collection<User> findAll() {
-        return users.values();
+        loadAll();
+        return users.snapshot();
+    }
+
+    @Override
+    public int size() {
+        return DenseIds.count(id);
+    }
+
+    @Override
+    public Collection<User> findPage(Integer after, Integer limit) {
+        return DenseIds.page(id, after, limit, this::find);
     }
 
     @Override
     public User create(User user) {
-        if (users.containsKey(user.getId())) {
+        if (find(user.getId()) != null) {
             log.warn("Попытка создать пользователя с уже существующим id");
             throw new ValidationException(String.format("Пользователь с id: %d уже существует", user.getId()));
         }
 
-        user.setId(++id);
-        users.put(user.getId(), user);
+        insert(user, id.incrementAndGet());
+        committed();
 
         log.debug("Пользователь создан: {}", user);
 
@@ -37,13 +104,50 @@ public class InMemoryUserStorage implements UserStorage {
     }
 
     @Override
-    public User update(User user) {
-        if (!users.containsKey(user.getId())) {
-            log.warn("Попытка изменить пользователя с не существующим id");
-            throw new UserNotFoundException(String.format("Пользователя с id: %d не существует", user.getId()));
+    public List<BatchResult> createAll(List<User> batch) {
+        List<BatchResult> results = new ArrayList<>(batch.size());
+        int accepted = 0;
+
+        for (User user : batch) {
+            if (find(user.getId()) != null) {
+                results.add(BatchResult.invalid(
+                        String.format("Пользователь с id: %d уже существует", user.getId())));
+            } else {
+                results.add(null);
+                accepted++;
+            }
         }
 
-        users.put(user.getId(), user);
+        int next = id.getAndAdd(accepted) + 1;
+        for (int i = 0; i < batch.size(); i++) {
+            if (results.get(i) == null) {
+                User user = batch.get(i);
+                insert(user, next++);
+                results.set(i, BatchResult.ok(user.getId()));
+            }
+        }
+        committed();
+        log.debug("Пакетно создано пользователей: {}", accepted);
+
+        return results;
+    }
+
+    @Override
+    public User update(User user) {
+        locks.lock(user.getId());
+        try {
+            User previous = find(user.getId());
+            if (previous == null) {
+                log.warn("Попытка изменить пользователя с не существующим id");
+                throw new UserNotFoundException(String.format("Пользователя с id: %d не существует", user.getId()));
+            }
+            user.setVersion(previous.getVersion() + 1);
+            users.put(user.getId(), user);
+            listeners.forEach(listener -> listener.userUpdated(user));
+        } finally {
+            locks.unlock(user.getId());
+        }
+        committed();
         log.debug("Пользователь изменён: {}", user);
 
         return user;
@@ -51,17 +155,183 @@ public class InMemoryUserStorage implements UserStorage {
 
     @Override
     public User getById(Integer id) {
-        if (!users.containsKey(id)) {
+        User user = find(id);
+
+        if (user == null) {
             log.warn("Попытка получить пользователя с не существующим id");
             throw new UserNotFoundException(String.format("Пользователя с id: %d не существует", id));
         }
-        return users.get(id);
+        return user;
     }
 
     @Override
     public void checkUserExist(Integer id) {
-        if (!users.containsKey(id)) {
+        if (find(id) == null) {
             throw new UserNotFoundException(String.format("Пользователя с id: %d не существует", id));
         }
     }
+
+    @Override
+    public boolean addFriend(Integer id, Integer friendId) {
+        locks.lockPair(id, friendId);
+        try {
+            User user = getById(id);
+            User friend = getById(friendId);
+
+            if (user.getFriends().contains(friendId) && friend.getFriends().contains(id)) {
+                return false;
+            }
+            Map<Integer, User> changed = new HashMap<>();
+            changed.put(id, withFriend(changed.getOrDefault(id, user), friendId, true));
+            changed.put(friendId, withFriend(changed.getOrDefault(friendId, friend), id, true));
+            users.putAll(changed);
+            listeners.forEach(listener -> listener.friendAdded(id, friendId));
+        } finally {
+            locks.unlockPair(id, friendId);
+        }
+        committed();
+        return true;
+    }
+
+    @Override
+    public boolean removeFriend(Integer id, Integer friendId) {
+        locks.lockPair(id, friendId);
+        try {
+            User user = getById(id);
+            User friend = getById(friendId);
+
+            if (!user.getFriends().contains(friendId) || !friend.getFriends().contains(id)) {
+                return false;
+            }
+            Map<Integer, User> changed = new HashMap<>();
+            changed.put(id, withFriend(changed.getOrDefault(id, user), friendId, false));
+            changed.put(friendId, withFriend(changed.getOrDefault(friendId, friend), id, false));
+            users.putAll(changed);
+            listeners.forEach(listener -> listener.friendRemoved(id, friendId));
+        } finally {
+            locks.unlockPair(id, friendId);
+        }
+        committed();
+        return true;
+    }
+
+    @Override
+    public List<BatchResult> addFriends(List<Friendship> friendships) {
+        List<BatchResult> results = new ArrayList<>(friendships.size());
+        Map<Integer, Integer> positions = new LinkedHashMap<>();
+        Set<Integer> touchedIds = new HashSet<>();
+
+        for (int i = 0; i < friendships.size(); i++) {
+            Friendship friendship = friendships.get(i);
+            int missing = find(friendship.getUserId()) == null ? friendship.getUserId()
+                    : find(friendship.getFriendId()) == null ? friendship.getFriendId() : 0;
+
+            if (missing != 0) {
+                results.add(BatchResult.notFound(String.format("Пользователя с id: %d не существует", missing)));
+            } else {
+                touchedIds.add(friendship.getUserId());
+                touchedIds.add(friendship.getFriendId());
+                positions.put(i, friendship.getUserId());
+                results.add(BatchResult.ok(friendship.getUserId()));
+            }
+        }
+
+        int[] touched = touchedIds.stream().mapToInt(Integer::intValue).toArray();
+        List<Friendship> added = new ArrayList<>();
+        locks.lockAll(touched);
+        try {
+            Map<Integer, User> changed = new HashMap<>();
+            positions.forEach((position, userId) -> {
+                int friendId = friendships.get(position).getFriendId();
+                User user = changed.getOrDefault(userId, users.get(userId));
+                User friend = changed.getOrDefault(friendId, users.get(friendId));
+                if (user.getFriends().contains(friendId) && friend.getFriends().contains(userId)) {
+                    results.set(position, BatchResult.unchanged(userId));
+                    return;
+                }
+                changed.put(userId, withFriend(user, friendId, true));
+                changed.put(friendId, withFriend(changed.getOrDefault(friendId, friend), userId, true));
+                added.add(friendships.get(position));
+            });
+            users.putAll(changed);
+            added.forEach(friendship -> listeners.forEach(listener ->
+                    listener.friendAdded(friendship.getUserId(), friendship.getFriendId())));
+        } finally {
+            locks.unlockAll(touched);
+        }
+        committed();
+        log.debug("Пакетно добавлено дружб: {}", added.size());
+
+        return results;
+    }
+
+    @Override
+    public Collection<User> getCommonFriends(Integer id, Integer otherId) {
+        RoaringIntSet common = friendsOf(getById(id)).and(friendsOf(getById(otherId)));
+        List<User> friends = new ArrayList<>(common.size());
+
+        common.forEachInt(friendId -> friends.add(getById(friendId)));
+        return friends;
+    }
+
+    @Override
+    public int getCommonFriendsCount(Integer id, Integer otherId) {
+        return friendsOf(getById(id)).andCardinality(friendsOf(getById(otherId)));
+    }
+
+    private void committed() {
+        listeners.forEach(UserStorageListener::committed);
+    }
+
+    private void insert(User user, int userId) {
+        locks.lock(userId);
+        try {
+            user.setId(userId);
+            user.setVersion(1);
+            users.put(userId, user);
+            listeners.forEach(listener -> listener.userCreated(user));
+        } finally {
+            locks.unlock(userId);
+        }
+    }
+
+    private User find(int userId) {
+        User user = users.get(userId);
+        EntityLoader<User> source = loader;
+
+        if (user == null && source != null) {
+            User loaded = source.load(userId);
+            if (loaded != null) {
+                user = users.putIfAbsent(userId, loaded);
+            }
+        }
+        return user;
+    }
+
+    private void loadAll() {
+        EntityLoader<User> source = loader;
+
+        if (source != null) {
+            users.fillMissing(source.maxId(), source::load, shards);
+            loader = null;
+        }
+    }
+
+    /**
+     * Копия пользователя с добавленным или удалённым другом и следующей версией.
+     */
+    private static User withFriend(User user, int friendId, boolean add) {
+        User changed = user.copy();
+        if (add) {
+            changed.getFriends().add(friendId);
+        } else {
+            changed.getFriends().remove(friendId);
+        }
+        changed.setVersion(user.getVersion() + 1);
+        return changed;
+    }
+
+    private RoaringIntSet friendsOf(User user) {
+        return RoaringIntSet.of(user.getFriends());
+    }
 }
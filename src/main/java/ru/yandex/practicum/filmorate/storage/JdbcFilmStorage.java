@@ -0,0 +1,351 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.util.CompactIntSet;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Хранилище фильмов в реляционной БД (профиль jdbc). Лайки пишутся пакетами, популярные фильмы
+ * ранжируются одним запросом с агрегатом по индексу лайков.
+ */
+@Slf4j
+@Component
+@Profile("jdbc")
+public class JdbcFilmStorage implements FilmStorage {
+    private static final String SELECT_FILMS = "SELECT id, name, description, release_date, duration, version FROM films ";
+    private static final String INSERT_FILM =
+            "INSERT INTO films (id, name, description, release_date, duration) VALUES (?, ?, ?, ?, ?)";
+    private static final String MERGE_LIKE = "MERGE INTO likes (film_id, user_id) KEY (film_id, user_id) VALUES (?, ?)";
+    private static final String INSERT_LIKE = "INSERT INTO likes (film_id, user_id) VALUES (?, ?)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public JdbcFilmStorage(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Collection<Film> findAll() {
+        List<Film> films = jdbcTemplate.query(SELECT_FILMS + "ORDER BY id", this::mapFilm);
+        Map<Integer, List<Integer>> likes = new HashMap<>();
+
+        jdbcTemplate.query("SELECT film_id, user_id FROM likes",
+                collectLikes(likes));
+        films.forEach(film -> setLikes(film, likes));
+        return films;
+    }
+
+    @Override
+    public int size() {
+        Integer count = jdbcTemplate.getJdbcOperations().queryForObject("SELECT COUNT(*) FROM films", Integer.class);
+        return count == null ? 0 : count;
+    }
+
+    @Override
+    public Collection<Film> findPage(Integer after, Integer limit) {
+        return withLikes(jdbcTemplate.query(SELECT_FILMS + "WHERE id > :after ORDER BY id LIMIT :limit",
+                new MapSqlParameterSource("after", after).addValue("limit", limit), this::mapFilm));
+    }
+
+    @Override
+    @Transactional
+    public Film create(Film film) {
+        if (film.getId() != 0 && exists(film.getId())) {
+            log.warn("Попытка создать фильм с уже существующим id");
+            throw new ValidationException("Фильм с таким id уже существует");
+        }
+
+        film.setId(nextIds(1).get(0));
+        insert(List.of(film));
+        log.debug("Фильм создан: {}", film);
+
+        return film;
+    }
+
+    @Override
+    @Transactional
+    public List<BatchResult> createAll(List<Film> batch) {
+        Set<Integer> existing = existing(batch.stream().map(Film::getId).collect(Collectors.toList()));
+        List<BatchResult> results = new ArrayList<>(batch.size());
+        List<Film> accepted = new ArrayList<>();
+
+        for (Film film : batch) {
+            if (existing.contains(film.getId())) {
+                results.add(BatchResult.invalid("Фильм с таким id уже существует"));
+            } else {
+                results.add(null);
+                accepted.add(film);
+            }
+        }
+
+        List<Integer> ids = nextIds(accepted.size());
+        for (int i = 0; i < accepted.size(); i++) {
+            accepted.get(i).setId(ids.get(i));
+        }
+        insert(accepted);
+
+        int next = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            if (results.get(i) == null) {
+                results.set(i, BatchResult.ok(accepted.get(next++).getId()));
+            }
+        }
+        log.debug("Пакетно создано фильмов: {}", accepted.size());
+
+        return results;
+    }
+
+    @Override
+    @Transactional
+    public Film update(Film film) {
+        int updated = jdbcTemplate.getJdbcOperations().update(
+                "UPDATE films SET name = ?, description = ?, release_date = ?, duration = ?, version = version + 1 "
+                        + "WHERE id = ?",
+                film.getName(), film.getDescription(), toDate(film), film.getDuration(), film.getId());
+
+        if (updated == 0) {
+            log.warn("Попытка изменить фильм по не существующему id");
+            throw new FilmNotFoundException("Фильма с таким id не существует, обновление невозможно");
+        }
+        jdbcTemplate.getJdbcOperations().update("DELETE FROM likes WHERE film_id = ?", film.getId());
+        insertLikes(List.of(film));
+        film.setVersion(jdbcTemplate.getJdbcOperations().queryForObject(
+                "SELECT version FROM films WHERE id = ?", Long.class, film.getId()));
+        log.debug("Фильм изменён: {}", film);
+
+        return film;
+    }
+
+    @Override
+    public Film getById(Integer id) {
+        List<Film> films = withLikes(jdbcTemplate.query(SELECT_FILMS + "WHERE id = :id",
+                new MapSqlParameterSource("id", id), this::mapFilm));
+
+        if (films.isEmpty()) {
+            log.warn("Попытка получить фильм по несуществующему id");
+            throw new FilmNotFoundException(String.format("Фильма с id: %d не существует, получение невозможно", id));
+        }
+
+        return films.get(0);
+    }
+
+    @Override
+    @Transactional
+    public boolean addLike(Integer id, Integer userId) {
+        checkFilmExist(id);
+        if (!insertLike(id, userId)) {
+            return false;
+        }
+        bumpVersions(List.of(id));
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public boolean removeLike(Integer id, Integer userId) {
+        checkFilmExist(id);
+        if (jdbcTemplate.getJdbcOperations().update(
+                "DELETE FROM likes WHERE film_id = ? AND user_id = ?", id, userId) == 0) {
+            return false;
+        }
+        bumpVersions(List.of(id));
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public List<BatchResult> addLikes(List<Like> likes) {
+        Set<Integer> existing = existing(likes.stream().map(Like::getFilmId).collect(Collectors.toList()));
+        List<BatchResult> results = new ArrayList<>(likes.size());
+        Set<Integer> changed = new HashSet<>();
+        int added = 0;
+
+        for (Like like : likes) {
+            if (!existing.contains(like.getFilmId())) {
+                results.add(BatchResult.notFound(
+                        String.format("Фильма с id: %d не существует, получение невозможно", like.getFilmId())));
+            } else if (insertLike(like.getFilmId(), like.getUserId())) {
+                changed.add(like.getFilmId());
+                results.add(BatchResult.ok(like.getFilmId()));
+                added++;
+            } else {
+                results.add(BatchResult.unchanged(like.getFilmId()));
+            }
+        }
+
+        bumpVersions(new ArrayList<>(changed));
+        log.debug("Пакетно добавлено лайков: {}", added);
+
+        return results;
+    }
+
+    @Override
+    public Collection<Film> getPopular(Integer count) {
+        return withLikes(jdbcTemplate.query(
+                "SELECT f.id, f.name, f.description, f.release_date, f.duration, f.version FROM films f "
+                        + "LEFT JOIN (SELECT film_id, COUNT(*) AS likes FROM likes GROUP BY film_id) l "
+                        + "ON l.film_id = f.id ORDER BY COALESCE(l.likes, 0) DESC, f.id LIMIT :count",
+                new MapSqlParameterSource("count", count), this::mapFilm));
+    }
+
+    @Override
+    public List<Film> findFiltered(FilmFilter filter, Integer offset, Integer limit) {
+        List<String> conditions = new ArrayList<>();
+        MapSqlParameterSource parameters = new MapSqlParameterSource("offset", offset).addValue("limit", limit);
+
+        if (filter.getReleasedFrom() != null) {
+            conditions.add("f.release_date >= :releasedFrom");
+            parameters.addValue("releasedFrom", Date.valueOf(filter.getReleasedFrom()));
+        }
+        if (filter.getReleasedTo() != null) {
+            conditions.add("f.release_date <= :releasedTo");
+            parameters.addValue("releasedTo", Date.valueOf(filter.getReleasedTo()));
+        }
+        if (filter.getMinDuration() != null) {
+            conditions.add("f.duration >= :minDuration");
+            parameters.addValue("minDuration", filter.getMinDuration());
+        }
+        if (filter.getMaxDuration() != null) {
+            conditions.add("f.duration <= :maxDuration");
+            parameters.addValue("maxDuration", filter.getMaxDuration());
+        }
+
+        return withLikes(jdbcTemplate.query(
+                "SELECT f.id, f.name, f.description, f.release_date, f.duration, f.version FROM films f "
+                        + "LEFT JOIN (SELECT film_id, COUNT(*) AS likes FROM likes GROUP BY film_id) l "
+                        + "ON l.film_id = f.id "
+                        + (conditions.isEmpty() ? "" : "WHERE " + String.join(" AND ", conditions) + " ")
+                        + "ORDER BY COALESCE(l.likes, 0) DESC, f.id LIMIT :limit OFFSET :offset",
+                parameters, this::mapFilm));
+    }
+
+    private void checkFilmExist(int id) {
+        if (!exists(id)) {
+            log.warn("Попытка получить фильм по несуществующему id");
+            throw new FilmNotFoundException(String.format("Фильма с id: %d не существует, получение невозможно", id));
+        }
+    }
+
+    private void bumpVersions(List<Integer> ids) {
+        if (!ids.isEmpty()) {
+            jdbcTemplate.update("UPDATE films SET version = version + 1 WHERE id IN (:ids)",
+                    new MapSqlParameterSource("ids", ids));
+        }
+    }
+
+    private boolean exists(int id) {
+        return !existing(List.of(id)).isEmpty();
+    }
+
+    private Set<Integer> existing(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(jdbcTemplate.queryForList("SELECT id FROM films WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", new HashSet<>(ids)), Integer.class));
+    }
+
+    /**
+     * Повторный лайк распознаётся по нарушению первичного ключа, а не предварительной проверкой,
+     * поэтому из двух одновременных одинаковых лайков изменение достаётся одному.
+     */
+    private boolean insertLike(int id, int userId) {
+        try {
+            jdbcTemplate.getJdbcOperations().update(INSERT_LIKE, id, userId);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    private List<Integer> nextIds(int count) {
+        if (count == 0) {
+            return List.of();
+        }
+        return jdbcTemplate.queryForList("SELECT NEXT VALUE FOR film_ids FROM SYSTEM_RANGE(1, :count)",
+                new MapSqlParameterSource("count", count), Integer.class);
+    }
+
+    private void insert(List<Film> films) {
+        films.forEach(film -> film.setVersion(1));
+        jdbcTemplate.getJdbcOperations().batchUpdate(INSERT_FILM, films.stream()
+                .map(film -> new Object[]{film.getId(), film.getName(), film.getDescription(), toDate(film),
+                        film.getDuration()})
+                .collect(Collectors.toList()));
+        insertLikes(films);
+    }
+
+    private void insertLikes(List<Film> films) {
+        List<Object[]> rows = new ArrayList<>();
+
+        for (Film film : films) {
+            film.getLikesByUsers().forEach(userId -> rows.add(new Object[]{film.getId(), userId}));
+        }
+        jdbcTemplate.getJdbcOperations().batchUpdate(MERGE_LIKE, rows);
+    }
+
+    private List<Film> withLikes(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        Map<Integer, List<Integer>> likes = new HashMap<>();
+
+        jdbcTemplate.query("SELECT film_id, user_id FROM likes WHERE film_id IN (:ids)",
+                new MapSqlParameterSource("ids", films.stream().map(Film::getId).collect(Collectors.toList())),
+                collectLikes(likes));
+        films.forEach(film -> setLikes(film, likes));
+        return films;
+    }
+
+    private RowCallbackHandler collectLikes(Map<Integer, List<Integer>> likes) {
+        return resultSet -> likes.computeIfAbsent(resultSet.getInt("film_id"), key -> new ArrayList<>())
+                .add(resultSet.getInt("user_id"));
+    }
+
+    private void setLikes(Film film, Map<Integer, List<Integer>> likes) {
+        List<Integer> userIds = likes.get(film.getId());
+
+        if (userIds != null) {
+            film.setLikesByUsers(CompactIntSet.of(userIds.stream().mapToInt(Integer::intValue).toArray()));
+        }
+    }
+
+    private Film mapFilm(ResultSet resultSet, int rowNum) throws SQLException {
+        Date releaseDate = resultSet.getDate("release_date");
+
+        Film film = new Film(resultSet.getInt("id"), resultSet.getString("name"), resultSet.getString("description"),
+                releaseDate == null ? null : releaseDate.toLocalDate(), resultSet.getInt("duration"));
+        film.setVersion(resultSet.getLong("version"));
+        return film;
+    }
+
+    private static Date toDate(Film film) {
+        return film.getReleaseDate() == null ? null : Date.valueOf(film.getReleaseDate());
+    }
+}
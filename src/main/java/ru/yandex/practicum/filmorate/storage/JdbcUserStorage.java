@@ -0,0 +1,345 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.util.RoaringIntSet;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище пользователей в реляционной БД (профиль jdbc). Дружба хранится двумя строками, по строке
+ * на каждое направление, поэтому общие друзья находятся одним соединением таблицы дружб с самой собой.
+ */
+@Slf4j
+@Component
+@Profile("jdbc")
+public class JdbcUserStorage implements UserStorage {
+    private static final String SELECT_USERS = "SELECT id, email, login, name, birthday, version FROM users ";
+    private static final String INSERT_USER = "INSERT INTO users (id, email, login, name, birthday) VALUES (?, ?, ?, ?, ?)";
+    private static final String MERGE_FRIEND =
+            "MERGE INTO friendships (user_id, friend_id) KEY (user_id, friend_id) VALUES (?, ?)";
+    private static final String INSERT_FRIEND = "INSERT INTO friendships (user_id, friend_id) VALUES (?, ?)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public JdbcUserStorage(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Collection<User> findAll() {
+        List<User> users = jdbcTemplate.query(SELECT_USERS + "ORDER BY id", this::mapUser);
+        Map<Integer, List<Integer>> friends = new HashMap<>();
+
+        jdbcTemplate.query("SELECT user_id, friend_id FROM friendships",
+                collectFriends(friends));
+        users.forEach(user -> setFriends(user, friends));
+        return users;
+    }
+
+    @Override
+    public int size() {
+        Integer count = jdbcTemplate.getJdbcOperations().queryForObject("SELECT COUNT(*) FROM users", Integer.class);
+        return count == null ? 0 : count;
+    }
+
+    @Override
+    public Collection<User> findPage(Integer after, Integer limit) {
+        return withFriends(jdbcTemplate.query(SELECT_USERS + "WHERE id > :after ORDER BY id LIMIT :limit",
+                new MapSqlParameterSource("after", after).addValue("limit", limit), this::mapUser));
+    }
+
+    @Override
+    @Transactional
+    public User create(User user) {
+        if (user.getId() != 0 && !existing(List.of(user.getId())).isEmpty()) {
+            log.warn("Попытка создать пользователя с уже существующим id");
+            throw new ValidationException(String.format("Пользователь с id: %d уже существует", user.getId()));
+        }
+
+        user.setId(nextIds(1).get(0));
+        insert(List.of(user));
+        log.debug("Пользователь создан: {}", user);
+
+        return user;
+    }
+
+    @Override
+    @Transactional
+    public List<BatchResult> createAll(List<User> batch) {
+        Set<Integer> existing = existing(batch.stream().map(User::getId).collect(Collectors.toList()));
+        List<BatchResult> results = new ArrayList<>(batch.size());
+        List<User> accepted = new ArrayList<>();
+
+        for (User user : batch) {
+            if (existing.contains(user.getId())) {
+                results.add(BatchResult.invalid(
+                        String.format("Пользователь с id: %d уже существует", user.getId())));
+            } else {
+                results.add(null);
+                accepted.add(user);
+            }
+        }
+
+        List<Integer> ids = nextIds(accepted.size());
+        for (int i = 0; i < accepted.size(); i++) {
+            accepted.get(i).setId(ids.get(i));
+        }
+        insert(accepted);
+
+        int next = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            if (results.get(i) == null) {
+                results.set(i, BatchResult.ok(accepted.get(next++).getId()));
+            }
+        }
+        log.debug("Пакетно создано пользователей: {}", accepted.size());
+
+        return results;
+    }
+
+    @Override
+    @Transactional
+    public User update(User user) {
+        int updated = jdbcTemplate.getJdbcOperations().update(
+                "UPDATE users SET email = ?, login = ?, name = ?, birthday = ?, version = version + 1 WHERE id = ?",
+                user.getEmail(), user.getLogin(), user.getName(), toDate(user), user.getId());
+
+        if (updated == 0) {
+            log.warn("Попытка изменить пользователя с не существующим id");
+            throw new UserNotFoundException(String.format("Пользователя с id: %d не существует", user.getId()));
+        }
+        jdbcTemplate.getJdbcOperations().update("DELETE FROM friendships WHERE user_id = ?", user.getId());
+        insertFriends(List.of(user));
+        user.setVersion(jdbcTemplate.getJdbcOperations().queryForObject(
+                "SELECT version FROM users WHERE id = ?", Long.class, user.getId()));
+        log.debug("Пользователь изменён: {}", user);
+
+        return user;
+    }
+
+    @Override
+    public User getById(Integer id) {
+        List<User> users = withFriends(jdbcTemplate.query(SELECT_USERS + "WHERE id = :id",
+                new MapSqlParameterSource("id", id), this::mapUser));
+
+        if (users.isEmpty()) {
+            log.warn("Попытка получить пользователя с не существующим id");
+            throw new UserNotFoundException(String.format("Пользователя с id: %d не существует", id));
+        }
+        return users.get(0);
+    }
+
+    @Override
+    public void checkUserExist(Integer id) {
+        if (existing(List.of(id)).isEmpty()) {
+            throw new UserNotFoundException(String.format("Пользователя с id: %d не существует", id));
+        }
+    }
+
+    @Override
+    @Transactional
+    public boolean addFriend(Integer id, Integer friendId) {
+        checkUserExist(id);
+        checkUserExist(friendId);
+        if (!insertFriendship(id, friendId)) {
+            return false;
+        }
+        bumpVersions(List.of(id, friendId));
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public boolean removeFriend(Integer id, Integer friendId) {
+        checkUserExist(id);
+        checkUserExist(friendId);
+        if (jdbcTemplate.getJdbcOperations().update(
+                "DELETE FROM friendships WHERE (user_id = ? AND friend_id = ?) OR (user_id = ? AND friend_id = ?)",
+                id, friendId, friendId, id) == 0) {
+            return false;
+        }
+        bumpVersions(List.of(id, friendId));
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public List<BatchResult> addFriends(List<Friendship> friendships) {
+        Set<Integer> existing = existing(friendships.stream()
+                .flatMap(friendship -> Stream.of(friendship.getUserId(), friendship.getFriendId()))
+                .collect(Collectors.toList()));
+        List<BatchResult> results = new ArrayList<>(friendships.size());
+        Set<Integer> changed = new HashSet<>();
+        int added = 0;
+
+        for (Friendship friendship : friendships) {
+            int missing = !existing.contains(friendship.getUserId()) ? friendship.getUserId()
+                    : !existing.contains(friendship.getFriendId()) ? friendship.getFriendId() : 0;
+
+            if (missing != 0) {
+                results.add(BatchResult.notFound(String.format("Пользователя с id: %d не существует", missing)));
+            } else if (insertFriendship(friendship.getUserId(), friendship.getFriendId())) {
+                changed.add(friendship.getUserId());
+                changed.add(friendship.getFriendId());
+                results.add(BatchResult.ok(friendship.getUserId()));
+                added++;
+            } else {
+                results.add(BatchResult.unchanged(friendship.getUserId()));
+            }
+        }
+
+        bumpVersions(new ArrayList<>(changed));
+        log.debug("Пакетно добавлено дружб: {}", added);
+
+        return results;
+    }
+
+    /**
+     * Вставляет обе стороны дружбы. Уже существующая сторона распознаётся по нарушению первичного ключа,
+     * а не предварительной проверкой, поэтому из двух одновременных запросов изменение достаётся одному.
+     */
+    private boolean insertFriendship(int id, int friendId) {
+        boolean inserted = insertFriend(id, friendId);
+        return insertFriend(friendId, id) || inserted;
+    }
+
+    private boolean insertFriend(int id, int friendId) {
+        try {
+            jdbcTemplate.getJdbcOperations().update(INSERT_FRIEND, id, friendId);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Collection<User> getCommonFriends(Integer id, Integer otherId) {
+        checkUserExist(id);
+        checkUserExist(otherId);
+        return withFriends(jdbcTemplate.query(
+                "SELECT u.id, u.email, u.login, u.name, u.birthday, u.version FROM friendships a "
+                        + "JOIN friendships b ON b.friend_id = a.friend_id AND b.user_id = :otherId "
+                        + "JOIN users u ON u.id = a.friend_id WHERE a.user_id = :id ORDER BY u.id",
+                new MapSqlParameterSource("id", id).addValue("otherId", otherId), this::mapUser));
+    }
+
+    @Override
+    public int getCommonFriendsCount(Integer id, Integer otherId) {
+        checkUserExist(id);
+        checkUserExist(otherId);
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM friendships a "
+                        + "JOIN friendships b ON b.friend_id = a.friend_id AND b.user_id = :otherId "
+                        + "WHERE a.user_id = :id",
+                new MapSqlParameterSource("id", id).addValue("otherId", otherId), Integer.class);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Как и в хранилище фильмов, версия меняется и при повторном добавлении уже существующей дружбы.
+     */
+    private void bumpVersions(List<Integer> ids) {
+        if (!ids.isEmpty()) {
+            jdbcTemplate.update("UPDATE users SET version = version + 1 WHERE id IN (:ids)",
+                    new MapSqlParameterSource("ids", ids));
+        }
+    }
+
+    private Set<Integer> existing(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(jdbcTemplate.queryForList("SELECT id FROM users WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", new HashSet<>(ids)), Integer.class));
+    }
+
+    private List<Integer> nextIds(int count) {
+        if (count == 0) {
+            return List.of();
+        }
+        return jdbcTemplate.queryForList("SELECT NEXT VALUE FOR user_ids FROM SYSTEM_RANGE(1, :count)",
+                new MapSqlParameterSource("count", count), Integer.class);
+    }
+
+    private void insert(List<User> users) {
+        users.forEach(user -> user.setVersion(1));
+        jdbcTemplate.getJdbcOperations().batchUpdate(INSERT_USER, users.stream()
+                .map(user -> new Object[]{user.getId(), user.getEmail(), user.getLogin(), user.getName(),
+                        toDate(user)})
+                .collect(Collectors.toList()));
+        insertFriends(users);
+    }
+
+    private void insertFriends(List<User> users) {
+        List<Object[]> rows = new ArrayList<>();
+
+        for (User user : users) {
+            user.getFriends().forEach(friendId -> rows.add(new Object[]{user.getId(), friendId}));
+        }
+        jdbcTemplate.getJdbcOperations().batchUpdate(MERGE_FRIEND, rows);
+    }
+
+    private List<User> withFriends(List<User> users) {
+        if (users.isEmpty()) {
+            return users;
+        }
+        Map<Integer, List<Integer>> friends = new HashMap<>();
+
+        jdbcTemplate.query("SELECT user_id, friend_id FROM friendships WHERE user_id IN (:ids)",
+                new MapSqlParameterSource("ids", users.stream().map(User::getId).collect(Collectors.toList())),
+                collectFriends(friends));
+        users.forEach(user -> setFriends(user, friends));
+        return users;
+    }
+
+    private RowCallbackHandler collectFriends(Map<Integer, List<Integer>> friends) {
+        return resultSet -> friends.computeIfAbsent(resultSet.getInt("user_id"), key -> new ArrayList<>())
+                .add(resultSet.getInt("friend_id"));
+    }
+
+    private void setFriends(User user, Map<Integer, List<Integer>> friends) {
+        List<Integer> friendIds = friends.get(user.getId());
+
+        if (friendIds != null) {
+            user.setFriends(RoaringIntSet.of(friendIds.stream().mapToInt(Integer::intValue).toArray()));
+        }
+    }
+
+    private User mapUser(ResultSet resultSet, int rowNum) throws SQLException {
+        Date birthday = resultSet.getDate("birthday");
+
+        User user = new User(resultSet.getInt("id"), resultSet.getString("email"), resultSet.getString("login"),
+                resultSet.getString("name"), birthday == null ? null : birthday.toLocalDate());
+        user.setVersion(resultSet.getLong("version"));
+        return user;
+    }
+
+    private static Date toDate(User user) {
+        return user.getBirthday() == null ? null : Date.valueOf(user.getBirthday());
+    }
+}
@@ -0,0 +1,165 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Индекс фильмов, упорядоченный по количеству лайков (по убыванию), при равенстве - по id (по возрастанию).
+ * Обновляется инкрементально за O(log n), первые count элементов читаются за O(log n + count).
+ * <p>
+ * Индекс делится на шарды по остатку id, у каждого шарда свой монитор, поэтому изменения разных шардов
+ * не конкурируют. Первые count элементов собираются из шардов и сливаются, при большом объёме - параллельно.
+ */
+public class PopularityIndex {
+    private static final int PARALLEL_THRESHOLD = 10_000;
+
+    private final Shard[] shards;
+
+    public PopularityIndex() {
+        this(1);
+    }
+
+    public PopularityIndex(int shards) {
+        this.shards = new Shard[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard();
+        }
+    }
+
+    public void put(int id, int score) {
+        shard(id).put(id, score);
+    }
+
+    public void increment(int id) {
+        shard(id).add(id, 1);
+    }
+
+    public void decrement(int id) {
+        shard(id).add(id, -1);
+    }
+
+    public void remove(int id) {
+        shard(id).remove(id);
+    }
+
+    public int score(int id) {
+        return shard(id).score(id);
+    }
+
+    public List<Integer> top(int count) {
+        if (shards.length == 1) {
+            return shards[0].top(count).stream().map(entry -> entry.id).collect(Collectors.toList());
+        }
+
+        Stream<Shard> stream = Arrays.stream(shards);
+        if ((long) count * shards.length >= PARALLEL_THRESHOLD) {
+            stream = stream.parallel();
+        }
+        List<List<Entry>> tops = stream.map(shard -> shard.top(count)).collect(Collectors.toList());
+
+        // в очереди голова каждого списка: индекс списка и позиция в нём
+        PriorityQueue<int[]> heads = new PriorityQueue<>(
+                (first, second) -> tops.get(first[0]).get(first[1]).compareTo(tops.get(second[0]).get(second[1])));
+        for (int i = 0; i < tops.size(); i++) {
+            if (!tops.get(i).isEmpty()) {
+                heads.add(new int[]{i, 0});
+            }
+        }
+
+        List<Integer> ids = new ArrayList<>(Math.max(Math.min(count, tops.stream().mapToInt(List::size).sum()), 0));
+        while (ids.size() < count && !heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<Entry> top = tops.get(head[0]);
+            ids.add(top.get(head[1]).id);
+            if (++head[1] < top.size()) {
+                heads.add(head);
+            }
+        }
+        return ids;
+    }
+
+    public int size() {
+        return Arrays.stream(shards).mapToInt(Shard::size).sum();
+    }
+
+    private Shard shard(int id) {
+        return shards[Math.floorMod(id, shards.length)];
+    }
+
+    private static final class Shard {
+        private final NavigableSet<Entry> ranking = new TreeSet<>();
+        private final Map<Integer, Entry> entries = new HashMap<>();
+
+        private synchronized void put(int id, int score) {
+            Entry previous = entries.get(id);
+
+            if (previous != null) {
+                if (previous.score == score) {
+                    return;
+                }
+                ranking.remove(previous);
+            }
+
+            Entry entry = new Entry(id, score);
+            entries.put(id, entry);
+            ranking.add(entry);
+        }
+
+        private synchronized void add(int id, int delta) {
+            put(id, Math.max(score(id) + delta, 0));
+        }
+
+        private synchronized void remove(int id) {
+            Entry entry = entries.remove(id);
+
+            if (entry != null) {
+                ranking.remove(entry);
+            }
+        }
+
+        private synchronized int score(int id) {
+            Entry entry = entries.get(id);
+            return entry == null ? 0 : entry.score;
+        }
+
+        private synchronized List<Entry> top(int count) {
+            List<Entry> top = new ArrayList<>(Math.max(Math.min(count, entries.size()), 0));
+            Iterator<Entry> iterator = ranking.iterator();
+
+            while (top.size() < count && iterator.hasNext()) {
+                top.add(iterator.next());
+            }
+
+            return top;
+        }
+
+        private synchronized int size() {
+            return entries.size();
+        }
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        private final int id;
+        private final int score;
+
+        private Entry(int id, int score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byScore = Integer.compare(other.score, score);
+            return byScore != 0 ? byScore : Integer.compare(id, other.id);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Упорядоченный индекс id по числовому значению поля. Ключ - значение в старших 32 битах и id в младших,
+ * поэтому одинаковые значения у разных id не конфликтуют, а диапазон значений читается одним обходом
+ * за O(log n + k), где k - число попавших в него id. Потокобезопасен, изменения одного id упорядочивает вызывающий.
+ */
+public class RangeIndex {
+    private final NavigableSet<Long> keys = new ConcurrentSkipListSet<>();
+
+    public void add(int value, int id) {
+        keys.add(key(value, id));
+    }
+
+    public void remove(int value, int id) {
+        keys.remove(key(value, id));
+    }
+
+    /**
+     * Итератор по id со значениями от from до to включительно, в порядке возрастания значения.
+     */
+    public Iterator<Integer> range(int from, int to) {
+        Iterator<Long> range = keys.subSet(key(from, 0), true, key(to, Integer.MAX_VALUE), true).iterator();
+
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return range.hasNext();
+            }
+
+            @Override
+            public Integer next() {
+                return (int) (range.next() & 0xFFFFFFFFL);
+            }
+        };
+    }
+
+    private static long key(int value, int id) {
+        return (long) value << 32 | id;
+    }
+}
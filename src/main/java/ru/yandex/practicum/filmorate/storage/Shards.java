@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Разбиение id хранилища на шарды по остатку от деления. Шарду соответствуют id, сравнимые с его номером.
+ */
+final class Shards {
+    private Shards() {
+    }
+
+    /**
+     * Число шардов из настройки: неположительное значение означает число ядер.
+     */
+    static int resolve(int configured) {
+        return configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Обходит id от 1 до maxId, отдавая каждый шард отдельной задаче fork-join пула.
+     */
+    static void forEachId(int shards, int maxId, IntConsumer action) {
+        IntStream.range(0, shards).parallel().forEach(shard -> {
+            for (int id = shard == 0 ? shards : shard; id <= maxId; id += shards) {
+                action.accept(id);
+            }
+        });
+    }
+}
@@ -0,0 +1,300 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntFunction;
+
+/**
+ * Таблица сущностей по плотным id, которую читают без блокировок.
+ * <p>
+ * Сущности лежат в блоках по {@link #CHUNK_SIZE}, блоки - в {@link AtomicReferenceArray}. Запись одного id
+ * копирует только свой блок и публикует его через compareAndSet в ячейке блока, так что записи в разные блоки
+ * не мешают друг другу, а общего монитора нет. Сами блоки и сущности после публикации не изменяются,
+ * изменение - это новая копия.
+ * <p>
+ * {@link #snapshot()} собирает ссылки на блоки и проверяет, что за это время не завершилась ни одна запись;
+ * иначе повторяет, а после {@link #OPTIMISTIC_ATTEMPTS} неудач ненадолго останавливает запись. Поэтому срез
+ * согласован на момент чтения: если запись видна, видны и все завершившиеся до неё. Пакетные записи
+ * ({@link #putAll}, {@link #fillMissing}) и рост массива блоков идут под исключительной блокировкой,
+ * и читатели видят пакет либо целиком, либо не видят вовсе.
+ */
+public class SnapshotTable<T> {
+    static final int CHUNK_BITS = 10;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int INITIAL_CHUNKS = 16;
+    private static final int OPTIMISTIC_ATTEMPTS = 8;
+
+    private final StampedLock lock = new StampedLock();
+    private final AtomicLong writes = new AtomicLong();
+    private volatile AtomicReferenceArray<Chunk> chunks = new AtomicReferenceArray<>(INITIAL_CHUNKS);
+
+    @SuppressWarnings("unchecked")
+    public T get(int id) {
+        AtomicReferenceArray<Chunk> current = chunks;
+        int index = id >>> CHUNK_BITS;
+        Chunk chunk = id < 0 || index >= current.length() ? null : current.get(index);
+        return chunk == null ? null : (T) chunk.values[id & (CHUNK_SIZE - 1)];
+    }
+
+    public Snapshot<T> snapshot() {
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            long completed = writes.get();
+            Snapshot<T> snapshot = collect();
+            if (stamp != 0 && lock.validate(stamp) && writes.get() == completed) {
+                return snapshot;
+            }
+        }
+        long stamp = lock.writeLock();
+        try {
+            return collect();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public T put(int id, T value) {
+        return write(id, value, false);
+    }
+
+    /**
+     * Кладёт значение, если id свободен. Возвращает значение, оказавшееся в таблице.
+     */
+    public T putIfAbsent(int id, T value) {
+        T existing = write(id, value, true);
+        return existing != null ? existing : value;
+    }
+
+    /**
+     * Публикует все значения одной версией таблицы: читатели увидят либо все изменения, либо ни одного.
+     */
+    public void putAll(Map<Integer, T> values) {
+        long stamp = lock.writeLock();
+        try {
+            Batch batch = new Batch();
+            values.forEach(batch::set);
+            batch.publish();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Заполняет пустые id от 1 до maxId значениями из loader. Значения загружаются параллельно по шардам
+     * без блокировки, под блокировкой только сливаются с таблицей, поэтому запись за это время не стоит.
+     * Возвращает значения, которые действительно попали в таблицу.
+     */
+    public List<T> fillMissing(int maxId, IntFunction<T> loader, int shards) {
+        Snapshot<T> base = snapshot();
+        Object[] loaded = new Object[maxId + 1];
+        Shards.forEachId(shards, maxId, id -> {
+            if (base.get(id) == null) {
+                loaded[id] = loader.apply(id);
+            }
+        });
+
+        List<T> installed = new ArrayList<>();
+        long stamp = lock.writeLock();
+        try {
+            Batch batch = new Batch();
+            for (int id = 1; id <= maxId; id++) {
+                @SuppressWarnings("unchecked")
+                T value = (T) loaded[id];
+                if (value != null && batch.get(id) == null) {
+                    batch.set(id, value);
+                    installed.add(value);
+                }
+            }
+            batch.publish();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return installed;
+    }
+
+    /**
+     * Записывает один id: копирует его блок и публикует копию, если блок за это время не сменился.
+     * Разделяемая блокировка не пускает только пакетные записи и рост массива блоков.
+     */
+    @SuppressWarnings("unchecked")
+    private T write(int id, T value, boolean onlyIfAbsent) {
+        int index = id >>> CHUNK_BITS;
+        ensureCapacity(index);
+        long stamp = lock.readLock();
+        try {
+            AtomicReferenceArray<Chunk> current = chunks;
+            while (true) {
+                Chunk chunk = current.get(index);
+                T previous = chunk == null ? null : (T) chunk.values[id & (CHUNK_SIZE - 1)];
+                if (onlyIfAbsent && previous != null) {
+                    return previous;
+                }
+                Chunk updated = Chunk.copyOf(chunk);
+                updated.set(id, value);
+                if (current.compareAndSet(index, chunk, updated)) {
+                    writes.incrementAndGet();
+                    return previous;
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void ensureCapacity(int index) {
+        if (index < chunks.length()) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            grow(index);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Вызывается под исключительной блокировкой.
+     */
+    private void grow(int index) {
+        AtomicReferenceArray<Chunk> current = chunks;
+        if (index < current.length()) {
+            return;
+        }
+        AtomicReferenceArray<Chunk> grown = new AtomicReferenceArray<>(Math.max(index + 1, current.length() * 2));
+        for (int i = 0; i < current.length(); i++) {
+            grown.set(i, current.get(i));
+        }
+        chunks = grown;
+    }
+
+    private Snapshot<T> collect() {
+        AtomicReferenceArray<Chunk> current = chunks;
+        Object[][] values = new Object[current.length()][];
+        int size = 0;
+        for (int index = 0; index < values.length; index++) {
+            Chunk chunk = current.get(index);
+            if (chunk != null) {
+                values[index] = chunk.values;
+                size += chunk.count;
+            }
+        }
+        return new Snapshot<>(values, size);
+    }
+
+    /**
+     * Неизменяемое состояние таблицы. Обход идёт по возрастанию id.
+     */
+    public static final class Snapshot<T> extends AbstractCollection<T> {
+        private final Object[][] chunks;
+        private final int size;
+
+        private Snapshot(Object[][] chunks, int size) {
+            this.chunks = chunks;
+            this.size = size;
+        }
+
+        @SuppressWarnings("unchecked")
+        public T get(int id) {
+            int chunk = id >>> CHUNK_BITS;
+            if (id < 0 || chunk >= chunks.length || chunks[chunk] == null) {
+                return null;
+            }
+            return (T) chunks[chunk][id & (CHUNK_SIZE - 1)];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<>() {
+                private int next = advance(0);
+
+                @Override
+                public boolean hasNext() {
+                    return next >= 0;
+                }
+
+                @Override
+                public T next() {
+                    if (next < 0) {
+                        throw new NoSuchElementException();
+                    }
+                    T value = get(next);
+                    next = advance(next + 1);
+                    return value;
+                }
+
+                private int advance(int from) {
+                    for (int id = from; (id >>> CHUNK_BITS) < chunks.length; id++) {
+                        if (chunks[id >>> CHUNK_BITS] == null) {
+                            id |= CHUNK_SIZE - 1;
+                        } else if (get(id) != null) {
+                            return id;
+                        }
+                    }
+                    return -1;
+                }
+            };
+        }
+    }
+
+    /**
+     * Блок таблицы. Изменяется только до публикации, пока виден одному писателю.
+     */
+    private static final class Chunk {
+        private final Object[] values;
+        private int count;
+
+        private Chunk(Object[] values, int count) {
+            this.values = values;
+            this.count = count;
+        }
+
+        private static Chunk copyOf(Chunk chunk) {
+            return chunk == null ? new Chunk(new Object[CHUNK_SIZE], 0) : new Chunk(chunk.values.clone(), chunk.count);
+        }
+
+        private void set(int id, Object value) {
+            int offset = id & (CHUNK_SIZE - 1);
+            count += (values[offset] == null ? 1 : 0) - (value == null ? 1 : 0);
+            values[offset] = value;
+        }
+    }
+
+    /**
+     * Пакетная запись под исключительной блокировкой: каждый затронутый блок копируется не больше одного раза
+     * и публикуется после того, как записаны все значения.
+     */
+    private final class Batch {
+        private final Map<Integer, Chunk> copied = new HashMap<>();
+
+        @SuppressWarnings("unchecked")
+        private T get(int id) {
+            Chunk chunk = copied.get(id >>> CHUNK_BITS);
+            return chunk != null ? (T) chunk.values[id & (CHUNK_SIZE - 1)] : SnapshotTable.this.get(id);
+        }
+
+        private void set(int id, T value) {
+            int index = id >>> CHUNK_BITS;
+            grow(index);
+            copied.computeIfAbsent(index, key -> Chunk.copyOf(chunks.get(key))).set(id, value);
+        }
+
+        private void publish() {
+            AtomicReferenceArray<Chunk> current = chunks;
+            copied.forEach(current::set);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Таймеры filmorate.storage на каждую операцию FilmStorage и UserStorage с тегами storage, operation и outcome
+ * (success, not_found, invalid, error) и размеры возвращаемых коллекций. Метрики HTTP-эндпоинтов
+ * (http.server.requests) Spring Boot снимает сам, число сущностей публикует {@link StorageSizeMetrics}.
+ * Метры кешируются по имени операции, поэтому на горячем пути нет поиска в реестре.
+ */
+@Aspect
+@Component
+public class StorageMetrics {
+    static final String TIMER = "filmorate.storage";
+    static final String RESULT_SIZE = "filmorate.storage.result.size";
+
+    private static final String[] OUTCOMES = {"success", "not_found", "invalid", "error"};
+
+    private final Meters films;
+    private final Meters users;
+
+    @Autowired
+    public StorageMetrics(MeterRegistry registry) {
+        this.films = new Meters(registry, "film");
+        this.users = new Meters(registry, "user");
+    }
+
+    @Around("execution(* ru.yandex.practicum.filmorate.storage.FilmStorage.*(..))")
+    public Object timeFilmStorage(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(films, joinPoint);
+    }
+
+    @Around("execution(* ru.yandex.practicum.filmorate.storage.UserStorage.*(..))")
+    public Object timeUserStorage(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(users, joinPoint);
+    }
+
+    private Object time(Meters meters, ProceedingJoinPoint joinPoint) throws Throwable {
+        String operation = joinPoint.getSignature().getName();
+        long start = System.nanoTime();
+        int outcome = 0;
+
+        try {
+            Object result = joinPoint.proceed();
+            if (result instanceof Collection) {
+                meters.size(operation).record(((Collection<?>) result).size());
+            }
+            return result;
+        } catch (FilmNotFoundException | UserNotFoundException e) {
+            outcome = 1;
+            throw e;
+        } catch (ValidationException e) {
+            outcome = 2;
+            throw e;
+        } catch (Throwable e) {
+            outcome = 3;
+            throw e;
+        } finally {
+            meters.timer(operation, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static class Meters {
+        private final MeterRegistry registry;
+        private final String storage;
+        private final Map<String, Timer[]> timers = new ConcurrentHashMap<>();
+        private final Map<String, DistributionSummary> sizes = new ConcurrentHashMap<>();
+
+        Meters(MeterRegistry registry, String storage) {
+            this.registry = registry;
+            this.storage = storage;
+        }
+
+        Timer timer(String operation, int outcome) {
+            Timer[] byOutcome = timers.computeIfAbsent(operation, key -> new Timer[OUTCOMES.length]);
+            Timer timer = byOutcome[outcome];
+
+            if (timer == null) {
+                timer = Timer.builder(TIMER)
+                        .tag("storage", storage)
+                        .tag("operation", operation)
+                        .tag("outcome", OUTCOMES[outcome])
+                        .register(registry);
+                byOutcome[outcome] = timer;
+            }
+            return timer;
+        }
+
+        DistributionSummary size(String operation) {
+            return sizes.computeIfAbsent(operation, key -> DistributionSummary.builder(RESULT_SIZE)
+                    .tag("storage", storage)
+                    .tag("operation", operation)
+                    .register(registry));
+        }
+    }
+}
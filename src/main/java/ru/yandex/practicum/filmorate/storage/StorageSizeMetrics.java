@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Число фильмов и пользователей в хранилищах (filmorate.storage.size).
+ */
+@Component
+public class StorageSizeMetrics implements MeterBinder {
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+
+    @Autowired
+    public StorageSizeMetrics(FilmStorage filmStorage, UserStorage userStorage) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.storage.size", filmStorage, FilmStorage::size)
+                .tag("storage", "film")
+                .register(registry);
+        Gauge.builder("filmorate.storage.size", userStorage, UserStorage::size)
+                .tag("storage", "user")
+                .register(registry);
+    }
+}
@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Набор блокировок, между которыми распределяются id сущностей.
+ * Позволяет изменять разные сущности параллельно, не заводя по блокировке на каждую.
+ */
+public class StripedLock {
+    private final Lock[] stripes;
+
+    public StripedLock(int stripes) {
+        this.stripes = new Lock[Integer.highestOneBit(Math.max(stripes - 1, 1)) << 1];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public Lock get(int key) {
+        return stripes[index(key)];
+    }
+
+    public void lock(int key) {
+        get(key).lock();
+    }
+
+    public void unlock(int key) {
+        get(key).unlock();
+    }
+
+    /**
+     * Захватывает блокировки двух ключей всегда в одном порядке, чтобы встречные операции не вызвали deadlock.
+     */
+    public void lockPair(int first, int second) {
+        int firstIndex = index(first);
+        int secondIndex = index(second);
+
+        stripes[Math.min(firstIndex, secondIndex)].lock();
+        if (firstIndex != secondIndex) {
+            stripes[Math.max(firstIndex, secondIndex)].lock();
+        }
+    }
+
+    public void unlockPair(int first, int second) {
+        int firstIndex = index(first);
+        int secondIndex = index(second);
+
+        if (firstIndex != secondIndex) {
+            stripes[Math.max(firstIndex, secondIndex)].unlock();
+        }
+        stripes[Math.min(firstIndex, secondIndex)].unlock();
+    }
+
+    /**
+     * Захватывает блокировки всех переданных ключей по возрастанию номера, для пакетных изменений.
+     */
+    public void lockAll(int[] keys) {
+        for (int index : indexes(keys)) {
+            stripes[index].lock();
+        }
+    }
+
+    public void unlockAll(int[] keys) {
+        int[] indexes = indexes(keys);
+        for (int i = indexes.length - 1; i >= 0; i--) {
+            stripes[indexes[i]].unlock();
+        }
+    }
+
+    private int[] indexes(int[] keys) {
+        return Arrays.stream(keys).map(this::index).distinct().sorted().toArray();
+    }
+
+    private int index(int key) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+}
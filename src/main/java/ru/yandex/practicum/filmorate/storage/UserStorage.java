@@ -1,18 +1,46 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.Collection;
+import java.util.List;
 
 public interface UserStorage {
     Collection<User> findAll();
 
+    int size();
+
+    Collection<User> findPage(Integer after, Integer limit);
+
     User create(User user);
 
+    List<BatchResult> createAll(List<User> users);
+
 
     User update(User user);
 
     User getById(Integer id);
 
     void checkUserExist(Integer id);
+
+    /**
+     * @return true, если дружба добавлена, false - если она уже была
+     */
+    boolean addFriend(Integer id, Integer friendId);
+
+    /**
+     * @return true, если дружба удалена, false - если её не было
+     */
+    boolean removeFriend(Integer id, Integer friendId);
+
+    /**
+     * Дружбы, которые уже были или повторяются в пачке, отмечаются {@link BatchResult#unchanged}.
+     */
+    List<BatchResult> addFriends(List<Friendship> friendships);
+
+    Collection<User> getCommonFriends(Integer id, Integer otherId);
+
+    int getCommonFriendsCount(Integer id, Integer otherId);
 }
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.User;
+
+/**
+ * Получает уведомления об изменениях в хранилище пользователей. Вызывается под блокировками затронутых
+ * пользователей, поэтому уведомления об одном пользователе приходят в порядке применения изменений.
+ */
+public interface UserStorageListener {
+    default void userCreated(User user) {
+    }
+
+    default void userUpdated(User user) {
+    }
+
+    default void friendAdded(int userId, int friendId) {
+    }
+
+    default void friendRemoved(int userId, int friendId) {
+    }
+
+    /**
+     * Вызывается в потоке, внёсшем изменение, после снятия блокировок. Здесь можно дождаться долгой работы
+     * по уже полученным уведомлениям (например, fsync журнала), не задерживая других писателей.
+     */
+    default void committed() {
+    }
+}
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.storage.persistence;
+
+public enum FsyncPolicy {
+    /**
+     * Изменение подтверждается только после fsync; одновременные записи сбрасываются на диск одной группой.
+     */
+    ALWAYS,
+    /**
+     * Записи накапливаются и сбрасываются с fsync раз в group-commit-millis; при сбое теряется не больше интервала.
+     */
+    BATCH,
+    /**
+     * Записи передаются ОС раз в group-commit-millis без fsync; переживают падение процесса, но не ОС.
+     */
+    NONE
+}
@@ -0,0 +1,163 @@
+package ru.yandex.practicum.filmorate.storage.persistence;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.EntityLoader;
+import ru.yandex.practicum.filmorate.util.CompactIntSet;
+import ru.yandex.practicum.filmorate.util.RoaringIntSet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+/**
+ * Снимок формата {@link SnapshotFile}, отображённый в память. Открытие читает только заголовок,
+ * сущности разбираются по запросу абсолютными чтениями из буфера, поэтому ими можно пользоваться из разных потоков.
+ */
+public class MappedSnapshot {
+    private final MappedByteBuffer buffer;
+    private final long segment;
+    private final int filmMaxId;
+    private final int filmTable;
+    private final int userMaxId;
+    private final int userTable;
+
+    private MappedSnapshot(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != SnapshotFile.MAGIC || buffer.getInt(4) != SnapshotFile.VERSION) {
+            throw new IOException("Неподдерживаемый формат снимка хранилища");
+        }
+        this.segment = buffer.getLong(8);
+        this.filmMaxId = buffer.getInt(16);
+        this.filmTable = (int) buffer.getLong(20);
+        this.userMaxId = buffer.getInt(28);
+        this.userTable = (int) buffer.getLong(32);
+    }
+
+    public static MappedSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Снимок " + file + " больше 2 ГБ");
+            }
+            return new MappedSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public long getSegment() {
+        return segment;
+    }
+
+    public EntityLoader<Film> films() {
+        return new EntityLoader<>() {
+            @Override
+            public int maxId() {
+                return filmMaxId;
+            }
+
+            @Override
+            public Film load(int id) {
+                int offset = offset(filmTable, filmMaxId, id);
+                if (offset == 0) {
+                    return null;
+                }
+
+                int duration = buffer.getInt(offset + 4);
+                LocalDate releaseDate = date(buffer.getLong(offset + 8));
+                long version = buffer.getLong(offset + 16);
+                int position = offset + 24;
+                String name = string(position);
+                position = skipString(position);
+                String description = string(position);
+                position = skipString(position);
+
+                Film film = new Film(id, name, description, releaseDate, duration);
+                film.setLikesByUsers(CompactIntSet.of(ints(position)));
+                film.setVersion(version);
+                return film;
+            }
+
+            @Override
+            public int linkCount(int id) {
+                int offset = offset(filmTable, filmMaxId, id);
+                return offset == 0 ? -1 : buffer.getInt(skipString(skipString(offset + 24)));
+            }
+        };
+    }
+
+    public EntityLoader<User> users() {
+        return new EntityLoader<>() {
+            @Override
+            public int maxId() {
+                return userMaxId;
+            }
+
+            @Override
+            public User load(int id) {
+                int offset = offset(userTable, userMaxId, id);
+                if (offset == 0) {
+                    return null;
+                }
+
+                int position = offset + 4;
+                String email = string(position);
+                position = skipString(position);
+                String login = string(position);
+                position = skipString(position);
+                String name = string(position);
+                position = skipString(position);
+                LocalDate birthday = date(buffer.getLong(position));
+
+                User user = new User(id, email, login, name, birthday);
+                user.setFriends(RoaringIntSet.of(ints(position + 16)));
+                user.setVersion(buffer.getLong(position + 8));
+                return user;
+            }
+
+            @Override
+            public int linkCount(int id) {
+                int offset = offset(userTable, userMaxId, id);
+                return offset == 0 ? -1 : buffer.getInt(skipString(skipString(skipString(offset + 4))) + 16);
+            }
+        };
+    }
+
+    private int offset(int table, int maxId, int id) {
+        if (id < 0 || id > maxId) {
+            return 0;
+        }
+        return (int) buffer.getLong(table + id * Long.BYTES);
+    }
+
+    private String string(int position) {
+        int length = buffer.getInt(position);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(position + 4);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int skipString(int position) {
+        return position + 4 + Math.max(buffer.getInt(position), 0);
+    }
+
+    private int[] ints(int position) {
+        int[] values = new int[buffer.getInt(position)];
+        ByteBuffer view = buffer.duplicate();
+        view.position(position + 4);
+        view.asIntBuffer().get(values);
+        return values;
+    }
+
+    private static LocalDate date(long epochDay) {
+        return epochDay == SnapshotFile.NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+}
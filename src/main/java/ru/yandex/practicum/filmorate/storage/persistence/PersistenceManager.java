@@ -0,0 +1,203 @@
+package ru.yandex.practicum.filmorate.storage.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Восстанавливает in-memory хранилища из последнего снимка и хвоста журнала при старте. Снимок отображается
+ * в память и подключается к хранилищам без разбора, сущности поднимаются при первом обращении или фоновым прогревом.
+ * Затем пишет все изменения в журнал и периодически делает новый снимок, удаляя покрытые им сегменты.
+ * Снимок делается без остановки записи: все операции журнала идемпотентны, поэтому повтор записей,
+ * уже попавших в снимок, не меняет результат.
+ */
+@Slf4j
+@Component
+@Profile("!jdbc")
+@ConditionalOnProperty(prefix = "filmorate.persistence", name = "enabled", havingValue = "true")
+public class PersistenceManager {
+    private final InMemoryFilmStorage filmStorage;
+    private final InMemoryUserStorage userStorage;
+    private final PersistenceProperties properties;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private WriteAheadLog writeAheadLog;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public PersistenceManager(InMemoryFilmStorage filmStorage, InMemoryUserStorage userStorage,
+                              PersistenceProperties properties, ObjectMapper objectMapper) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.directory = Paths.get(properties.getDirectory());
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+        long lastSegment = recover();
+
+        writeAheadLog = new WriteAheadLog(directory, lastSegment + 1, properties.getFsync(),
+                properties.getGroupCommitMillis(), objectMapper);
+        filmStorage.addListener(writeAheadLog);
+        userStorage.addListener(writeAheadLog);
+
+        if (properties.getSnapshotIntervalSeconds() > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "snapshot-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::snapshotQuietly, properties.getSnapshotIntervalSeconds(),
+                    properties.getSnapshotIntervalSeconds(), TimeUnit.SECONDS);
+        }
+        log.info("Журнал изменений включён: каталог {}, режим fsync {}", directory.toAbsolutePath(),
+                properties.getFsync());
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        writeAheadLog.close();
+    }
+
+    public synchronized void snapshot() throws IOException {
+        long covered = writeAheadLog.rotate();
+        long start = System.nanoTime();
+
+        SnapshotFile.write(directory, covered, filmStorage.findAll(), userStorage.findAll());
+
+        for (Path file : list()) {
+            long walSegment = WriteAheadLog.segmentNumber(file);
+            long snapshotSegment = SnapshotFile.segmentNumber(file);
+            if ((walSegment >= 0 && walSegment <= covered) || (snapshotSegment >= 0 && snapshotSegment < covered)) {
+                Files.delete(file);
+            }
+        }
+        log.info("Снимок хранилищ до сегмента {} записан за {} мс", covered, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            log.error("Не удалось записать снимок хранилищ", e);
+        }
+    }
+
+    private long recover() throws IOException {
+        long start = System.nanoTime();
+        for (Path file : list()) {
+            if (SnapshotFile.isTemporary(file)) {
+                log.warn("Удалён недописанный снимок {}", file);
+                Files.delete(file);
+            }
+        }
+        List<Path> files = list();
+        long covered = files.stream().mapToLong(SnapshotFile::segmentNumber).max().orElse(-1);
+        long lastSegment = Math.max(covered, 0);
+
+        if (covered >= 0) {
+            MappedSnapshot snapshot = MappedSnapshot.open(SnapshotFile.path(directory, covered));
+            filmStorage.attach(snapshot.films());
+            userStorage.attach(snapshot.users());
+        }
+
+        long records = 0;
+        for (Path file : files) {
+            long segment = WriteAheadLog.segmentNumber(file);
+            if (segment > covered) {
+                records += WriteAheadLog.replay(file, this::apply);
+                lastSegment = Math.max(lastSegment, segment);
+            }
+        }
+
+        log.info("Хранилища восстановлены за {} мс: снимок до сегмента {}, повторено записей журнала: {}",
+                (System.nanoTime() - start) / 1_000_000, covered, records);
+        if (covered >= 0 && properties.isWarmup()) {
+            warmup();
+        }
+        return lastSegment;
+    }
+
+    /**
+     * Поднимает оставшиеся в снимке сущности в фоне, чтобы после прогрева запросы не обращались к отображённому файлу.
+     */
+    private void warmup() {
+        Thread thread = new Thread(() -> {
+            long start = System.nanoTime();
+            int films = filmStorage.findAll().size();
+            int users = userStorage.findAll().size();
+            log.info("Снимок прогрет за {} мс: фильмов {}, пользователей {}",
+                    (System.nanoTime() - start) / 1_000_000, films, users);
+        }, "snapshot-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void apply(WriteAheadLog.Record record) {
+        try {
+            switch (record.getType()) {
+                case WriteAheadLog.FILM_CREATED:
+                case WriteAheadLog.FILM_UPDATED:
+                    filmStorage.restore(record.entity(objectMapper, Film.class));
+                    break;
+                case WriteAheadLog.LIKE_ADDED:
+                    filmStorage.addLike(record.first(), record.second());
+                    break;
+                case WriteAheadLog.LIKE_REMOVED:
+                    filmStorage.removeLike(record.first(), record.second());
+                    break;
+                case WriteAheadLog.USER_CREATED:
+                case WriteAheadLog.USER_UPDATED:
+                    userStorage.restore(record.entity(objectMapper, User.class));
+                    break;
+                case WriteAheadLog.FRIEND_ADDED:
+                    userStorage.addFriend(record.first(), record.second());
+                    break;
+                case WriteAheadLog.FRIEND_REMOVED:
+                    userStorage.removeFriend(record.first(), record.second());
+                    break;
+                default:
+                    log.warn("Пропущена запись журнала неизвестного типа {}", record.getType());
+            }
+        } catch (FilmNotFoundException | UserNotFoundException e) {
+            log.warn("Пропущена запись журнала о несуществующей сущности: {}", e.getMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<Path> list() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.storage.persistence;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "filmorate.persistence")
+public class PersistenceProperties {
+    private boolean enabled = false;
+    private String directory = "data";
+    private FsyncPolicy fsync = FsyncPolicy.BATCH;
+    private long groupCommitMillis = 10;
+    private long snapshotIntervalSeconds = 300;
+    private boolean warmup = true;
+}
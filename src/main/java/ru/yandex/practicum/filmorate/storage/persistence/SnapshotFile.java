@@ -0,0 +1,195 @@
+package ru.yandex.practicum.filmorate.storage.persistence;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.util.IntSet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Двоичный снимок хранилищ, рассчитанный на чтение через FileChannel.map без разбора всего файла.
+ * <pre>
+ * заголовок:    magic, версия, номер покрытого сегмента журнала,
+ *               max id фильма, смещение таблицы фильмов, max id пользователя, смещение таблицы пользователей
+ * записи:       фильм - id, продолжительность, дата выхода (epoch day), версия, название, описание, лайки (int[])
+ *               пользователь - id, email, логин, имя, день рождения (epoch day), версия, друзья (int[])
+ * таблицы:      для каждого id от 0 до max id смещение записи (long), 0 - сущности нет
+ * </pre>
+ * Строки записываются как длина в байтах UTF-8 и сами байты, -1 означает null; отсутствующая дата - Long.MIN_VALUE.
+ * Файл пишется во временный и атомарно переименовывается. Снимок отображается в память одним буфером,
+ * поэтому смещения не могут превышать 2 ГБ: запись такого снимка прерывается с ошибкой.
+ */
+public final class SnapshotFile {
+    static final int MAGIC = 0x464D5353;
+    static final int VERSION = 3;
+    static final int HEADER_SIZE = 48;
+    static final long NO_DATE = Long.MIN_VALUE;
+
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private SnapshotFile() {
+    }
+
+    public static Path path(Path directory, long segment) {
+        return directory.resolve(String.format("%s%019d%s", PREFIX, segment, SUFFIX));
+    }
+
+    public static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * Недописанный снимок, оставшийся от прерванной записи.
+     */
+    public static boolean isTemporary(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(TEMPORARY_SUFFIX);
+    }
+
+    public static Path write(Path directory, long segment, Iterable<Film> films, Iterable<User> users)
+            throws IOException {
+        Path target = path(directory, segment);
+        Path temporary = directory.resolve(target.getFileName() + TEMPORARY_SUFFIX);
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            CountingOutputStream counter = new CountingOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 256 * 1024));
+            DataOutputStream output = new DataOutputStream(counter);
+            output.write(new byte[HEADER_SIZE]);
+
+            long[] filmOffsets = new long[16];
+            int filmMaxId = 0;
+            for (Film film : films) {
+                filmOffsets = grow(filmOffsets, film.getId());
+                filmOffsets[film.getId()] = counter.offset();
+                filmMaxId = Math.max(filmMaxId, film.getId());
+                output.writeInt(film.getId());
+                output.writeInt(film.getDuration());
+                output.writeLong(epochDay(film.getReleaseDate()));
+                output.writeLong(film.getVersion());
+                writeString(output, film.getName());
+                writeString(output, film.getDescription());
+                writeInts(output, film.getLikesByUsers());
+            }
+
+            long[] userOffsets = new long[16];
+            int userMaxId = 0;
+            for (User user : users) {
+                userOffsets = grow(userOffsets, user.getId());
+                userOffsets[user.getId()] = counter.offset();
+                userMaxId = Math.max(userMaxId, user.getId());
+                output.writeInt(user.getId());
+                writeString(output, user.getEmail());
+                writeString(output, user.getLogin());
+                writeString(output, user.getName());
+                output.writeLong(epochDay(user.getBirthday()));
+                output.writeLong(user.getVersion());
+                writeInts(output, user.getFriends());
+            }
+
+            long filmTable = counter.offset();
+            for (int i = 0; i <= filmMaxId; i++) {
+                output.writeLong(filmOffsets[i]);
+            }
+            long userTable = counter.offset();
+            for (int i = 0; i <= userMaxId; i++) {
+                output.writeLong(userOffsets[i]);
+            }
+            output.flush();
+            // конец таблицы пользователей тоже должен попасть в отображаемый буфер
+            counter.offset();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(segment)
+                    .putInt(filmMaxId).putLong(filmTable)
+                    .putInt(userMaxId).putLong(userTable)
+                    .flip();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+
+        return Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static long[] grow(long[] offsets, int id) {
+        return id < offsets.length ? offsets : Arrays.copyOf(offsets, Math.max(offsets.length * 2, id + 1));
+    }
+
+    private static long epochDay(LocalDate date) {
+        return date == null ? NO_DATE : date.toEpochDay();
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static void writeInts(DataOutputStream output, Set<Integer> values) throws IOException {
+        int[] array = values instanceof IntSet ? ((IntSet) values).toIntArray()
+                : values.stream().mapToInt(Integer::intValue).toArray();
+        output.writeInt(array.length);
+        for (int value : array) {
+            output.writeInt(value);
+        }
+    }
+
+    /**
+     * Считает записанные байты в long: DataOutputStream.size() после 2 ГБ застревает на Integer.MAX_VALUE.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        /**
+         * Текущее смещение от начала файла, если его ещё можно прочитать из отображённого снимка.
+         */
+        private long offset() throws IOException {
+            if (count > Integer.MAX_VALUE) {
+                throw new IOException("Снимок превышает 2 ГБ и не может быть отображён в память целиком");
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package ru.yandex.practicum.filmorate.storage.persistence;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorageListener;
+import ru.yandex.practicum.filmorate.storage.UserStorageListener;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал изменений хранилищ. Записи копятся в буфере и сбрасываются в файл сегмента отдельным потоком,
+ * так что одна операция fsync покрывает все записи, накопившиеся за время предыдущей (group commit).
+ * Уведомления хранилищ приходят под блокировкой сущности, поэтому в режиме {@link FsyncPolicy#ALWAYS} запись
+ * только ставится в буфер, а ожидание fsync происходит в {@link #committed()}, уже после снятия блокировки.
+ * Формат записи: длина, CRC32, тип и данные; по CRC при чтении отсекается недописанный хвост.
+ */
+@Slf4j
+public class WriteAheadLog implements FilmStorageListener, UserStorageListener, AutoCloseable {
+    public static final byte FILM_CREATED = 1;
+    public static final byte FILM_UPDATED = 2;
+    public static final byte LIKE_ADDED = 3;
+    public static final byte LIKE_REMOVED = 4;
+    public static final byte USER_CREATED = 5;
+    public static final byte USER_UPDATED = 6;
+    public static final byte FRIEND_ADDED = 7;
+    public static final byte FRIEND_REMOVED = 8;
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final FsyncPolicy policy;
+    private final long groupCommitMillis;
+    private final ObjectMapper objectMapper;
+
+    private final ThreadLocal<long[]> awaited = ThreadLocal.withInitial(() -> new long[1]);
+    private final Object bufferLock = new Object();
+    private final Object fileLock = new Object();
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream(64 * 1024);
+    private long appended;
+    private long durable;
+    private IOException failure;
+    private boolean closed;
+
+    private FileChannel channel;
+    private long segment;
+    private final Thread flusher;
+
+    public WriteAheadLog(Path directory, long segment, FsyncPolicy policy, long groupCommitMillis,
+                         ObjectMapper objectMapper) throws IOException {
+        this.directory = directory;
+        this.policy = policy;
+        this.groupCommitMillis = groupCommitMillis;
+        this.objectMapper = objectMapper;
+        this.segment = segment;
+        this.channel = openSegment(segment);
+        this.flusher = new Thread(this::flushLoop, "wal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public static Path segmentPath(Path directory, long segment) {
+        return directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    public static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Читает записи сегмента по порядку. Чтение останавливается на первой неполной или повреждённой записи,
+     * и сегмент обрезается до последней целой записи, чтобы новые записи не оказались за мусором.
+     */
+    public static long replay(Path file, Consumer<Record> consumer) throws IOException {
+        long valid = 0;
+        long records = 0;
+
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(file), 64 * 1024);
+             DataInputStream data = new DataInputStream(input)) {
+            while (true) {
+                byte[] body;
+                try {
+                    int length = data.readInt();
+                    int crc = data.readInt();
+                    if (length <= 0) {
+                        break;
+                    }
+                    body = new byte[length];
+                    data.readFully(body);
+                    if (crc(body) != crc) {
+                        log.warn("Повреждённая запись в журнале {} на позиции {}", file, valid);
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+
+                consumer.accept(new Record(body[0], ByteBuffer.wrap(body, 1, body.length - 1).slice()));
+                valid += Integer.BYTES * 2 + body.length;
+                records++;
+            }
+        }
+
+        if (Files.size(file) > valid) {
+            log.warn("Журнал {} обрезан до {} байт после незавершённой записи", file, valid);
+            try (FileChannel truncated = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                truncated.truncate(valid);
+            }
+        }
+
+        return records;
+    }
+
+    /**
+     * Закрывает текущий сегмент, дописав в него всё накопленное, и начинает новый.
+     *
+     * @return номер закрытого сегмента
+     */
+    public long rotate() throws IOException {
+        synchronized (fileLock) {
+            writePending(true);
+            channel.close();
+            long closedSegment = segment;
+            segment++;
+            channel = openSegment(segment);
+            return closedSegment;
+        }
+    }
+
+    public long getSegment() {
+        synchronized (fileLock) {
+            return segment;
+        }
+    }
+
+    @Override
+    public void filmCreated(Film film) {
+        append(FILM_CREATED, json(film));
+    }
+
+    @Override
+    public void filmUpdated(Film film) {
+        append(FILM_UPDATED, json(film));
+    }
+
+    @Override
+    public void likeAdded(int filmId, int userId) {
+        append(LIKE_ADDED, pair(filmId, userId));
+    }
+
+    @Override
+    public void likeRemoved(int filmId, int userId) {
+        append(LIKE_REMOVED, pair(filmId, userId));
+    }
+
+    @Override
+    public void userCreated(User user) {
+        append(USER_CREATED, json(user));
+    }
+
+    @Override
+    public void userUpdated(User user) {
+        append(USER_UPDATED, json(user));
+    }
+
+    @Override
+    public void friendAdded(int userId, int friendId) {
+        append(FRIEND_ADDED, pair(userId, friendId));
+    }
+
+    @Override
+    public void friendRemoved(int userId, int friendId) {
+        append(FRIEND_REMOVED, pair(userId, friendId));
+    }
+
+    /**
+     * Дожидается, пока записи, добавленные текущим потоком, окажутся на диске.
+     */
+    @Override
+    public void committed() {
+        long[] sequence = awaited.get();
+        if (sequence[0] > 0) {
+            long upTo = sequence[0];
+            sequence[0] = 0;
+            awaitDurable(upTo);
+        }
+    }
+
+    void append(byte type, byte[] payload) {
+        byte[] body = new byte[payload.length + 1];
+        body[0] = type;
+        System.arraycopy(payload, 0, body, 1, payload.length);
+
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES * 2 + body.length);
+        frame.putInt(body.length).putInt(crc(body)).put(body);
+
+        long sequence;
+        synchronized (bufferLock) {
+            if (closed) {
+                throw new IllegalStateException("Журнал изменений закрыт");
+            }
+            pending.write(frame.array(), 0, frame.capacity());
+            sequence = ++appended;
+            if (policy == FsyncPolicy.ALWAYS) {
+                bufferLock.notifyAll();
+            }
+        }
+
+        if (policy == FsyncPolicy.ALWAYS) {
+            awaited.get()[0] = sequence;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (bufferLock) {
+            closed = true;
+            bufferLock.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (fileLock) {
+            writePending(true);
+            channel.close();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            synchronized (bufferLock) {
+                try {
+                    if (policy == FsyncPolicy.ALWAYS) {
+                        while (pending.size() == 0 && !closed) {
+                            bufferLock.wait();
+                        }
+                    } else if (!closed) {
+                        bufferLock.wait(groupCommitMillis);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (closed) {
+                    return;
+                }
+            }
+
+            synchronized (fileLock) {
+                writePending(policy != FsyncPolicy.NONE);
+            }
+        }
+    }
+
+    private void writePending(boolean force) {
+        byte[] batch;
+        long upTo;
+
+        synchronized (bufferLock) {
+            if (pending.size() == 0) {
+                return;
+            }
+            batch = pending.toByteArray();
+            pending.reset();
+            upTo = appended;
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(batch);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (force) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            log.error("Не удалось записать журнал изменений", e);
+            synchronized (bufferLock) {
+                failure = e;
+                bufferLock.notifyAll();
+            }
+            return;
+        }
+
+        synchronized (bufferLock) {
+            durable = upTo;
+            bufferLock.notifyAll();
+        }
+    }
+
+    private void awaitDurable(long sequence) {
+        synchronized (bufferLock) {
+            while (durable < sequence && failure == null) {
+                try {
+                    bufferLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Ожидание записи журнала прервано", e);
+                }
+            }
+            if (durable < sequence) {
+                throw new UncheckedIOException("Не удалось записать журнал изменений", failure);
+            }
+        }
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(segmentPath(directory, number),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private byte[] json(Object entity) {
+        try {
+            return objectMapper.writeValueAsBytes(entity);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать запись журнала", e);
+        }
+    }
+
+    private static byte[] pair(int first, int second) {
+        return ByteBuffer.allocate(Integer.BYTES * 2).putInt(first).putInt(second).array();
+    }
+
+    private static int crc(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    public static final class Record {
+        private final byte type;
+        private final ByteBuffer payload;
+
+        private Record(byte type, ByteBuffer payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+
+        public byte getType() {
+            return type;
+        }
+
+        public int first() {
+            return payload.getInt(0);
+        }
+
+        public int second() {
+            return payload.getInt(Integer.BYTES);
+        }
+
+        public <T> T entity(ObjectMapper objectMapper, Class<T> type) throws IOException {
+            return objectMapper.readValue(payload.array(), payload.arrayOffset(), payload.remaining(), type);
+        }
+    }
+}
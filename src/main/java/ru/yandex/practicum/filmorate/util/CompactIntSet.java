@@ -0,0 +1,297 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * Множество int без упаковки в Integer: около 4 байт на элемент против нескольких десятков у HashSet.
+ * Значения лежат по возрастанию в блоках не длиннее {@link #BLOCK_SIZE}. Блоки и их список неизменяемы:
+ * изменение копирует один блок и список ссылок на блоки и публикует новое состояние одной volatile-записью,
+ * поэтому чтение и обход идут без блокировок и видят согласованное состояние, а добавление стоит
+ * O(BLOCK_SIZE + n / BLOCK_SIZE), а не O(n), как при копировании всего массива.
+ */
+public class CompactIntSet extends AbstractSet<Integer> implements IntSet {
+    static final int BLOCK_SIZE = 512;
+
+    private static final State EMPTY = new State(new int[0][], 0);
+
+    private volatile State state = EMPTY;
+
+    public CompactIntSet() {
+    }
+
+    public CompactIntSet(Collection<Integer> values) {
+        if (values instanceof CompactIntSet) {
+            state = ((CompactIntSet) values).state;
+        } else {
+            addAll(values);
+        }
+    }
+
+    /**
+     * Копия за O(1): состояние неизменяемо, поэтому копия делит его с исходным множеством,
+     * пока одно из них не изменится.
+     */
+    public CompactIntSet(CompactIntSet values) {
+        state = values.state;
+    }
+
+    public static CompactIntSet of(int... values) {
+        CompactIntSet set = new CompactIntSet();
+        set.addAllInts(values);
+        return set;
+    }
+
+    @Override
+    public boolean containsInt(int value) {
+        State current = state;
+        int block = current.blockOf(value);
+        return block >= 0 && Arrays.binarySearch(current.blocks[block], value) >= 0;
+    }
+
+    @Override
+    public synchronized boolean addInt(int value) {
+        State current = state;
+        int block = current.blockOf(value);
+
+        if (block < 0) {
+            state = current.splice(0, 0, 1, new int[]{value});
+            return true;
+        }
+
+        int[] values = current.blocks[block];
+        int index = Arrays.binarySearch(values, value);
+        if (index >= 0) {
+            return false;
+        }
+
+        int insertAt = -index - 1;
+        if (values.length == BLOCK_SIZE && insertAt == BLOCK_SIZE && block == current.blocks.length - 1) {
+            // id обычно растут, поэтому добавление в конец открывает новый блок и оставляет прежний заполненным
+            state = current.splice(block + 1, 0, 1, new int[]{value});
+            return true;
+        }
+
+        int[] updated = new int[values.length + 1];
+        System.arraycopy(values, 0, updated, 0, insertAt);
+        updated[insertAt] = value;
+        System.arraycopy(values, insertAt, updated, insertAt + 1, values.length - insertAt);
+
+        if (updated.length <= BLOCK_SIZE) {
+            state = current.splice(block, 1, 1, updated);
+        } else {
+            int half = updated.length / 2;
+            state = current.splice(block, 1, 1, Arrays.copyOfRange(updated, 0, half),
+                    Arrays.copyOfRange(updated, half, updated.length));
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean removeInt(int value) {
+        State current = state;
+        int block = current.blockOf(value);
+        if (block < 0) {
+            return false;
+        }
+
+        int[] values = current.blocks[block];
+        int index = Arrays.binarySearch(values, value);
+        if (index < 0) {
+            return false;
+        }
+
+        if (values.length == 1) {
+            state = current.splice(block, 1, -1);
+        } else {
+            int[] updated = new int[values.length - 1];
+            System.arraycopy(values, 0, updated, 0, index);
+            System.arraycopy(values, index + 1, updated, index, values.length - index - 1);
+            state = current.splice(block, 1, -1, updated);
+        }
+        return true;
+    }
+
+    /**
+     * Добавляет пачку значений за одно слияние, а не по копии блока на каждый элемент.
+     */
+    public synchronized boolean addAllInts(int[] values) {
+        int[] added = Arrays.copyOf(values, values.length);
+        Arrays.sort(added);
+
+        State current = state;
+        int[] existing = current.toArray();
+        int[] merged = new int[existing.length + added.length];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+
+        while (i < existing.length || j < added.length) {
+            int next;
+            if (j == added.length || (i < existing.length && existing[i] <= added[j])) {
+                next = existing[i++];
+            } else {
+                next = added[j++];
+            }
+            if (size == 0 || merged[size - 1] != next) {
+                merged[size++] = next;
+            }
+        }
+
+        if (size == current.size) {
+            return false;
+        }
+
+        int[][] blocks = new int[(size + BLOCK_SIZE - 1) / BLOCK_SIZE][];
+        for (int block = 0; block < blocks.length; block++) {
+            blocks[block] = Arrays.copyOfRange(merged, block * BLOCK_SIZE, Math.min(size, (block + 1) * BLOCK_SIZE));
+        }
+        state = new State(blocks, size);
+        return true;
+    }
+
+    @Override
+    public int[] toIntArray() {
+        return state.toArray();
+    }
+
+    @Override
+    public void forEachInt(IntConsumer action) {
+        for (int[] block : state.blocks) {
+            for (int value : block) {
+                action.accept(value);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return state.size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && containsInt((Integer) o);
+    }
+
+    @Override
+    public boolean add(Integer value) {
+        return addInt(value);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Integer && removeInt((Integer) o);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Integer> values) {
+        if (values instanceof IntSet) {
+            return addAllInts(((IntSet) values).toIntArray());
+        }
+        return addAllInts(values.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    @Override
+    public synchronized void clear() {
+        state = EMPTY;
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        int[][] blocks = state.blocks;
+
+        return new Iterator<>() {
+            private int block;
+            private int index;
+            private int last;
+
+            @Override
+            public boolean hasNext() {
+                return block < blocks.length;
+            }
+
+            @Override
+            public Integer next() {
+                if (block >= blocks.length) {
+                    throw new NoSuchElementException();
+                }
+                last = blocks[block][index++];
+                if (index == blocks[block].length) {
+                    block++;
+                    index = 0;
+                }
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (block == 0 && index == 0) {
+                    throw new IllegalStateException();
+                }
+                removeInt(last);
+            }
+        };
+    }
+
+    /**
+     * Блоки текущего состояния, для проверки их заполнения.
+     */
+    int[][] blocks() {
+        return state.blocks;
+    }
+
+    private static final class State {
+        private final int[][] blocks;
+        private final int size;
+
+        private State(int[][] blocks, int size) {
+            this.blocks = blocks;
+            this.size = size;
+        }
+
+        /**
+         * Блок, в котором лежит или должно лежать значение: последний, чей первый элемент не больше value,
+         * или первый, если value меньше всех. -1 для пустого множества.
+         */
+        private int blockOf(int value) {
+            int low = 0;
+            int high = blocks.length - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (blocks[middle][0] <= value) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return high;
+        }
+
+        /**
+         * Новое состояние, в котором removed блоков начиная с index заменены на inserted.
+         */
+        private State splice(int index, int removed, int sizeDelta, int[]... inserted) {
+            int[][] updated = new int[blocks.length - removed + inserted.length][];
+            System.arraycopy(blocks, 0, updated, 0, index);
+            System.arraycopy(inserted, 0, updated, index, inserted.length);
+            System.arraycopy(blocks, index + removed, updated, index + inserted.length,
+                    blocks.length - index - removed);
+            return new State(updated, size + sizeDelta);
+        }
+
+        private int[] toArray() {
+            int[] values = new int[size];
+            int position = 0;
+            for (int[] block : blocks) {
+                System.arraycopy(block, 0, values, position, block.length);
+                position += block.length;
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+/**
+ * Множество целых чисел, доступное и через обычный Set<Integer>, и через методы без упаковки.
+ */
+public interface IntSet extends Set<Integer> {
+    boolean containsInt(int value);
+
+    boolean addInt(int value);
+
+    boolean removeInt(int value);
+
+    int[] toIntArray();
+
+    default void forEachInt(IntConsumer action) {
+        for (int value : toIntArray()) {
+            action.accept(value);
+        }
+    }
+}
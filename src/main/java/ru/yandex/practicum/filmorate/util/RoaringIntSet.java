@@ -0,0 +1,623 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+/**
+ * Сжатое битовое множество int в духе Roaring: значения делятся на блоки по старшим 16 битам, каждый блок
+ * хранится либо отсортированным массивом char (до 4096 значений), либо битовой картой из 1024 long.
+ * Пересечение двух битовых карт считается пословным AND. Блоки неизменяемы и заменяются при записи,
+ * поэтому чтение и обход идут без блокировок.
+ */
+public class RoaringIntSet extends AbstractSet<Integer> implements IntSet {
+    private static final State EMPTY = new State(new char[0], new Container[0], 0);
+
+    private volatile State state = EMPTY;
+
+    public RoaringIntSet() {
+    }
+
+    public RoaringIntSet(Collection<Integer> values) {
+        if (values instanceof RoaringIntSet) {
+            state = ((RoaringIntSet) values).state;
+        } else {
+            addAll(values);
+        }
+    }
+
+    /**
+     * Копия за O(1): делит неизменяемое состояние с исходным множеством, пока одно из них не изменится.
+     */
+    public RoaringIntSet(RoaringIntSet values) {
+        state = values.state;
+    }
+
+    public static RoaringIntSet of(int... values) {
+        RoaringIntSet set = new RoaringIntSet();
+        set.addAllInts(values);
+        return set;
+    }
+
+    public static RoaringIntSet of(Set<Integer> values) {
+        return values instanceof RoaringIntSet ? (RoaringIntSet) values : new RoaringIntSet(values);
+    }
+
+    @Override
+    public boolean containsInt(int value) {
+        State current = state;
+        int index = current.indexOf(high(value));
+        return index >= 0 && current.containers[index].contains(low(value));
+    }
+
+    @Override
+    public synchronized boolean addInt(int value) {
+        State current = state;
+        char key = high(value);
+        int index = current.indexOf(key);
+
+        if (index < 0) {
+            state = current.insert(-index - 1, key, new ArrayContainer(new char[]{low(value)}));
+            return true;
+        }
+
+        Container container = current.containers[index];
+        Container updated = container.add(low(value));
+        if (updated == container) {
+            return false;
+        }
+
+        state = current.replace(index, updated);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean removeInt(int value) {
+        State current = state;
+        int index = current.indexOf(high(value));
+
+        if (index < 0) {
+            return false;
+        }
+
+        Container container = current.containers[index];
+        Container updated = container.remove(low(value));
+        if (updated == container) {
+            return false;
+        }
+
+        state = updated.cardinality() == 0 ? current.delete(index) : current.replace(index, updated);
+        return true;
+    }
+
+    public synchronized boolean addAllInts(int[] values) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        State current = state;
+        char[] lows = new char[Math.min(sorted.length, 1 << 16)];
+        int start = 0;
+
+        while (start < sorted.length) {
+            char key = high(sorted[start]);
+            int count = 0;
+            int end = start;
+
+            while (end < sorted.length && high(sorted[end]) == key) {
+                char low = low(sorted[end++]);
+                if (count == 0 || lows[count - 1] != low) {
+                    lows[count++] = low;
+                }
+            }
+
+            int index = current.indexOf(key);
+            if (index < 0) {
+                current = current.insert(-index - 1, key, Container.fromSorted(lows, count));
+            } else {
+                current = current.replace(index, current.containers[index].addAll(lows, count));
+            }
+            start = end;
+        }
+
+        boolean changed = current.size != state.size;
+        state = current;
+        return changed;
+    }
+
+    /**
+     * Пересечение с другим множеством: блоки с одинаковым ключом пересекаются попарно,
+     * две битовые карты - пословным AND.
+     */
+    public RoaringIntSet and(RoaringIntSet other) {
+        State left = state;
+        State right = other.state;
+        char[] keys = new char[Math.min(left.keys.length, right.keys.length)];
+        Container[] containers = new Container[keys.length];
+        int count = 0;
+        int size = 0;
+        int i = 0;
+        int j = 0;
+
+        while (i < left.keys.length && j < right.keys.length) {
+            if (left.keys[i] < right.keys[j]) {
+                i++;
+            } else if (left.keys[i] > right.keys[j]) {
+                j++;
+            } else {
+                Container container = left.containers[i++].and(right.containers[j++]);
+                if (container.cardinality() > 0) {
+                    keys[count] = left.keys[i - 1];
+                    containers[count++] = container;
+                    size += container.cardinality();
+                }
+            }
+        }
+
+        RoaringIntSet result = new RoaringIntSet();
+        result.state = new State(Arrays.copyOf(keys, count), Arrays.copyOf(containers, count), size);
+        return result;
+    }
+
+    /**
+     * Размер пересечения без построения результирующего множества.
+     */
+    public int andCardinality(RoaringIntSet other) {
+        State left = state;
+        State right = other.state;
+        int size = 0;
+        int i = 0;
+        int j = 0;
+
+        while (i < left.keys.length && j < right.keys.length) {
+            if (left.keys[i] < right.keys[j]) {
+                i++;
+            } else if (left.keys[i] > right.keys[j]) {
+                j++;
+            } else {
+                size += left.containers[i++].andCardinality(right.containers[j++]);
+            }
+        }
+
+        return size;
+    }
+
+    @Override
+    public int[] toIntArray() {
+        State current = state;
+        int[] values = new int[current.size];
+        int[] position = {0};
+
+        current.forEach(value -> values[position[0]++] = value);
+        return values;
+    }
+
+    @Override
+    public void forEachInt(IntConsumer action) {
+        state.forEach(action);
+    }
+
+    @Override
+    public int size() {
+        return state.size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && containsInt((Integer) o);
+    }
+
+    @Override
+    public boolean add(Integer value) {
+        return addInt(value);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Integer && removeInt((Integer) o);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Integer> values) {
+        if (values instanceof IntSet) {
+            return addAllInts(((IntSet) values).toIntArray());
+        }
+        return addAllInts(values.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    @Override
+    public synchronized void clear() {
+        state = EMPTY;
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        int[] snapshot = toIntArray();
+
+        return new Iterator<>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < snapshot.length;
+            }
+
+            @Override
+            public Integer next() {
+                if (index >= snapshot.length) {
+                    throw new NoSuchElementException();
+                }
+                return snapshot[index++];
+            }
+
+            @Override
+            public void remove() {
+                if (index == 0) {
+                    throw new IllegalStateException();
+                }
+                removeInt(snapshot[index - 1]);
+            }
+        };
+    }
+
+    private static char high(int value) {
+        return (char) (value >>> 16);
+    }
+
+    private static char low(int value) {
+        return (char) value;
+    }
+
+    private static final class State {
+        private final char[] keys;
+        private final Container[] containers;
+        private final int size;
+
+        private State(char[] keys, Container[] containers, int size) {
+            this.keys = keys;
+            this.containers = containers;
+            this.size = size;
+        }
+
+        private int indexOf(char key) {
+            return Arrays.binarySearch(keys, key);
+        }
+
+        private State insert(int index, char key, Container container) {
+            char[] newKeys = new char[keys.length + 1];
+            Container[] newContainers = new Container[containers.length + 1];
+
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+            System.arraycopy(containers, 0, newContainers, 0, index);
+            System.arraycopy(containers, index, newContainers, index + 1, containers.length - index);
+            newKeys[index] = key;
+            newContainers[index] = container;
+
+            return new State(newKeys, newContainers, size + container.cardinality());
+        }
+
+        private State replace(int index, Container container) {
+            Container[] newContainers = containers.clone();
+            newContainers[index] = container;
+
+            return new State(keys, newContainers,
+                    size - containers[index].cardinality() + container.cardinality());
+        }
+
+        private State delete(int index) {
+            char[] newKeys = new char[keys.length - 1];
+            Container[] newContainers = new Container[containers.length - 1];
+
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+            System.arraycopy(containers, 0, newContainers, 0, index);
+            System.arraycopy(containers, index + 1, newContainers, index, containers.length - index - 1);
+
+            return new State(newKeys, newContainers, size - containers[index].cardinality());
+        }
+
+        private void forEach(IntConsumer action) {
+            for (int i = 0; i < keys.length; i++) {
+                containers[i].forEach(keys[i] << 16, action);
+            }
+        }
+    }
+
+    private abstract static class Container {
+        static final int MAX_ARRAY_SIZE = 4096;
+
+        static Container fromSorted(char[] lows, int count) {
+            if (count <= MAX_ARRAY_SIZE) {
+                return new ArrayContainer(Arrays.copyOf(lows, count));
+            }
+
+            long[] words = new long[BitmapContainer.WORDS];
+            for (int i = 0; i < count; i++) {
+                words[lows[i] >>> 6] |= 1L << lows[i];
+            }
+            return new BitmapContainer(words, count);
+        }
+
+        abstract int cardinality();
+
+        abstract boolean contains(char low);
+
+        abstract Container add(char low);
+
+        abstract Container remove(char low);
+
+        abstract Container addAll(char[] lows, int count);
+
+        abstract Container and(Container other);
+
+        abstract int andCardinality(Container other);
+
+        abstract void forEach(int high, IntConsumer action);
+    }
+
+    private static final class ArrayContainer extends Container {
+        private final char[] values;
+
+        private ArrayContainer(char[] values) {
+            this.values = values;
+        }
+
+        @Override
+        int cardinality() {
+            return values.length;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return Arrays.binarySearch(values, low) >= 0;
+        }
+
+        @Override
+        Container add(char low) {
+            int index = Arrays.binarySearch(values, low);
+            if (index >= 0) {
+                return this;
+            }
+            if (values.length == MAX_ARRAY_SIZE) {
+                return BitmapContainer.from(this).add(low);
+            }
+
+            int insertAt = -index - 1;
+            char[] updated = new char[values.length + 1];
+            System.arraycopy(values, 0, updated, 0, insertAt);
+            updated[insertAt] = low;
+            System.arraycopy(values, insertAt, updated, insertAt + 1, values.length - insertAt);
+            return new ArrayContainer(updated);
+        }
+
+        @Override
+        Container remove(char low) {
+            int index = Arrays.binarySearch(values, low);
+            if (index < 0) {
+                return this;
+            }
+
+            char[] updated = new char[values.length - 1];
+            System.arraycopy(values, 0, updated, 0, index);
+            System.arraycopy(values, index + 1, updated, index, values.length - index - 1);
+            return new ArrayContainer(updated);
+        }
+
+        @Override
+        Container addAll(char[] lows, int count) {
+            char[] merged = new char[values.length + count];
+            int size = 0;
+            int i = 0;
+            int j = 0;
+
+            while (i < values.length || j < count) {
+                char next;
+                if (j == count || (i < values.length && values[i] <= lows[j])) {
+                    next = values[i++];
+                } else {
+                    next = lows[j++];
+                }
+                if (size == 0 || merged[size - 1] != next) {
+                    merged[size++] = next;
+                }
+            }
+
+            return size == values.length ? this : fromSorted(merged, size);
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[values.length];
+            int size = 0;
+
+            if (other instanceof ArrayContainer) {
+                char[] otherValues = ((ArrayContainer) other).values;
+                int i = 0;
+                int j = 0;
+                while (i < values.length && j < otherValues.length) {
+                    if (values[i] < otherValues[j]) {
+                        i++;
+                    } else if (values[i] > otherValues[j]) {
+                        j++;
+                    } else {
+                        result[size++] = values[i++];
+                        j++;
+                    }
+                }
+            } else {
+                for (char value : values) {
+                    if (other.contains(value)) {
+                        result[size++] = value;
+                    }
+                }
+            }
+
+            return new ArrayContainer(Arrays.copyOf(result, size));
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            int size = 0;
+
+            if (other instanceof ArrayContainer) {
+                char[] otherValues = ((ArrayContainer) other).values;
+                int i = 0;
+                int j = 0;
+                while (i < values.length && j < otherValues.length) {
+                    if (values[i] < otherValues[j]) {
+                        i++;
+                    } else if (values[i] > otherValues[j]) {
+                        j++;
+                    } else {
+                        size++;
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (char value : values) {
+                    if (other.contains(value)) {
+                        size++;
+                    }
+                }
+            }
+
+            return size;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (char value : values) {
+                action.accept(high | value);
+            }
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        static final int WORDS = 1024;
+
+        private final long[] words;
+        private final int cardinality;
+
+        private BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        static BitmapContainer from(ArrayContainer container) {
+            long[] words = new long[WORDS];
+            for (char value : container.values) {
+                words[value >>> 6] |= 1L << value;
+            }
+            return new BitmapContainer(words, container.values.length);
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        Container add(char low) {
+            if (contains(low)) {
+                return this;
+            }
+
+            long[] updated = words.clone();
+            updated[low >>> 6] |= 1L << low;
+            return new BitmapContainer(updated, cardinality + 1);
+        }
+
+        @Override
+        Container remove(char low) {
+            if (!contains(low)) {
+                return this;
+            }
+
+            long[] updated = words.clone();
+            updated[low >>> 6] &= ~(1L << low);
+            return cardinality - 1 <= MAX_ARRAY_SIZE ? toArrayContainer(updated, cardinality - 1)
+                    : new BitmapContainer(updated, cardinality - 1);
+        }
+
+        @Override
+        Container addAll(char[] lows, int count) {
+            long[] updated = words.clone();
+            int size = cardinality;
+
+            for (int i = 0; i < count; i++) {
+                long bit = 1L << lows[i];
+                if ((updated[lows[i] >>> 6] & bit) == 0) {
+                    updated[lows[i] >>> 6] |= bit;
+                    size++;
+                }
+            }
+
+            return size == cardinality ? this : new BitmapContainer(updated, size);
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] result = new long[WORDS];
+            int size = 0;
+            for (int i = 0; i < WORDS; i++) {
+                result[i] = words[i] & otherWords[i];
+                size += Long.bitCount(result[i]);
+            }
+
+            return size <= MAX_ARRAY_SIZE ? toArrayContainer(result, size) : new BitmapContainer(result, size);
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.andCardinality(this);
+            }
+
+            long[] otherWords = ((BitmapContainer) other).words;
+            int size = 0;
+            for (int i = 0; i < WORDS; i++) {
+                size += Long.bitCount(words[i] & otherWords[i]);
+            }
+            return size;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    action.accept(high | (i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        private static ArrayContainer toArrayContainer(long[] words, int cardinality) {
+            char[] values = new char[cardinality];
+            int size = 0;
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[size++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values);
+        }
+    }
+}
@@ -1,30 +1,73 @@
 package ru.yandex.practicum.filmorate;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import ru.yandex.practicum.filmorate.controller.FilmController;
+import ru.yandex.practicum.filmorate.controller.NdjsonWriter;
+import ru.yandex.practicum.filmorate.controller.RecommendationController;
 import ru.yandex.practicum.filmorate.controller.UserController;
 import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Like;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.EventBroadcaster;
+import ru.yandex.practicum.filmorate.service.FilmRecommendations;
+import ru.yandex.practicum.filmorate.service.FilmSearchIndex;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.FilmTrends;
+import ru.yandex.practicum.filmorate.service.FriendSuggestions;
 import ru.yandex.practicum.filmorate.service.UserService;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
 import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
-
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
+@AutoConfigureMockMvc
 class FilmorateApplicationTests {
     FilmStorage filmStorage;
     UserStorage userStorage;
@@ -32,22 +75,37 @@ class FilmorateApplicationTests {
     UserService userService;
     FilmController filmController;
     UserController userController;
+    NdjsonWriter ndjsonWriter;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    MockMvc mockMvc;
     Film film;
     User user;
 
     @BeforeEach
     void beforeEach() {
-        filmStorage = new InMemoryFilmStorage();
-        userStorage = new InMemoryUserStorage();
-        filmService = new FilmService(filmStorage, userStorage);
-        userService = new UserService(userStorage);
-        filmController = new FilmController(filmService);
-        userController = new UserController(userService);
+        filmStorage = createFilmStorage();
+        userStorage = createUserStorage();
+        filmService = new FilmService(filmStorage, userStorage, new FilmRecommendations(filmStorage),
+                new FilmTrends(), new FilmSearchIndex(filmStorage), new EventBroadcaster());
+        userService = new UserService(userStorage, new FriendSuggestions(userStorage), new EventBroadcaster());
+        ndjsonWriter = new NdjsonWriter(objectMapper);
+        filmController = new FilmController(filmService, ndjsonWriter);
+        userController = new UserController(userService, ndjsonWriter);
         film = new Film(0, "Film", "film description", LocalDate.now(), 120);
         user = new User(0, "user@email.ru", "login", "name",
                 LocalDate.of(2000, Month.DECEMBER, 20));
     }
 
+    FilmStorage createFilmStorage() {
+        return new InMemoryFilmStorage();
+    }
+
+    UserStorage createUserStorage() {
+        return new InMemoryUserStorage();
+    }
+
     @Test
     void contextLoads() {
     }
@@ -250,10 +308,213 @@ class FilmorateApplicationTests {
         assertEquals(userController.findAll().size(), 2);
     }
 
+    @Test
+    void findFilmPages() {
+        for (int i = 0; i < 5; i++) {
+            filmController.create(new Film(0, "Film" + i, "description", LocalDate.now(), 90));
+        }
+
+        ResponseEntity<Collection<Film>> first = filmController.findPage(0, 2);
+        ResponseEntity<Collection<Film>> last = filmController.findPage(4, 2);
+
+        assertEquals(List.of(1, 2), first.getBody().stream().map(Film::getId).collect(Collectors.toList()));
+        assertEquals("2", first.getHeaders().getFirst(NdjsonWriter.NEXT_CURSOR_HEADER));
+        assertEquals(List.of(5), last.getBody().stream().map(Film::getId).collect(Collectors.toList()));
+        assertNull(last.getHeaders().getFirst(NdjsonWriter.NEXT_CURSOR_HEADER));
+        assertThrows(ValidationException.class, () -> filmController.findPage(0, 0));
+        assertThrows(ValidationException.class, () -> filmController.findPage(-1, 10));
+    }
+
+    @Test
+    void streamAllUsers() throws Exception {
+        for (int i = 0; i < 1200; i++) {
+            userController.create(new User(0, "user" + i + "@email.ru", "login" + i, "name",
+                    LocalDate.of(2000, Month.DECEMBER, 20)));
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        userController.streamAll().getBody().writeTo(output);
+
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(1200, lines.length);
+        assertEquals(userController.getById(1).getBody(), objectMapper.readValue(lines[0], User.class));
+        assertEquals(userController.getById(1200).getBody(), objectMapper.readValue(lines[1199], User.class));
+    }
+
+    @Test
+    void findAllStaysJsonArrayWithoutPagingParameters() throws Exception {
+        mockMvc.perform(post("/films").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(film)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/films"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$[0].name").value("Film"));
+        mockMvc.perform(get("/films").param("limit", "1"))
+                .andExpect(header().string(NdjsonWriter.NEXT_CURSOR_HEADER, "1"))
+                .andExpect(jsonPath("$[0].name").value("Film"));
+        mockMvc.perform(get("/films").accept(NdjsonWriter.APPLICATION_NDJSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(NdjsonWriter.APPLICATION_NDJSON));
+    }
+
+    @Test
+    void pageIsStreamedAsNdjsonWhenRequested() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(post("/films").contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(film)))
+                    .andExpect(status().isOk());
+            mockMvc.perform(post("/users").contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(new User(0, "page" + i + "@email.ru",
+                                    "page" + i, "name", LocalDate.of(2000, Month.DECEMBER, 20)))))
+                    .andExpect(status().isOk());
+        }
+
+        for (String path : List.of("/films", "/users")) {
+            MvcResult started = mockMvc.perform(get(path).param("limit", "2").accept(NdjsonWriter.APPLICATION_NDJSON))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            String body = mockMvc.perform(asyncDispatch(started))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentTypeCompatibleWith(NdjsonWriter.APPLICATION_NDJSON))
+                    .andExpect(header().exists(NdjsonWriter.NEXT_CURSOR_HEADER))
+                    .andReturn().getResponse().getContentAsString();
+            assertEquals(2, body.split("\n").length);
+
+            mockMvc.perform(get(path).param("limit", "2").accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                    .andExpect(jsonPath("$.length()").value(2));
+        }
+    }
+
+    @Test
+    void storageOperationsAndEndpointsAreMetered() throws Exception {
+        mockMvc.perform(get("/films/{id}", 999)).andExpect(status().isNotFound());
+
+        mockMvc.perform(get("/actuator/metrics/filmorate.storage")
+                        .param("tag", "storage:film")
+                        .param("tag", "operation:getById")
+                        .param("tag", "outcome:not_found"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.measurements[?(@.statistic == 'COUNT')].value")
+                        .value(hasItem(greaterThanOrEqualTo(1.0))));
+        mockMvc.perform(get("/actuator/metrics/http.server.requests").param("tag", "uri:/films/{id}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/metrics/filmorate.storage.size").param("tag", "storage:user"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void versionsGrowOnEveryChange() {
+        addFilmAndUserToStorages();
+        User user2 = new User(0, "user2@email.ru", "login2", "name2",
+                LocalDate.of(2000, Month.DECEMBER, 30));
+        userController.create(user2);
+
+        assertEquals(1, filmController.getById(1).getBody().getVersion());
+        filmController.addLike(1, 1);
+        assertEquals(2, filmController.getById(1).getBody().getVersion());
+        filmController.removeLike(1, 1);
+        assertEquals(3, filmController.getById(1).getBody().getVersion());
+        filmController.update(new Film(1, "Film", "new description", LocalDate.now(), 120));
+        assertEquals(4, filmController.getById(1).getBody().getVersion());
+
+        userController.addFriend(1, 2);
+        assertEquals(2, userController.getById(1).getBody().getVersion());
+        assertEquals(2, userController.getById(2).getBody().getVersion());
+    }
+
+    @Test
+    void likesAndFriendshipsAreStreamedToSubscribers() throws Exception {
+        String film = mockMvc.perform(post("/films").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(this.film)))
+                .andReturn().getResponse().getContentAsString();
+        int filmId = objectMapper.readValue(film, Film.class).getId();
+        List<Integer> userIds = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            String user = mockMvc.perform(post("/users").contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(this.user)))
+                    .andReturn().getResponse().getContentAsString();
+            userIds.add(objectMapper.readValue(user, User.class).getId());
+        }
+
+        MvcResult filmEvents = mockMvc.perform(get("/films/{id}/events", filmId))
+                .andExpect(request().asyncStarted()).andReturn();
+        MvcResult userEvents = mockMvc.perform(get("/users/{id}/events", userIds.get(1)))
+                .andExpect(request().asyncStarted()).andReturn();
+        MvcResult popularEvents = mockMvc.perform(get("/films/popular/events").param("count", "1"))
+                .andExpect(request().asyncStarted()).andReturn();
+        mockMvc.perform(get("/films/{id}/events", 999)).andExpect(status().isNotFound());
+
+        mockMvc.perform(put("/films/{id}/like/{userId}", filmId, userIds.get(0))).andExpect(status().isOk());
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(put("/users/{id}/friends/{friendId}", userIds.get(0), userIds.get(1)))
+                    .andExpect(status().isOk());
+        }
+        mockMvc.perform(delete("/users/{id}/friends/{friendId}", userIds.get(1), userIds.get(0)))
+                .andExpect(status().isOk());
+
+        awaitContent(filmEvents, "event:like-added\ndata:{\"filmId\":" + filmId
+                + ",\"userId\":" + userIds.get(0) + "}");
+        awaitContent(userEvents, "event:friend-added\ndata:{\"userId\":" + userIds.get(0)
+                + ",\"friendId\":" + userIds.get(1) + "}");
+        awaitContent(popularEvents, "event:popular\ndata:[{\"id\":" + filmId);
+        awaitContent(userEvents, "event:friend-removed");
+        // повторное добавление друга ничего не меняет и не рассылается
+        assertEquals(1, userEvents.getResponse().getContentAsString().split("event:friend-added", -1).length - 1);
+    }
+
+    private void awaitContent(MvcResult result, String expected) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!result.getResponse().getContentAsString().contains(expected) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(result.getResponse().getContentAsString(), containsString(expected));
+    }
+
+    @Test
+    void conditionalGetAnswersNotModified() throws Exception {
+        String film = mockMvc.perform(post("/films").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(this.film)))
+                .andReturn().getResponse().getContentAsString();
+        int filmId = objectMapper.readValue(film, Film.class).getId();
+        String user = mockMvc.perform(post("/users").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(this.user)))
+                .andReturn().getResponse().getContentAsString();
+        int userId = objectMapper.readValue(user, User.class).getId();
+
+        for (String path : List.of("/films/" + filmId, "/films/popular", "/users/" + userId + "/friends")) {
+            String eTag = mockMvc.perform(get(path))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("Vary", containsString("Accept")))
+                    .andReturn().getResponse().getHeader("ETag");
+
+            // один тег на JSON, Smile и CBOR, поэтому слабый
+            assertNotNull(eTag);
+            assertTrue(eTag.startsWith("W/"));
+            mockMvc.perform(get(path).header("If-None-Match", eTag))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string("Vary", containsString("Accept")))
+                    .andExpect(content().string(""));
+            mockMvc.perform(get(path).accept("application/x-jackson-smile").header("If-None-Match", eTag))
+                    .andExpect(status().isNotModified());
+
+            mockMvc.perform(put("/films/{id}/like/{userId}", filmId, userId)).andExpect(status().isOk());
+            mockMvc.perform(put("/users/{id}/friends/{friendId}", userId, userId)).andExpect(status().isOk());
+            mockMvc.perform(get(path).header("If-None-Match", eTag))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("ETag", not(eTag)));
+            mockMvc.perform(delete("/films/{id}/like/{userId}", filmId, userId)).andExpect(status().isOk());
+            mockMvc.perform(delete("/users/{id}/friends/{friendId}", userId, userId)).andExpect(status().isOk());
+        }
+    }
+
     @Test
     void getFilmById() {
         filmController.create(film);
-        Film testFilm = filmController.getById(1);
+        Film testFilm = filmController.getById(1).getBody();
 
         film.setId(1);
 
@@ -263,7 +524,7 @@ class FilmorateApplicationTests {
     @Test
     void getUserById() {
         userController.create(user);
-        User testUser = userController.getById(1);
+        User testUser = userController.getById(1).getBody();
 
         user.setId(1);
 
@@ -296,7 +557,7 @@ class FilmorateApplicationTests {
 
         filmController.addLike(1, 1);
 
-        assertTrue(film.getLikesByUsers().contains(1));
+        assertTrue(filmController.getById(1).getBody().getLikesByUsers().contains(1));
     }
 
     @Test
@@ -306,7 +567,7 @@ class FilmorateApplicationTests {
         filmController.addLike(1, 1);
         filmController.removeLike(1, 1);
 
-        assertTrue(film.getLikesByUsers().isEmpty());
+        assertTrue(filmController.getById(1).getBody().getLikesByUsers().isEmpty());
     }
 
     @Test
@@ -322,9 +583,114 @@ class FilmorateApplicationTests {
         filmController.addLike(2, 1);
         filmController.addLike(2, 2);
 
-        List<Film> list = new LinkedList<>(List.of(film2, film));
+        List<Film> list = new LinkedList<>(List.of(filmController.getById(2).getBody(),
+                filmController.getById(1).getBody()));
+
+        assertEquals(filmController.getPopular(10).getBody(), list);
+    }
+
+    @Test
+    void hugeCountsAndOffsetsDoNotReserveMemory() {
+        addFilmAndUserToStorages();
+
+        assertThrows(ValidationException.class, () -> filmController.getPopular(2_000_000_000));
+        assertThrows(ValidationException.class, () -> filmController.getPopular(0));
+        assertEquals(List.of(), filmController.findFiltered(null, null, null, null, 2_000_000_000, 20));
+
+        InMemoryFilmStorage sharded = new InMemoryFilmStorage(4);
+        sharded.create(new Film(0, "Film", "description", LocalDate.now(), 90));
+        assertEquals(1, sharded.getPopular(Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    void getPopularMatchesFullSort() {
+        Random random = new Random(42);
+
+        for (int i = 0; i < 50; i++) {
+            filmController.create(new Film(0, "Film" + i, "description", LocalDate.now(), 90));
+        }
+        for (int i = 0; i < 20; i++) {
+            userController.create(new User(0, "user" + i + "@email.ru", "login" + i, "name",
+                    LocalDate.of(2000, Month.DECEMBER, 20)));
+        }
+
+        for (int i = 0; i < 2000; i++) {
+            int filmId = random.nextInt(50) + 1;
+            int userId = random.nextInt(20) + 1;
+
+            if (random.nextInt(3) == 0) {
+                filmController.removeLike(filmId, userId);
+            } else {
+                filmController.addLike(filmId, userId);
+            }
+
+            if (i % 100 == 0) {
+                for (int count : List.of(1, 10, 50, 100)) {
+                    List<Film> expected = filmController.findAll().stream().sorted((f1, f2) -> {
+                        Integer film1 = f1.getLikesByUsers().size();
+                        Integer film2 = f2.getLikesByUsers().size();
+                        return film1.compareTo(film2) * -1;
+                    }).limit(count).collect(Collectors.toList());
+
+                    assertEquals(expected, filmController.getPopular(count).getBody());
+                }
+            }
+        }
+    }
+
+    @Test
+    void batchCreateFilmsReportsEveryItem() {
+        Film invalid = new Film(0, "", "description", LocalDate.now(), 90);
+        Film film2 = new Film(0, "Film2", "film2 description", LocalDate.now(), 90);
+
+        List<BatchResult> results = filmController.createAll(List.of(film, invalid, film2));
+
+        assertEquals(List.of(0, 1, 2), results.stream().map(BatchResult::getIndex).collect(Collectors.toList()));
+        assertEquals(1, results.get(0).getId());
+        assertEquals(400, results.get(1).getStatus());
+        assertEquals("Название фильма не может быть пустым", results.get(1).getError());
+        assertEquals(2, results.get(2).getId());
+        assertEquals(film2, filmController.getById(2).getBody());
+        assertEquals(2, filmController.findAll().size());
+    }
+
+    @Test
+    void batchReportsInvalidItemsInsteadOfFailing() {
+        Film withoutOptionalFields = new Film(0, "Film", null, null, 90);
+        User wrongEmail = new User(0, "@email.ru", "login", "name", null);
+
+        List<BatchResult> films = filmController.createAll(Arrays.asList(withoutOptionalFields, null));
+        List<BatchResult> users = userController.createAll(List.of(wrongEmail, user));
 
-        assertEquals(filmController.getPopular(10), list);
+        assertEquals(List.of(200, 400), films.stream().map(BatchResult::getStatus).collect(Collectors.toList()));
+        assertEquals(List.of(400, 200), users.stream().map(BatchResult::getStatus).collect(Collectors.toList()));
+        assertTrue(users.get(0).getError().startsWith("email: "), users.get(0).getError());
+    }
+
+    @Test
+    void batchAddLikesAndFriends() {
+        addFilmAndUserToStorages();
+        User user2 = new User(0, "user2@email.ru", "login2", "name2",
+                LocalDate.of(2000, Month.DECEMBER, 30));
+        userController.createAll(List.of(user2));
+
+        List<BatchResult> likes = filmController.addLikes(List.of(new Like(1, 1), new Like(1, 2),
+                new Like(1, 3), new Like(5, 1)));
+        List<BatchResult> friends = userController.addFriends(List.of(new Friendship(1, 2),
+                new Friendship(2, 7)));
+
+        assertEquals(List.of(200, 200, 404, 404), likes.stream().map(BatchResult::getStatus)
+                .collect(Collectors.toList()));
+        assertEquals(Set.of(1, 2), filmController.getById(1).getBody().getLikesByUsers());
+        assertEquals(List.of(filmController.getById(1).getBody()), filmController.getPopular(1).getBody());
+        assertEquals(List.of(200, 404), friends.stream().map(BatchResult::getStatus).collect(Collectors.toList()));
+        assertEquals(List.of(userController.getById(2).getBody()), userController.getFriends(1).getBody());
+        assertEquals(List.of(userController.getById(1).getBody()), userController.getFriends(2).getBody());
+    }
+
+    @Test
+    void batchRejectsEmptyRequest() {
+        assertThrows(ValidationException.class, () -> filmController.addLikes(List.of()));
     }
 
     @Test
@@ -337,8 +703,26 @@ class FilmorateApplicationTests {
 
         userController.addFriend(1, 2);
 
-        assertTrue(user.getFriends().contains(2));
-        assertTrue(user2.getFriends().contains(1));
+        assertTrue(userController.getById(1).getBody().getFriends().contains(2));
+        assertTrue(userController.getById(2).getBody().getFriends().contains(1));
+    }
+
+    @Test
+    void repeatedFriendshipIsReportedUnchanged() {
+        for (int i = 0; i < 3; i++) {
+            userController.create(new User(0, "user" + i + "@email.ru", "login" + i, "name",
+                    LocalDate.of(2000, Month.DECEMBER, 20)));
+        }
+
+        assertTrue(userStorage.addFriend(1, 2));
+        assertFalse(userStorage.addFriend(2, 1));
+        List<BatchResult> results = userStorage.addFriends(List.of(new Friendship(1, 2), new Friendship(1, 3),
+                new Friendship(3, 1)));
+
+        assertEquals(List.of(false, true, false), results.stream().map(BatchResult::isChanged)
+                .collect(Collectors.toList()));
+        assertTrue(userStorage.removeFriend(1, 3));
+        assertFalse(userStorage.removeFriend(3, 1));
     }
 
     @Test
@@ -352,8 +736,8 @@ class FilmorateApplicationTests {
         userController.addFriend(1, 2);
         userController.removeFriend(1, 2);
 
-        assertTrue(user.getFriends().isEmpty());
-        assertTrue(user2.getFriends().isEmpty());
+        assertTrue(userController.getById(1).getBody().getFriends().isEmpty());
+        assertTrue(userController.getById(2).getBody().getFriends().isEmpty());
     }
 
     @Test
@@ -370,7 +754,8 @@ class FilmorateApplicationTests {
         userController.addFriend(1, 2);
         userController.addFriend(1, 3);
 
-        assertEquals(userController.getFriends(1), List.of(user2, user3));
+        assertEquals(userController.getFriends(1).getBody(),
+                List.of(userController.getById(2).getBody(), userController.getById(3).getBody()));
     }
 
     @Test
@@ -387,6 +772,193 @@ class FilmorateApplicationTests {
         userController.addFriend(1, 2);
         userController.addFriend(1, 3);
 
-        assertEquals(userController.getCommonFriends(2, 3), List.of(user));
+        assertEquals(userController.getCommonFriends(2, 3), List.of(userController.getById(1).getBody()));
+    }
+
+    @Test
+    void getFriendSuggestions() {
+        for (int i = 0; i < 6; i++) {
+            userController.create(new User(0, "user" + i + "@email.ru", "login" + i, "name",
+                    LocalDate.of(2000, Month.DECEMBER, 20)));
+        }
+        userController.addFriend(1, 2);
+        userController.addFriend(1, 3);
+        userController.addFriend(2, 4);
+        userController.addFriend(3, 4);
+        userController.addFriend(3, 5);
+
+        assertEquals(List.of(4, 5), userController.getFriendSuggestions(1, 10).stream()
+                .map(User::getId).collect(Collectors.toList()));
+        assertEquals(List.of(4), userController.getFriendSuggestions(1, 1).stream()
+                .map(User::getId).collect(Collectors.toList()));
+
+        userController.addFriend(1, 4);
+        userController.addFriends(List.of(new Friendship(2, 6)));
+
+        assertEquals(List.of(5, 6), userController.getFriendSuggestions(1, 10).stream()
+                .map(User::getId).collect(Collectors.toList()));
+        assertEquals(List.of(1, 4), userController.getFriendSuggestions(6, 10).stream()
+                .map(User::getId).collect(Collectors.toList()));
+        assertThrows(ValidationException.class, () -> userController.getFriendSuggestions(1, 0));
+        assertThrows(UserNotFoundException.class, () -> userController.getFriendSuggestions(99, 10));
+    }
+
+    @Test
+    void getSimilarFilmsAndRecommendations() {
+        RecommendationController recommendationController = new RecommendationController(filmService);
+        for (int i = 0; i < 3; i++) {
+            filmController.create(new Film(0, "Film" + i, "film description", LocalDate.now(), 120));
+            userController.create(new User(0, "user" + i + "@email.ru", "login" + i, "name",
+                    LocalDate.of(2000, Month.DECEMBER, 20)));
+        }
+        filmController.addLike(1, 1);
+        filmController.addLike(2, 1);
+        filmController.addLikes(List.of(new Like(1, 2), new Like(2, 2), new Like(3, 2)));
+
+        assertEquals(List.of(2, 3), recommendationController.getSimilar(1, 10).stream()
+                .map(Film::getId).collect(Collectors.toList()));
+
+        filmController.addLike(1, 3);
+        filmController.addLike(3, 3);
+
+        assertEquals(List.of(1, 3), recommendationController.getSimilar(2, 10).stream()
+                .map(Film::getId).collect(Collectors.toList()));
+        assertEquals(List.of(3), recommendationController.getRecommendations(1, 10).stream()
+                .map(Film::getId).collect(Collectors.toList()));
+        assertEquals(List.of(2), recommendationController.getRecommendations(3, 10).stream()
+                .map(Film::getId).collect(Collectors.toList()));
+
+        filmController.removeLike(2, 2);
+
+        assertEquals(List.of(1), recommendationController.getSimilar(2, 10).stream()
+                .map(Film::getId).collect(Collectors.toList()));
+        assertEquals(List.of(3), recommendationController.getSimilar(1, 1).stream()
+                .map(Film::getId).collect(Collectors.toList()));
+        assertThrows(ValidationException.class, () -> recommendationController.getSimilar(1, 0));
+        assertThrows(FilmNotFoundException.class, () -> recommendationController.getSimilar(99, 10));
+        assertThrows(UserNotFoundException.class, () -> recommendationController.getRecommendations(99, 10));
+    }
+
+    @Test
+    void findFilteredFilms() {
+        filmController.create(new Film(0, "Film1", "description", LocalDate.of(1994, Month.MAY, 1), 154));
+        filmController.create(new Film(0, "Film2", "description", LocalDate.of(1999, Month.MARCH, 31), 110));
+        filmController.create(new Film(0, "Film3", "description", LocalDate.of(1985, Month.JULY, 3), 90));
+        filmController.create(new Film(0, "Film4", "description", LocalDate.of(1993, Month.JUNE, 11), 117));
+        filmController.create(new Film(0, "Film5", "description", LocalDate.of(2010, Month.JULY, 16), 100));
+        userController.create(user);
+        filmController.addLike(4, 1);
+
+        assertEquals(List.of(4, 2), filmController.findFiltered(LocalDate.of(1990, Month.JANUARY, 1),
+                LocalDate.of(2000, Month.DECEMBER, 31), null, 120, 0, 20).stream()
+                .map(Film::getId).collect(Collectors.toList()));
+        assertEquals(List.of(2), filmController.findFiltered(LocalDate.of(1990, Month.JANUARY, 1),
+                LocalDate.of(2000, Month.DECEMBER, 31), null, 120, 1, 20).stream()
+                .map(Film::getId).collect(Collectors.toList()));
+        assertEquals(List.of(2, 3, 5), filmController.findFiltered(null, null, null, 110, 0, 20).stream()
+                .map(Film::getId).collect(Collectors.toList()));
+        assertEquals(List.of(5), filmController.findFiltered(LocalDate.of(2000, Month.JANUARY, 1), null,
+                null, null, 0, 20).stream().map(Film::getId).collect(Collectors.toList()));
+        assertEquals(List.of(4, 1), filmController.findFiltered(null, null, null, null, 0, 2).stream()
+                .map(Film::getId).collect(Collectors.toList()));
+
+        filmController.update(new Film(1, "Film1", "description", LocalDate.of(1994, Month.MAY, 1), 100));
+
+        assertEquals(List.of(1, 2, 3, 5), filmController.findFiltered(null, null, 90, 110, 0, 20).stream()
+                .map(Film::getId).collect(Collectors.toList()));
+        assertThrows(ValidationException.class, () -> filmController.findFiltered(null, null, 120, 90, 0, 20));
+        assertThrows(ValidationException.class, () -> filmController.findFiltered(null, null, null, null, -1, 20));
+    }
+
+    @Test
+    void searchFilms() {
+        filmController.create(new Film(0, "Матрица", "Нео выбирает красную таблетку", LocalDate.now(), 120));
+        filmController.create(new Film(0, "Матрёшка", "Русская кукла", LocalDate.now(), 120));
+        filmController.create(new Film(0, "The Matrix Reloaded", "Neo returns", LocalDate.now(), 120));
+        filmController.create(new Film(0, "Another film", "About the matrix", LocalDate.now(), 120));
+        userController.create(user);
+
+        assertEquals(List.of(1, 2), filmController.search("матр", 20).stream()
+                .map(Film::getId).collect(Collectors.toList()));
+        assertEquals(List.of(3, 4), filmController.search("Matrix", 20).stream()
+                .map(Film::getId).collect(Collectors.toList()));
+        assertEquals(List.of(3), filmController.search("neo, matr", 20).stream()
+                .map(Film::getId).collect(Collectors.toList()));
+
+        filmController.addLike(2, 1);
+        filmController.update(new Film(4, "Matrix forever", "About the matrix", LocalDate.now(), 120));
+
+        assertEquals(List.of(2, 1), filmController.search("МАТР", 20).stream()
+                .map(Film::getId).collect(Collectors.toList()));
+        assertEquals(List.of(4), filmController.search("matrix", 1).stream()
+                .map(Film::getId).collect(Collectors.toList()));
+        assertEquals(List.of(2), filmController.search("матрешка", 20).stream()
+                .map(Film::getId).collect(Collectors.toList()));
+        assertEquals(List.of(), filmController.search("another", 20));
+        assertThrows(ValidationException.class, () -> filmController.search(" ", 20));
+    }
+
+    @Test
+    void getTrending() {
+        for (int i = 0; i < 3; i++) {
+            filmController.create(new Film(0, "Film" + i, "film description", LocalDate.now(), 120));
+            userController.create(new User(0, "user" + i + "@email.ru", "login" + i, "name",
+                    LocalDate.of(2000, Month.DECEMBER, 20)));
+        }
+        filmController.addLike(2, 1);
+        filmController.addLikes(List.of(new Like(2, 2), new Like(3, 3)));
+
+        assertEquals(List.of(2, 3), filmController.getTrending("hour", 10).getBody().stream()
+                .map(Film::getId).collect(Collectors.toList()));
+
+        filmController.removeLike(2, 1);
+        filmController.removeLike(2, 2);
+
+        assertEquals(List.of(3), filmController.getTrending("week", 10).getBody().stream()
+                .map(Film::getId).collect(Collectors.toList()));
+        assertThrows(ValidationException.class, () -> filmController.getTrending("year", 10));
+        assertThrows(ValidationException.class, () -> filmController.getTrending("day", 0));
+    }
+
+    @Test
+    void repeatedLikeIsCountedOnce() {
+        for (int i = 0; i < 2; i++) {
+            filmController.create(new Film(0, "Film" + i, "film description", LocalDate.now(), 120));
+            userController.create(new User(0, "user" + i + "@email.ru", "login" + i, "name",
+                    LocalDate.of(2000, Month.DECEMBER, 20)));
+        }
+        filmController.addLike(1, 1);
+        filmController.addLike(1, 1);
+        List<BatchResult> results = filmController.addLikes(List.of(new Like(1, 1), new Like(2, 1),
+                new Like(2, 2), new Like(2, 2)));
+        filmController.removeLike(1, 2);
+
+        assertEquals(List.of(false, true, true, false), results.stream().map(BatchResult::isChanged)
+                .collect(Collectors.toList()));
+        assertEquals(List.of(2, 1), filmController.getTrending("hour", 10).getBody().stream()
+                .map(Film::getId).collect(Collectors.toList()));
+
+        filmController.removeLike(1, 1);
+
+        assertEquals(List.of(2), filmController.getTrending("hour", 10).getBody().stream()
+                .map(Film::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void getCommonFriendsCount() {
+        addFilmAndUserToStorages();
+
+        User user2 = new User(0, "user2@email.ru", "login2", "name2",
+                LocalDate.of(2000, Month.DECEMBER, 30));
+        User user3 = new User(0, "user3@email.ru", "login3", "name3",
+                LocalDate.of(2000, Month.DECEMBER, 31));
+        userController.create(user2);
+        userController.create(user3);
+
+        userController.addFriend(1, 2);
+        userController.addFriend(1, 3);
+
+        assertEquals(Map.of("count", 1), userController.getCommonFriendsCount(2, 3));
+        assertEquals(Map.of("count", 0), userController.getCommonFriendsCount(1, 2));
     }
 }
\ No newline at end of file
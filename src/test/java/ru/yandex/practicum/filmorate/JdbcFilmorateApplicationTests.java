@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+/**
+ * Те же проверки, что и в {@link FilmorateApplicationTests}, на хранилищах профиля jdbc со встроенной H2.
+ */
+@ActiveProfiles("jdbc")
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:filmorate;DB_CLOSE_DELAY=-1")
+class JdbcFilmorateApplicationTests extends FilmorateApplicationTests {
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    FilmStorage jdbcFilmStorage;
+    @Autowired
+    UserStorage jdbcUserStorage;
+
+    @Override
+    FilmStorage createFilmStorage() {
+        jdbcTemplate.execute("DELETE FROM likes");
+        jdbcTemplate.execute("DELETE FROM friendships");
+        jdbcTemplate.execute("DELETE FROM films");
+        jdbcTemplate.execute("DELETE FROM users");
+        jdbcTemplate.execute("ALTER SEQUENCE film_ids RESTART WITH 1");
+        jdbcTemplate.execute("ALTER SEQUENCE user_ids RESTART WITH 1");
+        return jdbcFilmStorage;
+    }
+
+    @Override
+    UserStorage createUserStorage() {
+        return jdbcUserStorage;
+    }
+}
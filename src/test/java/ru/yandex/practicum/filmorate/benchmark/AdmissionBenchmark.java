@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.controller.admission.AdaptiveConcurrencyLimit;
+import ru.yandex.practicum.filmorate.controller.admission.CallerRateLimiter;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Собственные накладные расходы контроля допуска на один запрос. Лимиты заданы так, что запросы
+ * не отклоняются, то есть замеряется стоимость пропуска. Запускается с -Djmh.threads=1,4,8, чтобы
+ * увидеть конкуренцию за корзину одного вызывающего и за общий счётчик запросов в обработке.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AdmissionBenchmark {
+
+    @Param({"1", "100000"})
+    int callers;
+
+    CallerRateLimiter rateLimiter;
+    AdaptiveConcurrencyLimit concurrencyLimit;
+    String[] callerIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        rateLimiter = new CallerRateLimiter(1e12, Integer.MAX_VALUE, callers, 300);
+        concurrencyLimit = new AdaptiveConcurrencyLimit(1_024, 1_024, 1_024, 2.0);
+        callerIds = new String[callers];
+        for (int i = 0; i < callers; i++) {
+            callerIds[i] = "caller-" + i;
+        }
+    }
+
+    @Benchmark
+    public long rateLimiter() {
+        return rateLimiter.tryAcquire(callerIds[ThreadLocalRandom.current().nextInt(callers)]);
+    }
+
+    @Benchmark
+    public boolean concurrencyLimit() {
+        boolean acquired = concurrencyLimit.tryAcquire();
+        if (acquired) {
+            concurrencyLimit.release(1_000_000);
+        }
+        return acquired;
+    }
+
+    @Benchmark
+    public boolean admission() {
+        return rateLimiter() == 0 && concurrencyLimit();
+    }
+}
@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.slf4j.LoggerFactory;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.time.Month;
+
+final class BenchmarkData {
+    private BenchmarkData() {
+    }
+
+    /**
+     * Вне Spring logback пишет debug-сообщения хранилищ в консоль, что заметно искажает замеры.
+     */
+    static void quietLogging() {
+        ((Logger) LoggerFactory.getLogger("ru.yandex.practicum")).setLevel(Level.INFO);
+    }
+
+    /**
+     * Даты релиза и продолжительности разбросаны, чтобы выборки по диапазонам были избирательными.
+     */
+    static Film film(int index) {
+        return new Film(0, "Film" + index, "description",
+                LocalDate.of(1950, Month.JANUARY, 1).plusDays(index * 37L % 27_000), 60 + index % 120);
+    }
+
+    static User user(int index) {
+        return new User(0, "user" + index + "@email.ru", "login" + index, "name" + index,
+                LocalDate.of(2000, Month.DECEMBER, 20));
+    }
+}
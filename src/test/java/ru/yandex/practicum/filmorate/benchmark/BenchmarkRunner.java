@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Запускает выбранные бенчмарки по разу на каждое число потоков из -Djmh.threads (через запятую).
+ * Остальные аргументы - обычные аргументы JMH. Результаты пишутся в target/jmh/threads-N.json,
+ * их удобно сравнивать с сохранённым базовым прогоном.
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        Path results = Paths.get("target", "jmh");
+        Files.createDirectories(results);
+
+        for (String threads : System.getProperty("jmh.threads", "1").split(",")) {
+            new Runner(new OptionsBuilder()
+                    .parent(commandLine)
+                    .threads(Integer.parseInt(threads.trim()))
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(results.resolve("threads-" + threads.trim() + ".json").toString())
+                    .build()).run();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.EventBroadcaster;
+import ru.yandex.practicum.filmorate.service.FilmRecommendations;
+import ru.yandex.practicum.filmorate.service.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.FilmTrends;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячие пути фильмов: топ популярных, выборка по диапазонам, лайк с отменой, создание и чтение по id.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilmBenchmark {
+    @Param({"1000", "100000"})
+    int films;
+
+    @Param({"10000"})
+    int users;
+
+    @Param({"20"})
+    int likesPerFilm;
+
+    @Param({"10"})
+    int count;
+
+    InMemoryFilmStorage filmStorage;
+    FilmService filmService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.quietLogging();
+        InMemoryUserStorage userStorage = new InMemoryUserStorage();
+        filmStorage = new InMemoryFilmStorage();
+        filmService = new FilmService(filmStorage, userStorage, new FilmRecommendations(filmStorage),
+                new FilmTrends(), new FilmSearchIndex(filmStorage), new EventBroadcaster());
+        Random random = new Random(42);
+
+        List<User> userBatch = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            userBatch.add(BenchmarkData.user(i));
+        }
+        userStorage.createAll(userBatch);
+
+        List<Film> filmBatch = new ArrayList<>(films);
+        List<Like> likes = new ArrayList<>(films * likesPerFilm);
+        for (int i = 0; i < films; i++) {
+            filmBatch.add(BenchmarkData.film(i));
+            for (int j = 0; j < likesPerFilm; j++) {
+                likes.add(new Like(i + 1, random.nextInt(users) + 1));
+            }
+        }
+        filmStorage.createAll(filmBatch);
+        filmStorage.addLikes(likes);
+    }
+
+    @Benchmark
+    public Collection<Film> getPopular() {
+        return filmService.getPopular(count);
+    }
+
+    /**
+     * Неделя релизов и продолжительность до полутора часов: время зависит от числа фильмов в неделе, а не в каталоге.
+     */
+    @Benchmark
+    public Collection<Film> findFiltered() {
+        LocalDate from = LocalDate.of(1950, Month.JANUARY, 1).plusDays(ThreadLocalRandom.current().nextInt(27_000));
+        return filmService.findFiltered(new FilmFilter(from, from.plusDays(7), null, 90), 0, count);
+    }
+
+    @Benchmark
+    public void addAndRemoveLike() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int filmId = random.nextInt(films) + 1;
+        int userId = random.nextInt(users) + 1;
+
+        filmService.addLike(filmId, userId);
+        filmService.removeLike(filmId, userId);
+    }
+
+    @Benchmark
+    public Film getById() {
+        return filmStorage.getById(ThreadLocalRandom.current().nextInt(films) + 1);
+    }
+
+    @Benchmark
+    public Film create(EmptyStorage state) {
+        return state.storage.create(BenchmarkData.film(0));
+    }
+
+    /**
+     * Создание меряется на отдельном хранилище, которое пересоздаётся на каждой итерации, чтобы рост
+     * хранилища не искажал остальные замеры.
+     */
+    @State(Scope.Benchmark)
+    public static class EmptyStorage {
+        InMemoryFilmStorage storage;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            storage = new InMemoryFilmStorage();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FriendSuggestions;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Задержка рекомендаций друзей для пользователей со степенью на уровне 99-го перцентиля.
+ * Граф строится с предпочтительным присоединением, поэтому степени распределены по степенному закону,
+ * как в реальных социальных графах.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FriendSuggestionsBenchmark {
+    @Param({"10000", "100000"})
+    int users;
+
+    @Param({"10"})
+    int edgesPerUser;
+
+    FriendSuggestions suggestions;
+    int[] heavyUsers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.quietLogging();
+        InMemoryUserStorage userStorage = new InMemoryUserStorage();
+        suggestions = new FriendSuggestions(userStorage);
+        Random random = new Random(42);
+
+        List<User> batch = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            batch.add(BenchmarkData.user(i));
+        }
+        userStorage.createAll(batch);
+
+        // каждый конец уже добавленного ребра - кандидат, поэтому вероятность связи пропорциональна степени
+        int[] endpoints = new int[users * edgesPerUser * 2];
+        int size = 0;
+        List<Friendship> friendships = new ArrayList<>();
+        for (int user = 2; user <= users; user++) {
+            for (int j = 0; j < edgesPerUser; j++) {
+                int friend = size == 0 ? 1 : endpoints[random.nextInt(size)];
+                friendships.add(new Friendship(user, friend));
+                endpoints[size++] = user;
+                endpoints[size++] = friend;
+            }
+            if (friendships.size() >= 10_000) {
+                userStorage.addFriends(friendships);
+                friendships.clear();
+            }
+        }
+        userStorage.addFriends(friendships);
+
+        int[] byDegree = IntStream.rangeClosed(1, users).boxed()
+                .sorted(Comparator.comparingInt(id -> userStorage.getById(id).getFriends().size()))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        int p99 = (int) (users * 0.99);
+        heavyUsers = new int[Math.max(1, users / 1000)];
+        System.arraycopy(byDegree, p99, heavyUsers, 0, heavyUsers.length);
+    }
+
+    @Benchmark
+    public List<User> suggestUncached() {
+        suggestions.invalidateAll();
+        return suggestions.suggest(heavyUsers[ThreadLocalRandom.current().nextInt(heavyUsers.length)], 10);
+    }
+
+    @Benchmark
+    public List<User> suggestCached() {
+        return suggestions.suggest(heavyUsers[ThreadLocalRandom.current().nextInt(heavyUsers.length)], 10);
+    }
+}
@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.service.FilmRecommendations;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость поддержки индекса совместных лайков на один лайк и время ответа рекомендаций
+ * в зависимости от числа фильмов, уже лайкнутых пользователем.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecommendationsBenchmark {
+    private static final int FILMS = 10_000;
+    private static final int USERS = 1_000;
+    // фильмы из хвоста не попадают в историю, поэтому лайк и его отмена всегда меняют индекс
+    private static final int FRESH_FILMS = 1_000;
+
+    @Param({"10", "100"})
+    int history;
+
+    FilmRecommendations recommendations;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.quietLogging();
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage();
+        Random random = new Random(42);
+
+        List<Film> films = new ArrayList<>(FILMS);
+        for (int i = 0; i < FILMS; i++) {
+            films.add(BenchmarkData.film(i));
+        }
+        filmStorage.createAll(films);
+
+        List<Like> likes = new ArrayList<>(USERS * history);
+        for (int user = 1; user <= USERS; user++) {
+            for (int j = 0; j < history; j++) {
+                likes.add(new Like(1 + random.nextInt(FILMS - FRESH_FILMS), user));
+            }
+        }
+        filmStorage.addLikes(likes);
+
+        recommendations = new FilmRecommendations(filmStorage);
+        recommendations.similar(1, 10);
+    }
+
+    @Benchmark
+    public void likeAndUnlike() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int filmId = FILMS - FRESH_FILMS + 1 + random.nextInt(FRESH_FILMS);
+        int userId = 1 + random.nextInt(USERS);
+        recommendations.likeAdded(filmId, userId);
+        recommendations.likeRemoved(filmId, userId);
+    }
+
+    @Benchmark
+    public List<Integer> recommend() {
+        return recommendations.recommend(1 + ThreadLocalRandom.current().nextInt(USERS), 10);
+    }
+}
@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Масштабирование хранилища фильмов по ядрам в зависимости от числа шардов. Запускается с несколькими
+ * значениями -Djmh.threads, например 1,2,4,8: при одном шарде лайки упираются в общий монитор индекса популярности.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShardingBenchmark {
+    private static final int FILMS = 100_000;
+    private static final int USERS = 10_000;
+    private static final int LIKES_PER_FILM = 20;
+
+    @Param({"1", "4", "16"})
+    int shards;
+
+    @Param({"1000"})
+    int count;
+
+    InMemoryFilmStorage filmStorage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.quietLogging();
+        filmStorage = new InMemoryFilmStorage(shards);
+        Random random = new Random(42);
+
+        List<Film> films = new ArrayList<>(FILMS);
+        List<Like> likes = new ArrayList<>(FILMS * LIKES_PER_FILM);
+        for (int i = 0; i < FILMS; i++) {
+            films.add(BenchmarkData.film(i));
+            for (int j = 0; j < LIKES_PER_FILM; j++) {
+                likes.add(new Like(i + 1, random.nextInt(USERS) + 1));
+            }
+        }
+        filmStorage.createAll(films);
+        filmStorage.addLikes(likes);
+    }
+
+    @Benchmark
+    public void addAndRemoveLike() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int filmId = random.nextInt(FILMS) + 1;
+        int userId = USERS + random.nextInt(USERS) + 1;
+
+        filmStorage.addLike(filmId, userId);
+        filmStorage.removeLike(filmId, userId);
+    }
+
+    @Benchmark
+    public Collection<Film> getPopular() {
+        return filmStorage.getPopular(count);
+    }
+}
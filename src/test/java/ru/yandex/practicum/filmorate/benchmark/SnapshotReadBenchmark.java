@@ -0,0 +1,108 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение списков фильмов под постоянными записями: в каждой группе 4 читающих потока и 4 пишущих.
+ * Читатели работают со срезом хранилища без блокировок, поэтому их пропускная способность должна быть
+ * близка к прогону без записей - для сравнения ShardingBenchmark.getPopular запускается с -Djmh.threads=4.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotReadBenchmark {
+    private static final int USERS = 10_000;
+    private static final int LIKES_PER_FILM = 20;
+
+    @Param({"10000", "100000"})
+    int films;
+
+    @Param({"100"})
+    int count;
+
+    InMemoryFilmStorage filmStorage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.quietLogging();
+        filmStorage = new InMemoryFilmStorage();
+        Random random = new Random(42);
+
+        List<Film> batch = new ArrayList<>(films);
+        List<Like> likes = new ArrayList<>(films * LIKES_PER_FILM);
+        for (int i = 0; i < films; i++) {
+            batch.add(BenchmarkData.film(i));
+            for (int j = 0; j < LIKES_PER_FILM; j++) {
+                likes.add(new Like(i + 1, random.nextInt(USERS) + 1));
+            }
+        }
+        filmStorage.createAll(batch);
+        filmStorage.addLikes(likes);
+    }
+
+    @Benchmark
+    @Group("popular")
+    @GroupThreads(4)
+    public Collection<Film> readPopular() {
+        return filmStorage.getPopular(count);
+    }
+
+    @Benchmark
+    @Group("popular")
+    @GroupThreads(4)
+    public void writePopular() {
+        likeAndUnlike();
+    }
+
+    @Benchmark
+    @Group("all")
+    @GroupThreads(4)
+    public void readAll(Blackhole blackhole) {
+        for (Film film : filmStorage.findAll()) {
+            blackhole.consume(film);
+        }
+    }
+
+    @Benchmark
+    @Group("all")
+    @GroupThreads(4)
+    public void writeAll() {
+        likeAndUnlike();
+    }
+
+    private void likeAndUnlike() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int filmId = random.nextInt(films) + 1;
+        int userId = USERS + random.nextInt(USERS) + 1;
+
+        filmStorage.addLike(filmId, userId);
+        filmStorage.removeLike(filmId, userId);
+    }
+}
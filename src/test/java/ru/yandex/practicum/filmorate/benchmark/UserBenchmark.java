@@ -0,0 +1,105 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.EventBroadcaster;
+import ru.yandex.practicum.filmorate.service.FriendSuggestions;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячие пути пользователей: общие друзья, список друзей, создание и чтение по id.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserBenchmark {
+    @Param({"10000", "100000"})
+    int users;
+
+    @Param({"10", "100"})
+    int friendsPerUser;
+
+    InMemoryUserStorage userStorage;
+    UserService userService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.quietLogging();
+        userStorage = new InMemoryUserStorage();
+        userService = new UserService(userStorage, new FriendSuggestions(userStorage), new EventBroadcaster());
+        Random random = new Random(42);
+
+        List<User> batch = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            batch.add(BenchmarkData.user(i));
+        }
+        userStorage.createAll(batch);
+
+        // каждая дружба взаимна, поэтому половины связей на пользователя хватает для заданного среднего
+        List<Friendship> friendships = new ArrayList<>();
+        for (int i = 1; i <= users; i++) {
+            for (int j = 0; j < friendsPerUser / 2; j++) {
+                friendships.add(new Friendship(i, random.nextInt(users) + 1));
+            }
+            if (friendships.size() >= 10_000) {
+                userStorage.addFriends(friendships);
+                friendships.clear();
+            }
+        }
+        userStorage.addFriends(friendships);
+    }
+
+    @Benchmark
+    public Collection<User> getCommonFriends() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return userService.getCommonFriends(random.nextInt(users) + 1, random.nextInt(users) + 1);
+    }
+
+    @Benchmark
+    public Collection<User> getFriends() {
+        return userService.getFriends(ThreadLocalRandom.current().nextInt(users) + 1);
+    }
+
+    @Benchmark
+    public User getById() {
+        return userStorage.getById(ThreadLocalRandom.current().nextInt(users) + 1);
+    }
+
+    @Benchmark
+    public User create(EmptyStorage state) {
+        return state.storage.create(BenchmarkData.user(0));
+    }
+
+    @State(Scope.Benchmark)
+    public static class EmptyStorage {
+        InMemoryUserStorage storage;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            storage = new InMemoryUserStorage();
+        }
+    }
+}
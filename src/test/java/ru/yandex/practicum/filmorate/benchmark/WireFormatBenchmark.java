@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.yandex.practicum.filmorate.controller.BinaryFormatsConfig;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кодирование и разбор страницы фильмов в JSON, Smile и CBOR. Размер страницы в байтах пишется в лог при
+ * подготовке каждого прогона, так что размер и время сравниваются по одному выводу. Лайки либо разбросаны
+ * по всем пользователям, либо идут подряд, как у фильмов, которые лайкают в основном новые пользователи:
+ * от этого зависит, сколько байт займёт id при разностном кодировании.
+ */
+@Slf4j
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+    private static final int USERS = 1_000_000;
+    private static final TypeReference<List<Film>> FILMS = new TypeReference<>() {
+    };
+
+    @Param({"json", "smile", "cbor"})
+    String format;
+
+    @Param({"10", "1000"})
+    int likesPerFilm;
+
+    @Param({"false", "true"})
+    boolean dense;
+
+    @Param({"100"})
+    int count;
+
+    ObjectMapper mapper;
+    List<Film> page;
+    byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json().findModulesViaServiceLoader(true);
+        switch (format) {
+            case "smile":
+                mapper = BinaryFormatsConfig.smileMapper(builder);
+                break;
+            case "cbor":
+                mapper = BinaryFormatsConfig.cborMapper(builder);
+                break;
+            default:
+                mapper = builder.build();
+        }
+
+        Random random = new Random(42);
+        page = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Film film = BenchmarkData.film(i);
+            film.setId(i + 1);
+            int first = random.nextInt(USERS - likesPerFilm) + 1;
+            for (int j = 0; j < likesPerFilm; j++) {
+                film.getLikesByUsers().add(dense ? first + j : random.nextInt(USERS) + 1);
+            }
+            page.add(film);
+        }
+        encoded = mapper.writeValueAsBytes(page);
+        log.info("{}, likesPerFilm={}, dense={}: {} байт на страницу из {} фильмов",
+                format, likesPerFilm, dense, encoded.length, count);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return mapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public List<Film> decode() throws IOException {
+        return mapper.readValue(encoded, FILMS);
+    }
+}
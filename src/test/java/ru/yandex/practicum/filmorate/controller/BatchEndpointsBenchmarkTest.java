@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Сравнивает пакетные эндпоинты с поэлементными вызовами через полный путь Spring MVC
+ * (разбор JSON, валидация, сериализация ответа). Время пишется в лог. Это замер, а не модульный тест,
+ * поэтому в обычный прогон не входит: mvn test -Dgroups=benchmark -Dtest.excludedGroups=
+ */
+@Tag("benchmark")
+@Slf4j
+@SpringBootTest(properties = "logging.level.ru.yandex.practicum=info")
+@AutoConfigureMockMvc
+class BatchEndpointsBenchmarkTest {
+    private static final int ITEMS = 2_000;
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    FilmService filmService;
+
+    @Test
+    void batchEndpointsVersusSingleCalls() throws Exception {
+        List<Film> films = new ArrayList<>();
+        List<Film> batchFilms = new ArrayList<>();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            films.add(new Film(0, "Film" + i, "description", LocalDate.of(2000, Month.JANUARY, 1), 90));
+            batchFilms.add(new Film(0, "Film" + i, "description", LocalDate.of(2000, Month.JANUARY, 1), 90));
+            users.add(new User(0, "user" + i + "@email.ru", "login" + i, "name",
+                    LocalDate.of(2000, Month.DECEMBER, 20)));
+        }
+
+        List<Integer> filmIds = new ArrayList<>();
+        long singleCreate = time(() -> {
+            for (Film film : films) {
+                String body = mockMvc.perform(post("/films").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(film))).andExpect(status().isOk())
+                        .andReturn().getResponse().getContentAsString();
+                filmIds.add(objectMapper.readValue(body, Film.class).getId());
+            }
+        });
+        long batchCreate = time(() -> mockMvc.perform(post("/films/batch").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batchFilms))).andExpect(status().isOk()));
+
+        List<Integer> userIds = new ArrayList<>();
+        String body = mockMvc.perform(post("/users/batch").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(users))).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        for (BatchResult result : objectMapper.readValue(body, BatchResult[].class)) {
+            userIds.add(result.getId());
+        }
+
+        int singleFilm = filmIds.get(0);
+        int batchFilm = filmIds.get(1);
+        List<Like> likes = new ArrayList<>();
+        for (int userId : userIds) {
+            likes.add(new Like(batchFilm, userId));
+        }
+
+        long singleLikes = time(() -> {
+            for (int userId : userIds) {
+                mockMvc.perform(put("/films/{id}/like/{userId}", singleFilm, userId)).andExpect(status().isOk());
+            }
+        });
+        long batchLikes = time(() -> mockMvc.perform(put("/films/likes/batch").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(likes))).andExpect(status().isOk()));
+
+        assertEquals(ITEMS, userIds.size());
+        assertEquals(ITEMS, filmService.getById(singleFilm).getLikesByUsers().size());
+        assertEquals(ITEMS, filmService.getById(batchFilm).getLikesByUsers().size());
+
+        log.info("Создание {} фильмов: поштучно {} мс, пакетом {} мс", ITEMS, singleCreate, batchCreate);
+        log.info("{} лайков: поштучно {} мс, пакетом {} мс", ITEMS, singleLikes, batchLikes);
+    }
+
+    private long time(Action action) throws Exception {
+        long start = System.nanoTime();
+        action.run();
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private interface Action {
+        void run() throws Exception;
+    }
+}
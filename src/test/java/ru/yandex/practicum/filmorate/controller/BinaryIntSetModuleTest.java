@@ -0,0 +1,79 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryIntSetModuleTest {
+    private final ObjectMapper json = builder().build();
+    private final ObjectMapper smile = BinaryFormatsConfig.smileMapper(builder());
+    private final ObjectMapper cbor = BinaryFormatsConfig.cborMapper(builder());
+
+    @Test
+    void roundTripsEntitiesInBothFormats() throws Exception {
+        Film film = new Film(1, "Film", "description", LocalDate.of(2000, 1, 1), 90);
+        film.getLikesByUsers().addAll(List.of(100_000, 1, 2, 3, 1_000));
+        film.setVersion(5);
+        User user = new User(2, "user@email.ru", "login", "name", LocalDate.of(2000, 12, 20));
+        user.getFriends().addAll(List.of(7, 70, 700));
+
+        for (ObjectMapper mapper : new ObjectMapper[]{smile, cbor}) {
+            assertEquals(film, mapper.readValue(mapper.writeValueAsBytes(film), Film.class));
+            assertEquals(user, mapper.readValue(mapper.writeValueAsBytes(user), User.class));
+        }
+    }
+
+    @Test
+    void encodesDenseLikesInAboutOneBytePerId() throws Exception {
+        Film film = new Film(1, "Film", "description", LocalDate.of(2000, 1, 1), 90);
+        for (int id = 50_000; id < 60_000; id++) {
+            film.getLikesByUsers().add(id);
+        }
+
+        int binary = smile.writeValueAsBytes(film).length;
+        assertTrue(binary < 10_000 + 200, "Размер в Smile: " + binary);
+        assertTrue(binary * 5 < json.writeValueAsBytes(film).length);
+        assertTrue(cbor.writeValueAsBytes(film).length < 10_000 + 200);
+    }
+
+    @Test
+    void readsLikesWrittenAsArray() throws Exception {
+        Film film = new Film(1, "Film", "description", LocalDate.of(2000, 1, 1), 90);
+        film.getLikesByUsers().addAll(List.of(3, 1, 2));
+        byte[] withoutModule = builder().factory(new SmileFactory()).build().writeValueAsBytes(film);
+
+        assertEquals(film, smile.readValue(withoutModule, Film.class));
+        assertEquals(film, json.readValue(json.writeValueAsBytes(film), Film.class));
+    }
+
+    @Test
+    void leavesSharedBuilderProducingJson() {
+        Jackson2ObjectMapperBuilder shared = builder();
+        BinaryFormatsConfig.smileMapper(shared);
+        BinaryFormatsConfig.cborMapper(shared);
+
+        assertEquals(JsonFactory.FORMAT_NAME_JSON, shared.build().getFactory().getFormatName());
+    }
+
+    @Test
+    void encodesAnyIntValues() {
+        int[] values = {Integer.MIN_VALUE, -5, 0, 1, 127, 128, Integer.MAX_VALUE};
+
+        assertArrayEquals(values, BinaryIntSetModule.decode(BinaryIntSetModule.encode(values)));
+        assertArrayEquals(new int[0], BinaryIntSetModule.decode(BinaryIntSetModule.encode(new int[0])));
+        assertThrows(IllegalArgumentException.class, () -> BinaryIntSetModule.decode(new byte[]{(byte) 0x80}));
+    }
+
+    private static Jackson2ObjectMapperBuilder builder() {
+        return Jackson2ObjectMapperBuilder.json().findModulesViaServiceLoader(true);
+    }
+}
@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.controller.admission;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimitTest {
+
+    @Test
+    void rejectsAboveLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, 2.0);
+
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        assertEquals(2, limit.getInFlight());
+
+        limit.release(1_000_000);
+        assertEquals(1, limit.getInFlight());
+        assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    void growsWhileLatencyIsStableAndShrinksWhenItRises() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(16, 4, 256, 2.0);
+
+        for (int i = 0; i < 200; i++) {
+            fill(limit);
+            releaseAll(limit, 1_000_000);
+        }
+        int grown = limit.getLimit();
+        assertTrue(grown > 16, "Предел должен расти при стабильной задержке: " + grown);
+
+        for (int i = 0; i < 20; i++) {
+            fill(limit);
+            releaseAll(limit, 20_000_000);
+        }
+        assertTrue(limit.getLimit() < grown, "Предел должен снижаться при росте задержки: " + limit.getLimit());
+        assertTrue(limit.getLimit() >= 4);
+    }
+
+    @Test
+    void comparesLatencyWithBaselineOfItsRoute() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(16, 4, 256, 2.0);
+
+        for (int i = 0; i < 200; i++) {
+            fill(limit);
+            boolean fast = true;
+            while (limit.getInFlight() > 0) {
+                // медленный маршрут стабильно в 50 раз медленнее быстрого, но это не перегрузка
+                limit.release(fast ? "GET /films/{id}" : "GET /films/popular", fast ? 100_000 : 5_000_000);
+                fast = !fast;
+            }
+        }
+        assertTrue(limit.getLimit() > 16, "Предел должен расти при стабильной задержке маршрутов: "
+                + limit.getLimit());
+    }
+
+    @Test
+    void doesNotGrowWhenMostlyIdle() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(16, 4, 256, 2.0);
+
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(1_000_000);
+        }
+        assertEquals(16, limit.getLimit());
+    }
+
+    private static void fill(AdaptiveConcurrencyLimit limit) {
+        while (limit.tryAcquire()) {
+            // занимаем все места
+        }
+    }
+
+    private static void releaseAll(AdaptiveConcurrencyLimit limit, long latencyNanos) {
+        while (limit.getInFlight() > 0) {
+            limit.release(latencyNanos);
+        }
+    }
+}
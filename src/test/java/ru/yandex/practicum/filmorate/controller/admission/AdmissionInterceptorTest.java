@@ -0,0 +1,46 @@
+package ru.yandex.practicum.filmorate.controller.admission;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.yandex.practicum.filmorate.exception.RateLimitedException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionInterceptorTest {
+    private static final String CALLER_HEADER = "X-Caller-Id";
+    private static final String PROXY = "10.0.0.1";
+
+    private final AdmissionInterceptor interceptor = new AdmissionInterceptor(
+            new CallerRateLimiter(1, 1, 100, 60, () -> 0L), new AdaptiveConcurrencyLimit(64, 8, 1_024, 2.0),
+            CALLER_HEADER, List.of(PROXY), new SimpleMeterRegistry());
+
+    @Test
+    void ignoresCallerHeaderFromUntrustedClient() {
+        assertTrue(admit("192.168.0.7", "caller-1"));
+
+        // новый заголовок не даёт клиенту новую корзину
+        assertThrows(RateLimitedException.class, () -> admit("192.168.0.7", "caller-2"));
+    }
+
+    @Test
+    void trustsCallerHeaderFromProxy() {
+        assertTrue(admit(PROXY, "caller-1"));
+        assertTrue(admit(PROXY, "caller-2"));
+
+        assertThrows(RateLimitedException.class, () -> admit(PROXY, "caller-1"));
+    }
+
+    private boolean admit(String address, String caller) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/films");
+        request.setRemoteAddr(address);
+        request.addHeader(CALLER_HEADER, caller);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        boolean admitted = interceptor.preHandle(request, response, new Object());
+        interceptor.afterCompletion(request, response, new Object(), null);
+        return admitted;
+    }
+}
@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.controller.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallerRateLimiterTest {
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void allowsBurstAndRefillsAtRate() {
+        CallerRateLimiter limiter = new CallerRateLimiter(10, 3, 100, 60, clock::get);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("a"));
+        }
+        long wait = limiter.tryAcquire("a");
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), wait);
+        assertEquals(0, limiter.tryAcquire("b"), "Корзины вызывающих не должны зависеть друг от друга");
+
+        clock.addAndGet(wait);
+        assertEquals(0, limiter.tryAcquire("a"));
+        assertTrue(limiter.tryAcquire("a") > 0);
+    }
+
+    @Test
+    void evictsIdleCallersWhenFull() {
+        CallerRateLimiter limiter = new CallerRateLimiter(1, 1, 2, 10, clock::get);
+
+        limiter.tryAcquire("a");
+        limiter.tryAcquire("b");
+        assertEquals(0, limiter.tryAcquire("c"), "Новый вызывающий получает общую корзину");
+        assertTrue(limiter.tryAcquire("d") > 0, "Общая корзина делится между всеми, кто не поместился");
+        assertEquals(2, limiter.callers());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(11));
+        limiter.tryAcquire("b");
+        assertEquals(0, limiter.tryAcquire("e"));
+        assertEquals(2, limiter.callers());
+    }
+}
@@ -0,0 +1,71 @@
+package ru.yandex.practicum.filmorate.load;
+
+import java.util.Arrays;
+
+/**
+ * Точные задержки одного потока для одной операции. Потоки пишут каждый в свой экземпляр,
+ * после прогона экземпляры сливаются в один через {@link #merge}.
+ */
+class LatencyRecorder {
+    private long[] nanos = new long[1024];
+    private int size;
+    private long errors;
+    private long rejected;
+    private boolean sorted;
+
+    /**
+     * @param rejected запрос отклонён контролем допуска (429 или 503), такие запросы считаются и ошибками
+     */
+    void record(long latencyNanos, boolean error, boolean rejected) {
+        if (size == nanos.length) {
+            nanos = Arrays.copyOf(nanos, size * 2);
+        }
+        nanos[size++] = latencyNanos;
+        sorted = false;
+        if (error) {
+            errors++;
+        }
+        if (rejected) {
+            this.rejected++;
+        }
+    }
+
+    void merge(LatencyRecorder other) {
+        if (size + other.size > nanos.length) {
+            nanos = Arrays.copyOf(nanos, Math.max(nanos.length * 2, size + other.size));
+        }
+        System.arraycopy(other.nanos, 0, nanos, size, other.size);
+        size += other.size;
+        errors += other.errors;
+        rejected += other.rejected;
+        sorted = false;
+    }
+
+    int count() {
+        return size;
+    }
+
+    long errors() {
+        return errors;
+    }
+
+    long rejected() {
+        return rejected;
+    }
+
+    /**
+     * @param quantile доля от 0 до 1, например 0.999
+     * @return задержка в микросекундах
+     */
+    double percentileMicros(double quantile) {
+        if (size == 0) {
+            return 0;
+        }
+        if (!sorted) {
+            Arrays.sort(nanos, 0, size);
+            sorted = true;
+        }
+        int index = (int) Math.ceil(quantile * size) - 1;
+        return nanos[Math.max(0, Math.min(index, size - 1))] / 1_000.0;
+    }
+}
@@ -0,0 +1,334 @@
+package ru.yandex.practicum.filmorate.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Нагрузочный прогон контроллеров по HTTP со смешанной нагрузкой. Если url не задан, приложение
+ * поднимается в этом же процессе на случайном порту.
+ * <p>
+ * Параметры передаются как key=value:
+ * url, profile, threads, warmup и duration (секунды), users, films, mix (например like=30,popular=30,...), out,
+ * callers - число вызывающих, от имени которых идут запросы (заголовок X-Caller-Id, 0 - без заголовка;
+ * приложение, поднятое в процессе, доверяет заголовку с локального адреса, внешнее - только с trusted-proxies),
+ * accept - формат ответов: application/json, application/x-jackson-smile или application/cbor.
+ * Чтобы замерить p99 при перегрузке, приложение запускается с filmorate.admission.enabled=true, а число потоков
+ * берётся заметно больше предела одновременных запросов; отклонённые запросы выводятся отдельной колонкой.
+ * <p>
+ * Нагрузка замкнутая: каждый поток отправляет следующий запрос после ответа на предыдущий, поэтому при
+ * перегрузке сервера хвосты задержек занижены относительно нагрузки с фиксированной интенсивностью.
+ */
+public class LoadGenerator {
+    private static final String DEFAULT_MIX = "like=30,popular=30,friends=15,common=15,create-film=5,create-user=5";
+    private static final int SEED_BATCH = 5_000;
+    private static final String CALLER_HEADER = "X-Caller-Id";
+
+    private final Map<String, String> config;
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+            .enable(SerializationFeature.INDENT_OUTPUT);
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final String baseUrl;
+    private final int users;
+    private final int films;
+    private final int callers;
+    private final String accept;
+    private final Operation[] wheel;
+
+    LoadGenerator(Map<String, String> config, String baseUrl) {
+        this.config = config;
+        this.baseUrl = baseUrl;
+        this.users = Integer.parseInt(config.get("users"));
+        this.films = Integer.parseInt(config.get("films"));
+        this.callers = Integer.parseInt(config.get("callers"));
+        this.accept = config.get("accept");
+        this.wheel = wheel(config.get("mix"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> config = new LinkedHashMap<>();
+        config.put("threads", "16");
+        config.put("warmup", "10");
+        config.put("duration", "30");
+        config.put("users", "10000");
+        config.put("films", "1000");
+        config.put("mix", DEFAULT_MIX);
+        config.put("callers", "0");
+        config.put("accept", "application/json");
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Параметр должен иметь вид key=value: " + arg);
+            }
+            config.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        ConfigurableApplicationContext context = null;
+        String baseUrl = config.get("url");
+        if (baseUrl == null) {
+            List<String> appArgs = new ArrayList<>(List.of("--server.port=0", "--logging.level.ru.yandex.practicum=info"));
+            appArgs.add("--filmorate.admission.trusted-proxies=127.0.0.1,0:0:0:0:0:0:0:1");
+            if (config.containsKey("profile")) {
+                appArgs.add("--spring.profiles.active=" + config.get("profile"));
+            }
+            context = SpringApplication.run(FilmorateApplication.class, appArgs.toArray(new String[0]));
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        }
+
+        try {
+            LoadGenerator generator = new LoadGenerator(config, baseUrl);
+            generator.seed();
+            generator.run();
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    private void seed() throws IOException, InterruptedException {
+        Random random = new Random(42);
+        long start = System.nanoTime();
+
+        for (int from = 0; from < users; from += SEED_BATCH) {
+            List<User> batch = new ArrayList<>();
+            for (int i = from; i < Math.min(users, from + SEED_BATCH); i++) {
+                batch.add(user(i));
+            }
+            send(HttpRequest.newBuilder(uri("/users/batch")).POST(json(batch)));
+        }
+        for (int from = 0; from < films; from += SEED_BATCH) {
+            List<Film> batch = new ArrayList<>();
+            for (int i = from; i < Math.min(films, from + SEED_BATCH); i++) {
+                batch.add(film(i));
+            }
+            send(HttpRequest.newBuilder(uri("/films/batch")).POST(json(batch)));
+        }
+
+        List<Friendship> friendships = new ArrayList<>();
+        for (int i = 1; i <= users; i++) {
+            for (int j = 0; j < 10; j++) {
+                friendships.add(new Friendship(i, random.nextInt(users) + 1));
+            }
+            if (friendships.size() >= SEED_BATCH || i == users) {
+                send(HttpRequest.newBuilder(uri("/users/friends/batch")).PUT(json(friendships)));
+                friendships.clear();
+            }
+        }
+        List<Like> likes = new ArrayList<>();
+        for (int i = 1; i <= films; i++) {
+            for (int j = 0; j < 20; j++) {
+                likes.add(new Like(i, random.nextInt(users) + 1));
+            }
+            if (likes.size() >= SEED_BATCH || i == films) {
+                send(HttpRequest.newBuilder(uri("/films/likes/batch")).PUT(json(likes)));
+                likes.clear();
+            }
+        }
+        System.out.printf("Данные подготовлены за %d мс: пользователей %d, фильмов %d%n",
+                (System.nanoTime() - start) / 1_000_000, users, films);
+    }
+
+    private void run() throws Exception {
+        int threads = Integer.parseInt(config.get("threads"));
+        long warmupNanos = Long.parseLong(config.get("warmup")) * 1_000_000_000L;
+        long durationNanos = Long.parseLong(config.get("duration")) * 1_000_000_000L;
+        List<Map<Operation, LatencyRecorder>> perThread = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+
+        long measureFrom = System.nanoTime() + warmupNanos;
+        long deadline = measureFrom + durationNanos;
+        for (int i = 0; i < threads; i++) {
+            Map<Operation, LatencyRecorder> recorders = new EnumMap<>(Operation.class);
+            for (Operation operation : Operation.values()) {
+                recorders.put(operation, new LatencyRecorder());
+            }
+            perThread.add(recorders);
+            Thread worker = new Thread(() -> work(recorders, measureFrom, deadline), "load-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        Map<Operation, LatencyRecorder> total = new EnumMap<>(Operation.class);
+        for (Map<Operation, LatencyRecorder> recorders : perThread) {
+            recorders.forEach((operation, recorder) ->
+                    total.computeIfAbsent(operation, key -> new LatencyRecorder()).merge(recorder));
+        }
+        report(total, durationNanos / 1_000_000_000.0);
+    }
+
+    private void work(Map<Operation, LatencyRecorder> recorders, long measureFrom, long deadline) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        for (long now = System.nanoTime(); now < deadline; now = System.nanoTime()) {
+            Operation operation = wheel[random.nextInt(wheel.length)];
+            int status;
+            long start = System.nanoTime();
+            try {
+                status = client.send(request(operation, random), HttpResponse.BodyHandlers.discarding())
+                        .statusCode();
+            } catch (IOException e) {
+                status = 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long end = System.nanoTime();
+            if (start >= measureFrom && end <= deadline) {
+                recorders.get(operation).record(end - start, status == 0 || status >= 400,
+                        status == 429 || status == 503);
+            }
+        }
+    }
+
+    private HttpRequest request(Operation operation, ThreadLocalRandom random) throws IOException {
+        HttpRequest.Builder builder = builder(operation, random.nextInt(users) + 1, random)
+                .header("Accept", accept);
+
+        if (callers > 0) {
+            builder.header(CALLER_HEADER, "caller-" + random.nextInt(callers));
+        }
+        return builder.build();
+    }
+
+    private HttpRequest.Builder builder(Operation operation, int userId, ThreadLocalRandom random)
+            throws IOException {
+        switch (operation) {
+            case LIKE:
+                return HttpRequest.newBuilder(uri("/films/" + (random.nextInt(films) + 1) + "/like/" + userId))
+                        .PUT(HttpRequest.BodyPublishers.noBody());
+            case POPULAR:
+                return HttpRequest.newBuilder(uri("/films/popular?count=10")).GET();
+            case FRIENDS:
+                return HttpRequest.newBuilder(uri("/users/" + userId + "/friends")).GET();
+            case COMMON_FRIENDS:
+                return HttpRequest.newBuilder(uri("/users/" + userId + "/friends/common/"
+                        + (random.nextInt(users) + 1))).GET();
+            case CREATE_FILM:
+                return HttpRequest.newBuilder(uri("/films")).header("Content-Type", "application/json")
+                        .POST(json(film(random.nextInt())));
+            case CREATE_USER:
+                return HttpRequest.newBuilder(uri("/users")).header("Content-Type", "application/json")
+                        .POST(json(user(random.nextInt(users))));
+            default:
+                throw new IllegalStateException("Операция без запроса: " + operation);
+        }
+    }
+
+    private void report(Map<Operation, LatencyRecorder> total, double seconds) throws IOException {
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        long requests = 0;
+
+        System.out.printf("%-12s %10s %8s %8s %10s %10s %10s %10s%n", "operation", "count", "errors",
+                "rejected", "ops/s", "p50 ms", "p99 ms", "p999 ms");
+        for (Map.Entry<Operation, LatencyRecorder> entry : total.entrySet()) {
+            LatencyRecorder recorder = entry.getValue();
+            if (recorder.count() == 0) {
+                continue;
+            }
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("count", recorder.count());
+            stats.put("errors", recorder.errors());
+            stats.put("rejected", recorder.rejected());
+            stats.put("throughput", recorder.count() / seconds);
+            stats.put("p50Micros", recorder.percentileMicros(0.5));
+            stats.put("p99Micros", recorder.percentileMicros(0.99));
+            stats.put("p999Micros", recorder.percentileMicros(0.999));
+            stats.put("maxMicros", recorder.percentileMicros(1));
+            endpoints.put(entry.getKey().getKey(), stats);
+            requests += recorder.count();
+
+            System.out.printf("%-12s %10d %8d %8d %10.0f %10.3f %10.3f %10.3f%n", entry.getKey().getKey(),
+                    recorder.count(), recorder.errors(), recorder.rejected(), recorder.count() / seconds,
+                    recorder.percentileMicros(0.5) / 1_000, recorder.percentileMicros(0.99) / 1_000,
+                    recorder.percentileMicros(0.999) / 1_000);
+        }
+        System.out.printf("Всего: %.0f запросов/с%n", requests / seconds);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("startedAt", LocalDateTime.now().toString());
+        result.put("config", config);
+        result.put("url", baseUrl);
+        result.put("durationSeconds", seconds);
+        result.put("throughput", requests / seconds);
+        result.put("endpoints", endpoints);
+
+        Path out = config.containsKey("out") ? Paths.get(config.get("out"))
+                : Paths.get("target", "load", "load-"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+        if (out.getParent() != null) {
+            Files.createDirectories(out.getParent());
+        }
+        objectMapper.writeValue(out.toFile(), result);
+        System.out.println("Результаты сохранены в " + out);
+    }
+
+    private void send(HttpRequest.Builder builder) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(builder.header("Content-Type", "application/json").build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 400) {
+            throw new IllegalStateException("Не удалось подготовить данные: " + response.body());
+        }
+    }
+
+    private HttpRequest.BodyPublisher json(Object body) throws IOException {
+        return HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body));
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    private static Operation[] wheel(String mix) {
+        List<Operation> wheel = new ArrayList<>();
+        for (String part : mix.split(",")) {
+            String[] weight = part.trim().split("=");
+            Operation operation = Operation.byKey(weight[0].trim());
+            for (int i = 0; i < Integer.parseInt(weight[1].trim()); i++) {
+                wheel.add(operation);
+            }
+        }
+        if (wheel.isEmpty()) {
+            throw new IllegalArgumentException("Смесь нагрузки пуста: " + mix);
+        }
+        return wheel.toArray(new Operation[0]);
+    }
+
+    private static Film film(int index) {
+        return new Film(0, "Film" + index, "description", LocalDate.of(2000, Month.JANUARY, 1), 90);
+    }
+
+    private static User user(int index) {
+        return new User(0, "user" + index + "@email.ru", "login" + index, "name" + index,
+                LocalDate.of(2000, Month.DECEMBER, 20));
+    }
+}
@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.load;
+
+/**
+ * Операции смеси нагрузки. Ключ используется в параметре mix и в отчёте.
+ */
+enum Operation {
+    LIKE("like"),
+    POPULAR("popular"),
+    FRIENDS("friends"),
+    COMMON_FRIENDS("common"),
+    CREATE_FILM("create-film"),
+    CREATE_USER("create-user");
+
+    private final String key;
+
+    Operation(String key) {
+        this.key = key;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    static Operation byKey(String key) {
+        for (Operation operation : values()) {
+            if (operation.key.equals(key)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестная операция нагрузки: " + key);
+    }
+}
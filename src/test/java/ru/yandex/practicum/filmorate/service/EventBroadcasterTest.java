@@ -0,0 +1,138 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.model.ChangeEvent;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventBroadcasterTest {
+    private static final int EVENTS = 1_000;
+
+    @Test
+    void slowSubscriberDropsOldestEventsWithoutBlockingWriters() throws Exception {
+        EventBroadcaster broadcaster = new EventBroadcaster();
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingEmitter slow = new BlockingEmitter(release);
+        BlockingEmitter fast = new BlockingEmitter(new CountDownLatch(0));
+        broadcaster.subscribe(EventBroadcaster.filmTopic(1), slow, null);
+        broadcaster.subscribe(EventBroadcaster.filmTopic(1), fast, null);
+
+        for (int userId = 1; userId <= EVENTS; userId++) {
+            broadcaster.likeChanged(ChangeEvent.like(ChangeEvent.LIKE_ADDED, 1, userId));
+        }
+        // рассылка медленному подписчику всё ещё заблокирована, а публикация уже завершилась
+        assertEquals(1, release.getCount());
+        assertTrue(fast.awaitUser(EVENTS));
+
+        release.countDown();
+        assertTrue(slow.awaitUser(EVENTS));
+
+        assertEquals(EVENTS, fast.events.size() + fast.dropped);
+        assertTrue(slow.dropped > 0);
+        // до блокировки подписчик успевает забрать не больше одной пачки
+        assertTrue(slow.events.size() <= EventBroadcaster.BUFFER_SIZE + EventBroadcaster.BATCH_SIZE);
+        assertEquals(EVENTS, slow.events.size() + slow.dropped);
+        broadcaster.stop();
+    }
+
+    @Test
+    void popularSubscribersGetCoalescedSnapshots() throws Exception {
+        EventBroadcaster broadcaster = new EventBroadcaster();
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingEmitter popular = new BlockingEmitter(release);
+        broadcaster.subscribe("popular", popular, () -> List.of(1, 2, 3));
+
+        for (int userId = 1; userId <= EVENTS; userId++) {
+            broadcaster.likeChanged(ChangeEvent.like(ChangeEvent.LIKE_ADDED, 1, userId));
+        }
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (popular.snapshots.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(50);
+
+        // лайки, пришедшие пока рассылка занята, схлопываются в один снимок
+        assertFalse(popular.snapshots.isEmpty());
+        assertTrue(popular.snapshots.size() <= 2);
+        popular.snapshots.forEach(snapshot -> assertEquals(List.of(1, 2, 3), snapshot));
+        assertTrue(popular.events.isEmpty());
+        broadcaster.stop();
+    }
+
+    @Test
+    void stuckSubscribersDoNotHoldDispatchThreads() throws Exception {
+        EventBroadcaster broadcaster = new EventBroadcaster(100);
+        CountDownLatch never = new CountDownLatch(1);
+        int stuck = 8;
+        for (int filmId = 1; filmId <= stuck; filmId++) {
+            broadcaster.subscribe(EventBroadcaster.filmTopic(filmId), new BlockingEmitter(never), null);
+        }
+        BlockingEmitter fast = new BlockingEmitter(new CountDownLatch(0));
+        broadcaster.subscribe(EventBroadcaster.filmTopic(100), fast, null);
+
+        // зависших подписчиков больше, чем потоков рассылки
+        for (int filmId = 1; filmId <= stuck; filmId++) {
+            broadcaster.likeChanged(ChangeEvent.like(ChangeEvent.LIKE_ADDED, filmId, 1));
+        }
+        broadcaster.likeChanged(ChangeEvent.like(ChangeEvent.LIKE_ADDED, 100, 7));
+
+        assertTrue(fast.awaitUser(7));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (broadcaster.subscribers() > 1 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        // зависшие подписчики отключены, быстрый остался
+        assertEquals(1, broadcaster.subscribers());
+        never.countDown();
+        broadcaster.stop();
+    }
+
+    private static class BlockingEmitter extends SseEmitter {
+        private final CountDownLatch release;
+        private final List<ChangeEvent> events = new CopyOnWriteArrayList<>();
+        private final List<Object> snapshots = new CopyOnWriteArrayList<>();
+        private volatile int dropped;
+
+        private BlockingEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            for (DataWithMediaType data : builder.build()) {
+                if (data.getData() instanceof ChangeEvent) {
+                    events.add((ChangeEvent) data.getData());
+                } else if (data.getData() instanceof Map) {
+                    dropped += (Integer) ((Map<?, ?>) data.getData()).get("count");
+                } else if (data.getData() instanceof List) {
+                    snapshots.add(data.getData());
+                }
+            }
+        }
+
+        private boolean awaitUser(int userId) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (System.nanoTime() < deadline) {
+                if (!events.isEmpty() && events.get(events.size() - 1).getUserId() == userId) {
+                    return true;
+                }
+                Thread.sleep(5);
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilmRecommendationsTest {
+    private static final int HISTORY = FilmRecommendations.MAX_USER_HISTORY;
+
+    private final FilmRecommendations recommendations = new FilmRecommendations(new InMemoryFilmStorage());
+
+    @Test
+    void pairsNewLikeWithLatestLikes() {
+        for (int filmId = 1; filmId <= HISTORY; filmId++) {
+            recommendations.likeAdded(filmId, 1);
+        }
+        recommendations.likeAdded(1_000, 1);
+
+        List<Integer> similar = recommendations.similar(1_000, FilmRecommendations.MAX_RECOMMENDATIONS);
+        assertTrue(similar.contains(HISTORY));
+        assertFalse(similar.contains(1));
+    }
+
+    @Test
+    void replacingLikesAppliesOnlyTheDifference() {
+        recommendations.likeAdded(1, 1);
+        recommendations.likeAdded(2, 1);
+        recommendations.likeAdded(2, 2);
+        recommendations.likeAdded(3, 2);
+
+        recommendations.likesReplaced(2, Set.of(1, 2), Set.of(2, 3));
+
+        assertEquals(List.of(3), recommendations.similar(2, 10));
+        assertEquals(List.of(), recommendations.similar(1, 10));
+        assertEquals(List.of(3), recommendations.recommend(3, 10));
+    }
+}
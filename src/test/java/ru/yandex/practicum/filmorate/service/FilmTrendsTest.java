@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.TrendWindow;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilmTrendsTest {
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+    private final FilmTrends trends = new FilmTrends(clock);
+
+    @Test
+    void countsLikesInsideEachWindow() {
+        trends.likeAdded(1, 1);
+        trends.likeAdded(1, 2);
+        clock.advance(Duration.ofHours(2));
+        trends.likeAdded(2, 1);
+
+        assertEquals(List.of(2), trends.top(TrendWindow.HOUR, 10));
+        assertEquals(List.of(1, 2), trends.top(TrendWindow.DAY, 10));
+        assertEquals(List.of(1), trends.top(TrendWindow.WEEK, 1));
+
+        clock.advance(Duration.ofDays(1));
+        assertEquals(List.of(2), trends.top(TrendWindow.DAY, 10));
+        assertEquals(List.of(1, 2), trends.top(TrendWindow.WEEK, 10));
+
+        clock.advance(Duration.ofDays(7));
+        assertEquals(List.of(), trends.top(TrendWindow.WEEK, 10));
+    }
+
+    @Test
+    void removedLikeLeavesTheLatestBucketOfTheFilm() {
+        trends.likeAdded(1, 1);
+        trends.likeAdded(2, 1);
+        trends.likeAdded(2, 2);
+        clock.advance(Duration.ofMinutes(30));
+        trends.likeAdded(1, 2);
+
+        assertEquals(List.of(1, 2), trends.top(TrendWindow.HOUR, 10));
+
+        trends.likeRemoved(1, 1);
+        assertEquals(List.of(2, 1), trends.top(TrendWindow.HOUR, 10));
+
+        clock.advance(Duration.ofMinutes(45));
+        assertEquals(List.of(), trends.top(TrendWindow.HOUR, 10));
+        assertEquals(List.of(2, 1), trends.top(TrendWindow.DAY, 10));
+
+        trends.likeRemoved(2, 2);
+        trends.likeRemoved(1, 2);
+        assertEquals(List.of(), trends.top(TrendWindow.HOUR, 10));
+        assertEquals(List.of(2), trends.top(TrendWindow.DAY, 10));
+    }
+
+    @Test
+    void countsConcurrentLikes() throws InterruptedException {
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            int thread = i;
+            threads[i] = new Thread(() -> {
+                for (int like = 0; like < 1_000; like++) {
+                    trends.likeAdded(like % 10 + 1, thread * 1_000 + like);
+                    if (thread % 2 == 1) {
+                        trends.likeRemoved(like % 10 + 1, thread * 1_000 + like);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), trends.top(TrendWindow.WEEK, 10));
+        trends.likeAdded(10, 1);
+        assertEquals(10, trends.top(TrendWindow.WEEK, 1).get(0));
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        private void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.OverloadedException;
+import ru.yandex.practicum.filmorate.model.Like;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LikeIngestionTest {
+
+    @Test
+    void coalescesCommandsForTheSamePairWithinBatch() {
+        List<Like> added = new ArrayList<>();
+        List<Like> removed = new ArrayList<>();
+        LikeIngestion ingestion = new LikeIngestion(properties(16, 200), (batchAdded, batchRemoved) -> {
+            added.addAll(batchAdded);
+            removed.addAll(batchRemoved);
+        });
+
+        ingestion.like(1, 1);
+        ingestion.like(1, 1);
+        ingestion.like(1, 2);
+        ingestion.unlike(1, 2);
+        ingestion.like(2, 1);
+        ingestion.close();
+
+        assertEquals(List.of(new Like(1, 1), new Like(2, 1)), added);
+        assertEquals(List.of(new Like(1, 2)), removed);
+    }
+
+    @Test
+    void appliesBatchWithinMaxDelay() throws Exception {
+        CountDownLatch applied = new CountDownLatch(1);
+        LikeIngestion ingestion = new LikeIngestion(properties(16, 20),
+                (batchAdded, batchRemoved) -> applied.countDown());
+
+        ingestion.like(1, 1);
+
+        assertTrue(applied.await(1, TimeUnit.SECONDS), "Пачка не применена за отведённое время");
+        ingestion.close();
+    }
+
+    @Test
+    void rejectsCommandsWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        LikeIngestionProperties properties = properties(2, 0);
+        properties.setBatchSize(1);
+        LikeIngestion ingestion = new LikeIngestion(properties, (batchAdded, batchRemoved) -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        ingestion.like(1, 1);
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        ingestion.like(1, 2);
+        ingestion.like(1, 3);
+
+        assertThrows(OverloadedException.class, () -> ingestion.like(1, 4));
+        assertEquals(2, ingestion.backlog());
+
+        release.countDown();
+        ingestion.close();
+        assertEquals(0, ingestion.backlog());
+    }
+
+    @Test
+    void appliesLikesOneByOneWhenBatchFails() {
+        List<Like> added = new ArrayList<>();
+        LikeIngestion ingestion = new LikeIngestion(properties(16, 200), (batchAdded, batchRemoved) -> {
+            if (batchAdded.size() > 1 || batchAdded.contains(new Like(1, 2))) {
+                throw new IllegalStateException("Пачка не применена");
+            }
+            added.addAll(batchAdded);
+        });
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ingestion.bindTo(registry);
+
+        ingestion.like(1, 1);
+        ingestion.like(1, 2);
+        ingestion.like(1, 3);
+        ingestion.close();
+
+        assertEquals(List.of(new Like(1, 1), new Like(1, 3)), added);
+        assertEquals(1, ingestion.failed());
+        assertEquals(1, registry.get("filmorate.likes.async.failed").functionCounter().count());
+    }
+
+    private static LikeIngestionProperties properties(int queueCapacity, long maxDelayMillis) {
+        LikeIngestionProperties properties = new LikeIngestionProperties();
+        properties.setEnabled(true);
+        properties.setQueueCapacity(queueCapacity);
+        properties.setMaxDelayMillis(maxDelayMillis);
+        properties.setOfferTimeoutMillis(10);
+        return properties;
+    }
+}
@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCacheTest {
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final AtomicInteger serializations = new AtomicInteger();
+    private final ResponseCache.Serializer serializer = value -> {
+        serializations.incrementAndGet();
+        return objectMapper.writeValueAsBytes(value);
+    };
+
+    @Test
+    void servesEntityUntilVersionChanges() throws Exception {
+        ResponseCache cache = new ResponseCache(1 << 20);
+        Film film = film(1);
+
+        byte[] first = cache.film(film, serializer);
+        assertSame(first, cache.film(film, serializer));
+        assertEquals(1, serializations.get());
+
+        Film changed = film.copy();
+        changed.getLikesByUsers().add(7);
+        changed.setVersion(film.getVersion() + 1);
+        assertArrayEquals(objectMapper.writeValueAsBytes(changed), cache.film(changed, serializer));
+        assertEquals(2, serializations.get());
+
+        cache.invalidateFilm(1);
+        cache.film(changed, serializer);
+        assertEquals(3, serializations.get());
+    }
+
+    @Test
+    void assemblesListFromEntitiesAsJacksonWould() throws Exception {
+        ResponseCache cache = new ResponseCache(1 << 20);
+        List<Film> films = List.of(film(2), film(1), film(3));
+
+        assertArrayEquals(objectMapper.writeValueAsBytes(films), cache.films(films, serializer));
+        assertArrayEquals(objectMapper.writeValueAsBytes(List.of()), cache.films(List.of(), serializer));
+        int afterFirst = serializations.get();
+
+        cache.films(films, serializer);
+        cache.films(List.of(films.get(1), films.get(0)), serializer);
+        assertEquals(afterFirst, serializations.get(), "Список собирается из уже сериализованных фильмов");
+    }
+
+    @Test
+    void staysWithinMemoryBound() throws Exception {
+        ResponseCache cache = new ResponseCache(16 * 1024);
+        List<Film> films = new ArrayList<>();
+        for (int i = 1; i <= 1_000; i++) {
+            films.add(film(i));
+            cache.film(films.get(i - 1), serializer);
+        }
+
+        assertTrue(cache.bytes() <= 16 * 1024, "Объём кеша превысил предел: " + cache.bytes());
+        assertTrue(cache.size() > 0);
+    }
+
+    @Test
+    void disabledCacheOnlySerializes() throws Exception {
+        ResponseCache cache = new ResponseCache(0);
+
+        cache.film(film(1), serializer);
+        cache.film(film(1), serializer);
+        assertEquals(2, serializations.get());
+        assertEquals(0, cache.size());
+    }
+
+    private static Film film(int id) {
+        Film film = new Film(id, "Film" + id, "description", LocalDate.of(2000, 1, id % 28 + 1), 90);
+        film.setVersion(1);
+        return film;
+    }
+}
@@ -0,0 +1,186 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.EventBroadcaster;
+import ru.yandex.practicum.filmorate.service.FilmRecommendations;
+import ru.yandex.practicum.filmorate.service.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.FilmTrends;
+import ru.yandex.practicum.filmorate.service.FriendSuggestions;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+class InMemoryStorageConcurrencyTest {
+    private static final int USERS_PER_THREAD = 200;
+    private static final int FILMS = 8;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 4, 8, 16})
+    void concurrentWritesAreNotLost(int threads) throws Exception {
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage(threads);
+        InMemoryUserStorage userStorage = new InMemoryUserStorage(threads);
+        FilmService filmService = new FilmService(filmStorage, userStorage, new FilmRecommendations(filmStorage),
+                new FilmTrends(), new FilmSearchIndex(filmStorage), new EventBroadcaster());
+        UserService userService = new UserService(userStorage, new FriendSuggestions(userStorage),
+                new EventBroadcaster());
+
+        for (int i = 0; i < FILMS; i++) {
+            filmService.create(new Film(0, "Film" + i, "description", LocalDate.now(), 90));
+        }
+
+        long start = System.nanoTime();
+        List<List<Integer>> userIds = runConcurrently(threads, thread -> {
+            List<Integer> ids = new ArrayList<>();
+            for (int i = 0; i < USERS_PER_THREAD; i++) {
+                ids.add(userService.create(new User(0, "user@email.ru", "login", "name",
+                        LocalDate.of(2000, Month.DECEMBER, 20))).getId());
+            }
+            return ids;
+        });
+
+        List<Integer> allUsers = new ArrayList<>();
+        userIds.forEach(allUsers::addAll);
+        Set<Integer> distinctUsers = new HashSet<>(allUsers);
+        assertEquals(threads * USERS_PER_THREAD, distinctUsers.size(), "Выданы повторяющиеся id");
+
+        runConcurrently(threads, thread -> {
+            for (int userId : userIds.get(thread)) {
+                for (int filmId = 1; filmId <= FILMS; filmId++) {
+                    filmService.addLike(filmId, userId);
+                }
+                if (userId % 2 == 0) {
+                    filmService.removeLike(1, userId);
+                }
+            }
+            return null;
+        });
+
+        runConcurrently(threads, thread -> {
+            List<Integer> own = userIds.get(thread);
+            List<Integer> next = userIds.get((thread + 1) % threads);
+            for (int i = 0; i < own.size(); i++) {
+                userService.addFriend(own.get(i), next.get(i));
+                userService.addFriend(next.get((i + 1) % next.size()), own.get(i));
+            }
+            return null;
+        });
+        long elapsed = System.nanoTime() - start;
+
+        int users = threads * USERS_PER_THREAD;
+        long evenUsers = allUsers.stream().filter(id -> id % 2 == 0).count();
+        assertEquals(users - evenUsers, filmService.getById(1).getLikesByUsers().size());
+        for (int filmId = 2; filmId <= FILMS; filmId++) {
+            assertEquals(users, filmService.getById(filmId).getLikesByUsers().size());
+        }
+        assertEquals(filmService.getById(1), new ArrayList<>(filmService.getPopular(FILMS)).get(FILMS - 1));
+        assertEquals(List.of(2, 3, 4), filmService.getPopular(3).stream()
+                .map(Film::getId).collect(Collectors.toList()));
+
+        Map<Integer, Set<Integer>> expectedFriends = new HashMap<>();
+        for (int thread = 0; thread < threads; thread++) {
+            List<Integer> own = userIds.get(thread);
+            List<Integer> next = userIds.get((thread + 1) % threads);
+            for (int i = 0; i < own.size(); i++) {
+                addExpectedFriendship(expectedFriends, own.get(i), next.get(i));
+                addExpectedFriendship(expectedFriends, next.get((i + 1) % next.size()), own.get(i));
+            }
+        }
+        for (User user : userService.findAll()) {
+            assertEquals(expectedFriends.get(user.getId()), user.getFriends());
+        }
+
+        long operations = users * (1L + FILMS + 2) + evenUsers;
+        log.info("Потоков: {}, операций: {}, пропускная способность: {} оп/мс", threads, operations,
+                operations * 1_000_000 / Math.max(elapsed, 1));
+    }
+
+    @Test
+    void findAllReturnsPointInTimeSnapshotUnderWrites() throws Exception {
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage();
+        for (int i = 0; i < FILMS; i++) {
+            filmStorage.create(new Film(0, "Film" + i, "description", LocalDate.now(), 90));
+        }
+
+        Collection<Film> before = filmStorage.findAll();
+        runConcurrently(4, thread -> {
+            for (int userId = 1; userId <= USERS_PER_THREAD; userId++) {
+                if (thread == 0) {
+                    filmStorage.addLike(userId % FILMS + 1, userId);
+                } else if (thread == 1) {
+                    filmStorage.create(new Film(0, "Film", "description", LocalDate.now(), 90));
+                } else {
+                    int likes = 0;
+                    for (Film film : filmStorage.findAll()) {
+                        likes += film.getLikesByUsers().size();
+                    }
+                    assertTrue(likes <= USERS_PER_THREAD);
+                    filmStorage.getPopular(FILMS);
+                }
+            }
+            return null;
+        });
+
+        assertEquals(FILMS, before.size());
+        assertTrue(before.stream().allMatch(film -> film.getLikesByUsers().isEmpty()), "Срез изменился");
+        assertEquals(FILMS + USERS_PER_THREAD, filmStorage.findAll().size());
+        assertEquals(USERS_PER_THREAD, filmStorage.findAll().stream()
+                .mapToInt(film -> film.getLikesByUsers().size()).sum());
+    }
+
+    private void addExpectedFriendship(Map<Integer, Set<Integer>> friends, int id, int friendId) {
+        friends.computeIfAbsent(id, key -> new HashSet<>()).add(friendId);
+        friends.computeIfAbsent(friendId, key -> new HashSet<>()).add(id);
+    }
+
+    private <T> List<T> runConcurrently(int threads, ThreadTask<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < threads; i++) {
+                int thread = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.run(thread);
+                }));
+            }
+            start.countDown();
+
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(1, TimeUnit.MINUTES));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private interface ThreadTask<T> {
+        T run(int thread) throws Exception;
+    }
+}
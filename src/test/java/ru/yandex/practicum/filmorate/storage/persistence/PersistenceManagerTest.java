@@ -0,0 +1,231 @@
+package ru.yandex.practicum.filmorate.storage.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+class PersistenceManagerTest {
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoversSnapshotAndLogTail() throws Exception {
+        Node node = start(FsyncPolicy.BATCH);
+        for (int i = 0; i < 10; i++) {
+            node.films.create(new Film(0, "Film" + i, "description", LocalDate.of(2000, Month.JANUARY, 1), 90));
+            node.users.create(user(i));
+        }
+        node.films.addLike(1, 1);
+        node.films.addLike(1, 2);
+        node.users.addFriend(1, 2);
+        node.manager.snapshot();
+
+        node.films.removeLike(1, 1);
+        node.films.addLike(2, 3);
+        node.users.removeFriend(1, 2);
+        node.users.addFriend(3, 4);
+        Film updated = new Film(5, "Updated", "description", LocalDate.of(2001, Month.JANUARY, 1), 100);
+        node.films.update(updated);
+        node.films.create(new Film(0, "After snapshot", "description", LocalDate.of(2000, Month.JANUARY, 1), 90));
+        node.manager.stop();
+
+        Node restored = start(FsyncPolicy.BATCH);
+
+        assertEquals(new HashSet<>(node.films.findAll()), new HashSet<>(restored.films.findAll()));
+        assertEquals(new HashSet<>(node.users.findAll()), new HashSet<>(restored.users.findAll()));
+        assertEquals(List.copyOf(node.films.getPopular(11)), List.copyOf(restored.films.getPopular(11)));
+        assertEquals(12, restored.films.create(new Film(0, "New", "description", LocalDate.now(), 90)).getId());
+        restored.manager.stop();
+    }
+
+    @Test
+    void dropsTornTailOnRecovery() throws Exception {
+        Node node = start(FsyncPolicy.ALWAYS);
+        node.users.create(user(1));
+        node.users.create(user(2));
+        node.manager.stop();
+
+        Path segment = WriteAheadLog.segmentPath(directory, 1);
+        long size = Files.size(segment);
+        Files.write(segment, new byte[]{0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        Node restored = start(FsyncPolicy.ALWAYS);
+        assertEquals(2, restored.users.findAll().size());
+        assertEquals(size, Files.size(segment));
+        restored.manager.stop();
+    }
+
+    @Test
+    void removesInterruptedSnapshotOnRecovery() throws Exception {
+        Node node = start(FsyncPolicy.ALWAYS);
+        node.users.create(user(1));
+        node.manager.stop();
+
+        Path temporary = directory.resolve(SnapshotFile.path(directory, 1).getFileName() + ".tmp");
+        Files.write(temporary, new byte[]{1, 2, 3});
+
+        Node restored = start(FsyncPolicy.ALWAYS);
+        assertFalse(Files.exists(temporary));
+        assertEquals(1, restored.users.findAll().size());
+        restored.manager.stop();
+    }
+
+    @Test
+    void servesSnapshotLazilyBeforeWarmup() throws Exception {
+        Node node = start(FsyncPolicy.NONE);
+        for (int i = 0; i < 20; i++) {
+            node.films.create(new Film(0, "Фильм " + i, i % 2 == 0 ? null : "описание", null, 90 + i));
+            node.users.create(user(i));
+        }
+        for (int i = 1; i <= 20; i++) {
+            for (int j = 1; j <= i % 5; j++) {
+                node.films.addLike(i, j);
+                node.users.addFriend(i, j == i ? 20 : j);
+            }
+        }
+        node.manager.snapshot();
+        node.manager.stop();
+
+        Node restored = start(FsyncPolicy.NONE);
+        assertEquals(List.copyOf(node.films.getPopular(5)), List.copyOf(restored.films.getPopular(5)));
+        assertEquals(node.films.getById(7), restored.films.getById(7));
+        assertEquals(node.users.getCommonFriends(3, 4), restored.users.getCommonFriends(3, 4));
+        assertEquals(List.copyOf(node.users.findPage(5, 3)), List.copyOf(restored.users.findPage(5, 3)));
+        assertEquals(21, restored.users.create(user(21)).getId());
+        assertEquals(new HashSet<>(node.films.findAll()), new HashSet<>(restored.films.findAll()));
+        restored.manager.stop();
+    }
+
+    /**
+     * Сравнивает старт с отображённым снимком (подключение и первое чтение) с полной загрузкой всех сущностей.
+     * По умолчанию 1000000 пользователей и 100000 фильмов, размер меняется через -Dsnapshot.users и -Dsnapshot.films.
+     * Замер долгий, поэтому в обычный прогон не входит: mvn test -Dgroups=benchmark -Dtest.excludedGroups=
+     */
+    @Test
+    @Tag("benchmark")
+    void startupTimeWithMappedSnapshot() throws Exception {
+        int users = Integer.getInteger("snapshot.users", 1_000_000);
+        int films = Integer.getInteger("snapshot.films", 100_000);
+        Node node = start(FsyncPolicy.NONE);
+        for (int i = 0; i < films; i++) {
+            node.films.restore(new Film(i + 1, "Film" + i, "description", LocalDate.of(2000, Month.JANUARY, 1), 90));
+        }
+        for (int i = 0; i < users; i++) {
+            User user = user(i);
+            user.setId(i + 1);
+            for (int j = 1; j <= 10; j++) {
+                user.getFriends().add((i + j * 97) % users + 1);
+            }
+            node.users.restore(user);
+            node.films.getById(i % films + 1).getLikesByUsers().add(i + 1);
+        }
+        node.manager.snapshot();
+        node.manager.stop();
+
+        long start = System.nanoTime();
+        Node restored = start(FsyncPolicy.NONE);
+        restored.films.getPopular(10);
+        restored.users.getById(users / 2);
+        long firstReadNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        restored.films.findAll();
+        restored.users.findAll();
+        long materializeNanos = System.nanoTime() - start;
+
+        assertEquals(users, restored.users.findAll().size());
+        assertEquals(node.users.getById(users / 2), restored.users.getById(users / 2));
+        log.info("Снимок {} пользователей и {} фильмов: старт и первое чтение {} мс, полная загрузка {} мс",
+                users, films, firstReadNanos / 1_000_000, materializeNanos / 1_000_000);
+        restored.manager.stop();
+    }
+
+    @ParameterizedTest
+    @EnumSource(FsyncPolicy.class)
+    void writeThroughputAndRecoveryTime(FsyncPolicy policy) throws Exception {
+        int threads = 8;
+        int likesPerThread = policy == FsyncPolicy.ALWAYS ? 250 : 5_000;
+        Node node = start(policy);
+        for (int i = 0; i < 100; i++) {
+            node.films.create(new Film(0, "Film" + i, "description", LocalDate.of(2000, Month.JANUARY, 1), 90));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            int offset = thread * likesPerThread;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < likesPerThread; i++) {
+                    node.films.addLike(i % 100 + 1, offset + i + 1);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long writeNanos = System.nanoTime() - start;
+        executor.shutdown();
+        node.manager.stop();
+
+        start = System.nanoTime();
+        Node restored = start(policy);
+        long recoveryNanos = System.nanoTime() - start;
+
+        int likes = threads * likesPerThread;
+        assertEquals(likes, restored.films.findAll().stream().mapToInt(film -> film.getLikesByUsers().size()).sum());
+        log.info("fsync {}: {} лайков из {} потоков, {} записей/с, восстановление {} мс", policy, likes, threads,
+                likes * 1_000_000_000L / writeNanos, recoveryNanos / 1_000_000);
+        restored.manager.stop();
+    }
+
+    private Node start(FsyncPolicy policy) throws Exception {
+        PersistenceProperties properties = new PersistenceProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(directory.toString());
+        properties.setFsync(policy);
+        properties.setSnapshotIntervalSeconds(0);
+        properties.setWarmup(false);
+
+        Node node = new Node();
+        node.manager = new PersistenceManager(node.films, node.users, properties, objectMapper);
+        node.manager.start();
+        return node;
+    }
+
+    private User user(int index) {
+        return new User(0, "user" + index + "@email.ru", "login" + index, "name" + index,
+                LocalDate.of(2000, Month.DECEMBER, 20));
+    }
+
+    private static class Node {
+        final InMemoryFilmStorage films = new InMemoryFilmStorage();
+        final InMemoryUserStorage users = new InMemoryUserStorage();
+        PersistenceManager manager;
+    }
+}
@@ -0,0 +1,125 @@
+package ru.yandex.practicum.filmorate.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactIntSetTest {
+    private static final int LIKES = 100_000;
+    private static final int USERS = 1_000_000;
+
+    @Test
+    void behavesLikeHashSet() {
+        Random random = new Random(7);
+        Set<Integer> expected = new HashSet<>();
+        CompactIntSet set = new CompactIntSet();
+
+        for (int i = 0; i < 10_000; i++) {
+            int value = random.nextInt(500) - 100;
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(value), set.add(value));
+            } else {
+                assertEquals(expected.remove(value), set.remove(value));
+            }
+        }
+
+        assertEquals(expected, set);
+        assertEquals(expected.hashCode(), set.hashCode());
+        assertEquals(expected.size(), set.size());
+        assertTrue(set.addAll(List.of(1000, 1001, 1000)));
+        assertFalse(set.addAll(List.of(1000, 1001)));
+        assertTrue(set.containsInt(1001));
+
+        Iterator<Integer> iterator = set.iterator();
+        while (iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    void serializesToSameJson() throws Exception {
+        ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+        Film film = new Film(1, "Film", "description", LocalDate.of(2000, 1, 1), 90);
+        film.getLikesByUsers().addAll(List.of(3, 1, 2));
+
+        String json = mapper.writeValueAsString(film);
+
+        assertTrue(json.contains("\"likesByUsers\":[1,2,3]"));
+        assertEquals(film, mapper.readValue(json, Film.class));
+        assertTrue(mapper.readValue(json, Film.class).getLikesByUsers() instanceof CompactIntSet);
+    }
+
+    @Test
+    void behavesLikeHashSetAcrossBlocks() {
+        Random random = new Random(11);
+        Set<Integer> expected = new HashSet<>();
+        CompactIntSet set = new CompactIntSet();
+
+        for (int i = 0; i < 200_000; i++) {
+            int value = random.nextInt(20_000);
+            if (random.nextInt(4) > 0) {
+                assertEquals(expected.add(value), set.add(value));
+            } else {
+                assertEquals(expected.remove(value), set.remove(value));
+            }
+            assertEquals(expected.contains(value), set.containsInt(value));
+        }
+
+        assertEquals(expected, set);
+        assertEquals(expected.size(), set.toIntArray().length);
+        assertTrue(set.blocks().length > 1);
+    }
+
+    /**
+     * Объём считается по длинам массивов блоков: не больше 8 байт на лайк при случайных id и ровно 4 байта,
+     * когда id приходят по возрастанию, как у новых пользователей.
+     */
+    @Test
+    void blocksStayDense() {
+        Random random = new Random(1);
+        CompactIntSet randomLikes = new CompactIntSet();
+        while (randomLikes.size() < LIKES) {
+            randomLikes.addInt(random.nextInt(USERS) + 1);
+        }
+        CompactIntSet sequentialLikes = new CompactIntSet();
+        for (int userId = 1; userId <= LIKES; userId++) {
+            sequentialLikes.addInt(userId);
+        }
+
+        assertEquals(LIKES, storedInts(randomLikes));
+        assertTrue(Arrays.stream(randomLikes.blocks()).allMatch(block -> block.length <= CompactIntSet.BLOCK_SIZE));
+        assertTrue(randomLikes.blocks().length <= 2 * LIKES / CompactIntSet.BLOCK_SIZE + 1);
+        assertEquals((LIKES + CompactIntSet.BLOCK_SIZE - 1) / CompactIntSet.BLOCK_SIZE,
+                sequentialLikes.blocks().length);
+    }
+
+    @Test
+    void filmCopySharesLikesUntilChanged() {
+        Film film = new Film(1, "Film", "description", LocalDate.of(2000, 1, 1), 90);
+        film.getLikesByUsers().addAll(List.of(1, 2, 3));
+
+        Film copy = film.copy();
+        assertSame(((CompactIntSet) film.getLikesByUsers()).blocks(),
+                ((CompactIntSet) copy.getLikesByUsers()).blocks());
+
+        copy.getLikesByUsers().add(4);
+        assertEquals(Set.of(1, 2, 3), film.getLikesByUsers());
+        assertEquals(Set.of(1, 2, 3, 4), copy.getLikesByUsers());
+    }
+
+    private static long storedInts(CompactIntSet set) {
+        return Arrays.stream(set.blocks()).mapToLong(block -> block.length).sum();
+    }
+}
@@ -0,0 +1,88 @@
+package ru.yandex.practicum.filmorate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoaringIntSetTest {
+
+    @Test
+    void behavesLikeHashSetAcrossArrayAndBitmapContainers() {
+        Random random = new Random(3);
+        Set<Integer> expected = new HashSet<>();
+        RoaringIntSet set = new RoaringIntSet();
+
+        for (int i = 0; i < 60_000; i++) {
+            int value = random.nextInt(3 << 16);
+            if (random.nextInt(4) == 0) {
+                assertEquals(expected.remove(value), set.remove(value));
+            } else {
+                assertEquals(expected.add(value), set.add(value));
+            }
+        }
+
+        assertEquals(expected, set);
+        assertEquals(expected.size(), set.size());
+        assertEquals(new TreeSet<>(expected).stream().collect(Collectors.toList()),
+                set.stream().collect(Collectors.toList()));
+
+        expected.forEach(set::remove);
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    void bulkAddMatchesSingleAdds() {
+        int[] values = new Random(5).ints(20_000, 0, 200_000).toArray();
+        RoaringIntSet bulk = new RoaringIntSet();
+        RoaringIntSet single = new RoaringIntSet();
+
+        assertTrue(bulk.addAllInts(values));
+        for (int value : values) {
+            single.addInt(value);
+        }
+
+        assertEquals(single, bulk);
+        assertFalse(bulk.addAllInts(values));
+    }
+
+    @Test
+    void intersectionMatchesRetainAll() {
+        Random random = new Random(11);
+
+        for (int bound : List.of(1_000, 30_000, 300_000)) {
+            Set<Integer> left = random.ints(10_000, 0, bound).boxed().collect(Collectors.toSet());
+            Set<Integer> right = random.ints(10_000, 0, bound).boxed().collect(Collectors.toSet());
+            Set<Integer> expected = new HashSet<>(left);
+            expected.retainAll(right);
+
+            RoaringIntSet leftSet = new RoaringIntSet(left);
+            RoaringIntSet rightSet = new RoaringIntSet(right);
+
+            assertEquals(expected, leftSet.and(rightSet));
+            assertEquals(expected.size(), leftSet.and(rightSet).size());
+            assertEquals(expected.size(), leftSet.andCardinality(rightSet));
+            assertEquals(expected.size(), rightSet.andCardinality(leftSet));
+        }
+    }
+
+    @Test
+    void denseIntersectionUsesWholeBlocks() {
+        RoaringIntSet evens = new RoaringIntSet(IntStream.range(0, 1 << 16).filter(i -> i % 2 == 0)
+                .boxed().collect(Collectors.toList()));
+        RoaringIntSet threes = new RoaringIntSet(IntStream.range(0, 1 << 16).filter(i -> i % 3 == 0)
+                .boxed().collect(Collectors.toList()));
+
+        RoaringIntSet common = evens.and(threes);
+
+        assertEquals(IntStream.range(0, 1 << 16).filter(i -> i % 6 == 0).count(), common.size());
+        assertTrue(common.stream().allMatch(i -> i % 6 == 0));
+    }
+}